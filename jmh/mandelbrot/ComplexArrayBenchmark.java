@@ -0,0 +1,80 @@
+package mandelbrot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Działania na całej tablicy {@link ComplexArray} i, dla porównania,
+ * na tablicy obiektów {@link Complex} tej samej długości
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComplexArrayBenchmark {
+
+    @Param({"1024"})
+    public int n;
+
+    private ComplexArray a, b, scratch;
+    private Complex[] objects, factors;
+    private double[] out;
+
+    @Setup
+    public void setup() {
+        a = new ComplexArray(n);
+        b = new ComplexArray(n);
+        objects = new Complex[n];
+        factors = new Complex[n];
+        out = new double[n];
+        for (int k = 0; k < n; k++) {
+            double t = 2 * Math.PI * k / n;
+            a.set(k, 0.3 + Math.cos(t), -0.7 + Math.sin(t));
+            b.set(k, Math.cos(t), Math.sin(t));
+            objects[k] = a.get(k);
+            factors[k] = b.get(k);
+        }
+        scratch = new ComplexArray(a);
+    }
+
+    @Benchmark
+    public ComplexArray add() {
+        return a.add(b).sub(b);
+    }
+
+    @Benchmark
+    public ComplexArray mul() {
+        return scratch.mul(b);
+    }
+
+    @Benchmark
+    public ComplexArray div() {
+        return scratch.div(b);
+    }
+
+    @Benchmark
+    public double[] abs() {
+        a.abs(0, n, out);
+        return out;
+    }
+
+    @Benchmark
+    public Complex[] objectsMul() {
+        for (int k = 0; k < n; k++)
+            objects[k] = Complex.mul(objects[k], factors[k]);
+        return objects;
+    }
+}
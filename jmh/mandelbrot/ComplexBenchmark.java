@@ -0,0 +1,87 @@
+package mandelbrot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Działania na liczbach zespolonych: w miejscu i tworzące nowy obiekt.
+ * Czynnik leży na okręgu jednostkowym, więc wartości liczone w miejscu nie rosną.
+ * Przydział pamięci na operację pokazuje profiler <tt>-prof gc</tt>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComplexBenchmark {
+
+    private Complex a;
+    private Complex b;
+
+    @Setup
+    public void setup() {
+        a = new Complex(0.3, -0.7);
+        b = new Complex(Math.cos(1), Math.sin(1));
+    }
+
+    @Benchmark
+    public Complex add() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public Complex sub() {
+        return a.sub(b);
+    }
+
+    @Benchmark
+    public Complex mul() {
+        return a.mul(b);
+    }
+
+    @Benchmark
+    public Complex div() {
+        return a.div(b);
+    }
+
+    @Benchmark
+    public double sqrAbs() {
+        return a.sqrAbs();
+    }
+
+    @Benchmark
+    public double abs() {
+        return a.abs();
+    }
+
+    @Benchmark
+    public Complex staticAdd() {
+        return Complex.add(a, b);
+    }
+
+    @Benchmark
+    public Complex staticSub() {
+        return Complex.sub(a, b);
+    }
+
+    @Benchmark
+    public Complex staticMul() {
+        return Complex.mul(a, b);
+    }
+
+    @Benchmark
+    public Complex staticDiv() {
+        return Complex.div(a, b);
+    }
+}
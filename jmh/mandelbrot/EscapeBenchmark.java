@@ -0,0 +1,72 @@
+package mandelbrot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prędkość ucieczki pojedynczego punktu wnętrza, brzegu i zewnętrza
+ * dla <i>N</i> = 1000
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EscapeBenchmark {
+
+    private static final int N = 1000;
+
+    @Param({"interior", "boundary", "exterior"})
+    public String point;
+
+    private double re, im;
+    private Complex c;
+    private MandelRenderer mr;
+    private EscapeKernel primitive, interior, formula;
+
+    @Setup
+    public void setup() {
+        switch (point) {
+            case "interior": re = -0.1; im = 0.1; break;
+            case "boundary": re = -0.7436; im = 0.1318; break;
+            default: re = 0.5; im = 0.5;
+        }
+        c = new Complex(re, im);
+        mr = new MandelRenderer(2, N);
+        primitive = new PrimitiveKernel(2, N, null);
+        interior = new PrimitiveKernel(2, N, new InteriorStats());
+        formula = Formula.MANDELBROT.kernel(2, N);
+    }
+
+    @Benchmark
+    public int complex() {
+        return mr.predkoscUcieczki(c);
+    }
+
+    @Benchmark
+    public int primitive() {
+        return primitive.escape(re, im);
+    }
+
+    @Benchmark
+    public int interiorChecks() {
+        return interior.escape(re, im);
+    }
+
+    @Benchmark
+    public int formula() {
+        return formula.escape(re, im);
+    }
+}
@@ -0,0 +1,61 @@
+package mandelbrot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Całe klatki standardowych widoków w kilku rozmiarach, w jednym wątku:
+ * algorytm referencyjny, PRIMITIVE i kolorowanie odległością
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameBenchmark {
+
+    @Param({"full", "seahorse"})
+    public String view;
+
+    @Param({"256", "512", "1024"})
+    public int size;
+
+    @Param({"complex", "primitive", "distance"})
+    public String mode;
+
+    private Viewport v;
+    private MandelRenderer mr;
+    private IntBuffer argb;
+
+    @Setup
+    public void setup() {
+        v = view.equals("full")
+                ? new Viewport(new Complex(-2.5, -1.25), new Complex(1, 1.25), size, size)
+                : new Viewport(new Complex(-0.76, 0.09), new Complex(-0.74, 0.11), size, size);
+        mr = new MandelRenderer(2, 200);
+        if (mode.equals("distance"))
+            mr.setDistanceEstimation(true);
+        else
+            mr.setKernel(MandelRenderer.Kernel.valueOf(mode.toUpperCase()));
+        argb = IntBuffer.allocate(size * size);
+    }
+
+    @Benchmark
+    public IntBuffer frame() {
+        mr.render(v, argb, () -> false);
+        return argb;
+    }
+}
@@ -0,0 +1,76 @@
+package mandelbrot;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Wygładzanie krawędzi tylko tam, gdzie są krawędzie: po policzeniu obrazu
+ * raz na piksel wyszukiwane są piksele, których prędkość ucieczki różni się
+ * od któregoś z czterech sąsiadów, i tylko dla nich liczone są dodatkowe
+ * próbki wg {@link SamplePattern}. Kolor piksela to średnia kolorów próbek.
+ * Koszt rośnie z długością brzegów w obrazie, a nie z jego polem.
+ */
+final class Antialiasing {
+
+    private Antialiasing() {
+    }
+
+    /**
+     * Oznacza piksele krawędzi: całkowita prędkość ucieczki (bez części
+     * ułamkowej kolorowania płynnego) różni się od prędkości któregoś
+     * z sąsiadów w wierszu albo kolumnie.
+     *
+     * @param counts    prędkości ucieczki widoku <i>w</i> x <i>h</i>
+     * @param steps     liczba części, na które podzielona jest iteracja
+     * @param cancelled zwraca true, gdy liczenie należy przerwać
+     * @return 1 dla pikseli krawędzi, 0 dla pozostałych
+     * @throws CancellationException jeżeli liczenie zostało przerwane
+     */
+    static byte[] edges(int[] counts, int w, int h, int steps, int threads, BooleanSupplier cancelled)
+            throws CancellationException {
+        byte[] edges = new byte[w * h];
+        TileRenderer.render(threads, w, h, cancelled, (y, x0, x1) -> {
+            int row = y * w;
+            for (int x = x0; x < x1; x++) {
+                int c = counts[row + x] / steps;
+                boolean edge = x > 0 && counts[row + x - 1] / steps != c
+                        || x + 1 < w && counts[row + x + 1] / steps != c
+                        || y > 0 && counts[row - w + x] / steps != c
+                        || y + 1 < h && counts[row + w + x] / steps != c;
+                if (edge)
+                    edges[row + x] = 1;
+            }
+        });
+        return edges;
+    }
+
+    /**
+     * Kolor piksela (<i>x</i>, <i>y</i>) jako średnia kolorów jego próbek.
+     * Próbka (0, 0) to sam piksel, więc bierze się jego policzoną wartość.
+     *
+     * @param kernel  algorytm, którym liczony był widok
+     * @param fine    widok gęstszy o skalę wzoru próbek ({@link Viewport#fine})
+     * @param pattern rozmieszczenie próbek
+     * @param count   policzona prędkość ucieczki piksela
+     * @param lut     kolory kolejnych prędkości ucieczki
+     * @return kolor ARGB
+     */
+    static int colour(EscapeKernel kernel, Viewport fine, SamplePattern pattern, int x, int y,
+                      int count, int[] lut) {
+        int s = pattern.scale;
+        int a = 0, r = 0, g = 0, b = 0;
+        int n = pattern.size();
+        for (int k = 0; k < n; k++) {
+            int i = pattern.x[k];
+            int j = pattern.y[k];
+            int v = i == 0 && j == 0 ? count : kernel.escape(fine, x * s + i, y * s + j);
+            int argb = lut[v];
+            a += argb >>> 24;
+            r += (argb >> 16) & 0xFF;
+            g += (argb >> 8) & 0xFF;
+            b += argb & 0xFF;
+        }
+        int half = n / 2;
+        return (a + half) / n << 24 | (r + half) / n << 16 | (g + half) / n << 8 | (b + half) / n;
+    }
+}
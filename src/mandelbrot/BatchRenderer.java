@@ -0,0 +1,225 @@
+package mandelbrot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renderowanie z wiersza poleceń, bez JavaFX i bez ekranu.
+ * Obraz liczony jest pasami wierszy i od razu zapisywany do pliku PNG
+ * lub PPM, więc zużycie pamięci zależy od szerokości i wysokości pasa,
+ * a nie od rozmiaru obrazu.
+ * <p>
+ * Wyrównanie histogramem nie jest dostępne, bo wymaga prędkości ucieczki
+ * całego obrazu przed zapisaniem pierwszego wiersza.
+ * Z opcją <tt>-workers</tt> pasy liczą węzły {@link TileWorker}
+ * w innych procesach ({@link DistributedRenderer}).
+ */
+public class BatchRenderer {
+
+    private static final String USAGE = String.join("\n",
+            "Użycie: java mandelbrot.BatchRenderer [opcje] plik.png|plik.ppm|plik.mbr",
+            "  plik .mbr zapisuje prędkości ucieczki zamiast kolorów",
+            "  -input PLIK.mbr     koloruje zapisane prędkości ucieczki zamiast liczyć",
+            "  -w SZEROKOŚĆ        szerokość obrazu w pikselach (1920)",
+            "  -h WYSOKOŚĆ         wysokość obrazu w pikselach (1080)",
+            "  -re1 -im1 -re2 -im2 rogi widoku (-2.5 -1.125 1.5 1.125)",
+            "  -N ITERACJE|auto    liczba iteracji; auto dobiera ją do widoku (100)",
+            "  -r PROMIEŃ          promień ucieczki (2)",
+            "  -kernel NAZWA       complex|primitive|vector|double_double|perturbation (primitive)",
+            "  -threads LICZBA     liczba wątków (liczba procesorów)",
+            "  -band WIERSZE       wysokość pasa liczonego naraz (64)",
+            "  -palette NAZWA      classic|ocean (classic)",
+            "  -smooth             kolorowanie płynne",
+            "  -subdivision        podział widoku na prostokąty o jednolitym brzegu",
+            "  -distance           kolorowanie odległością od zbioru, tło wypełniane kołami",
+            "  -antialias NAZWA    wygładzanie krawędzi: grid2|rotated4|grid4",
+            "  -formula WZÓR       własny wzór iteracji, np. \"z^3 + c\" (z^2 + c)",
+            "  -julia RE,IM        zbiór Julii o stałej c = RE + IM*i",
+            "  -workers HOST:PORT,...  liczy w węzłach TileWorker (pasy -band dzielone między węzły)");
+
+    //N dobierane przez IterationPolicy
+    private static final int AUTO = -1;
+
+    private BigDecimal re1 = new BigDecimal("-2.5");
+    private BigDecimal im1 = new BigDecimal("-1.125");
+    private BigDecimal re2 = new BigDecimal("1.5");
+    private BigDecimal im2 = new BigDecimal("1.125");
+    private int w = 1920;
+    private int h = 1080;
+    private int N = 100;
+    private double r = 2;
+    private int band = TileRenderer.TILE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private MandelRenderer.Kernel kernel = MandelRenderer.Kernel.PRIMITIVE;
+    private Palette palette = Palette.CLASSIC;
+    private boolean smooth = false;
+    private boolean subdivision = false;
+    private boolean distance = false;
+    private Formula formula;
+    private Complex julia;
+    private SamplePattern antialias;
+    private String file;
+    private String input;
+    private List<InetSocketAddress> workers;
+
+    public static void main(String[] args) {
+        BatchRenderer batch = new BatchRenderer();
+        try {
+            batch.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            long start = System.nanoTime();
+            batch.render();
+            System.err.printf(Locale.ROOT, "%s: %dx%d w %.1f s%n", batch.file, batch.w, batch.h,
+                    (System.nanoTime() - start) * 1e-9);
+        } catch (IOException e) {
+            System.err.println("Błąd zapisu: " + e.getMessage());
+            System.exit(1);
+        } catch (UncheckedIOException e) {
+            System.err.println("Błąd węzłów: " + e.getCause().getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parse(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-w": w = Integer.parseInt(value(args, ++i)); break;
+                    case "-h": h = Integer.parseInt(value(args, ++i)); break;
+                    case "-re1": re1 = new BigDecimal(value(args, ++i)); break;
+                    case "-im1": im1 = new BigDecimal(value(args, ++i)); break;
+                    case "-re2": re2 = new BigDecimal(value(args, ++i)); break;
+                    case "-im2": im2 = new BigDecimal(value(args, ++i)); break;
+                    case "-N":
+                        String n = value(args, ++i);
+                        N = n.equals("auto") ? AUTO : Integer.parseInt(n);
+                        break;
+                    case "-r": r = Double.parseDouble(value(args, ++i)); break;
+                    case "-band": band = Integer.parseInt(value(args, ++i)); break;
+                    case "-threads": threads = Integer.parseInt(value(args, ++i)); break;
+                    case "-kernel":
+                        kernel = MandelRenderer.Kernel.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "-palette": palette = palette(value(args, ++i)); break;
+                    case "-input": input = value(args, ++i); break;
+                    case "-workers": workers = DistributedRenderer.parseWorkers(value(args, ++i)); break;
+                    case "-smooth": smooth = true; break;
+                    case "-subdivision": subdivision = true; break;
+                    case "-distance": distance = true; break;
+                    case "-antialias": antialias = SamplePattern.valueOf(value(args, ++i)); break;
+                    case "-formula": formula = Formula.parse(value(args, ++i)); break;
+                    case "-julia": julia = julia(value(args, ++i)); break;
+                    default:
+                        if (args[i].startsWith("-") || file != null)
+                            throw new IllegalArgumentException("Nieznany argument: " + args[i]);
+                        file = args[i];
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Niepoprawna liczba: " + e.getMessage());
+        }
+
+        if (file == null)
+            throw new IllegalArgumentException("Brak pliku wyjściowego");
+        if (!file.endsWith(".png") && !file.endsWith(".ppm") && !file.endsWith(".mbr"))
+            throw new IllegalArgumentException("Nieobsługiwany format pliku: " + file);
+        if (input != null && file.endsWith(".mbr"))
+            throw new IllegalArgumentException("Z pliku .mbr można zapisać tylko obraz");
+        if (w < 1 || h < 1 || band < 1 || threads < 1 || (N < 1 && N != AUTO))
+            throw new IllegalArgumentException("Rozmiary, N, liczba wątków i pas muszą być dodatnie");
+        if ((long) w * Math.min(band, h) > Integer.MAX_VALUE / 4)
+            throw new IllegalArgumentException("Pas za duży dla szerokości " + w);
+    }
+
+    private static Complex julia(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 2)
+            throw new IllegalArgumentException("Stała zbioru Julii musi mieć postać RE,IM: " + value);
+        return new Complex(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Brak wartości dla " + args[i - 1]);
+        return args[i];
+    }
+
+    static Palette palette(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "classic": return Palette.CLASSIC;
+            case "ocean": return Palette.OCEAN;
+            default: throw new IllegalArgumentException("Nieznana paleta: " + name);
+        }
+    }
+
+    private void render() throws IOException {
+        if (input != null) {
+            try (IterationRaster raster = IterationRaster.open(Path.of(input))) {
+                w = raster.width();
+                h = raster.height();
+                raster.recolour(palette, band, RowWriter.create(Path.of(file), w, h));
+            }
+            return;
+        }
+
+        Viewport v = new Viewport(re1, im1, re2, im2, w, h);
+        if (N == AUTO) {
+            N = IterationPolicy.choose(v, r, threads, () -> false);
+            System.err.println("N = " + N);
+        }
+        MandelRenderer mr = workers == null
+                ? new MandelRenderer(r, N)
+                : new DistributedRenderer(r, N, workers);
+        try {
+            render(mr, v);
+        } finally {
+            if (mr instanceof DistributedRenderer)
+                ((DistributedRenderer) mr).close();
+        }
+    }
+
+    private void render(MandelRenderer mr, Viewport v) throws IOException {
+        mr.setThreads(threads);
+        mr.setKernel(kernel);
+        mr.setPalette(palette);
+        mr.setSmooth(smooth);
+        mr.setSubdivision(subdivision);
+        mr.setDistanceEstimation(distance);
+        mr.setFormula(formula);
+        mr.setJulia(julia);
+        mr.setAntialiasing(antialias);
+
+        if (file.endsWith(".mbr")) {
+            IterationRaster.save(mr, v, band, Path.of(file));
+            return;
+        }
+
+        // przy wygładzaniu pas ma po wierszu zapasu z każdej strony,
+        // żeby krawędzie na granicy pasów były widoczne
+        int margin = antialias != null ? 1 : 0;
+        int[] argb = new int[w * (Math.min(band, h) + 2 * margin)];
+        try (RowWriter writer = RowWriter.create(Path.of(file), w, h)) {
+            for (int y = 0; y < h; y += band) {
+                int rows = Math.min(band, h - y);
+                int top = Math.min(margin, y);
+                int bottom = Math.min(margin, h - y - rows);
+                mr.render(v.rows(y - top, rows + top + bottom), IntBuffer.wrap(argb), () -> false);
+                if (top > 0)
+                    System.arraycopy(argb, top * w, argb, 0, rows * w);
+                writer.write(argb, rows);
+            }
+        }
+    }
+}
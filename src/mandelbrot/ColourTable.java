@@ -0,0 +1,164 @@
+package mandelbrot;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Tablice kolorów indeksowane prędkością ucieczki, dzięki którym
+ * kolorowanie piksela to jedno odwołanie do tablicy.
+ * Tablica ma <tt>N * steps + 1</tt> pozycji; ostatnia (punkty zbioru) jest czarna.
+ */
+class ColourTable {
+
+    private static final int BLACK = 0xFF000000;
+
+    //liczba fragmentów, na które dzielona jest tablica przy liczeniu histogramu
+    private static final int CHUNKS = 256;
+
+    //liczba zapamiętanych tablic; N zmienia się z powiększeniem, więc
+    //trzymane są tylko ostatnio używane
+    static final int MAX_TABLES = 8;
+
+    //tablice zwykłego kolorowania dla (paleta, N, kroki), od najdawniej użytej
+    private static final LinkedHashMap<Key, int[]> tables = new LinkedHashMap<>(16, 0.75f, true);
+
+    private ColourTable() {
+    }
+
+    /**
+     * Tablica kolorów, w której kolor zależy liniowo od prędkości ucieczki
+     *
+     * @param palette paleta
+     * @param N       maksymalna liczba iteracji
+     * @param steps   liczba kroków na iterację (1 bez części ułamkowej)
+     * @return tablica kolorów, współdzielona - nie wolno jej zmieniać
+     */
+    static int[] linear(Palette palette, int N, int steps) {
+        Key key = new Key(palette, N, steps);
+        synchronized (tables) {
+            int[] lut = tables.get(key);
+            if (lut != null)
+                return lut;
+        }
+        // budowana poza blokadą; gdy dwa wątki zbudują tę samą, zostaje pierwsza
+        int[] lut = build(palette, N, steps);
+        synchronized (tables) {
+            int[] old = tables.putIfAbsent(key, lut);
+            if (old != null)
+                return old;
+            Iterator<int[]> it = tables.values().iterator();
+            while (tables.size() > MAX_TABLES) {
+                it.next();
+                it.remove();
+            }
+            return lut;
+        }
+    }
+
+    /**
+     * Buduje tablicę jak {@link #linear}, ale bez zapamiętywania, np. gdy
+     * <i>N</i> zmienia się z każdą klatką
+     *
+     * @return nowa tablica kolorów
+     */
+    static int[] build(Palette palette, int N, int steps) {
+        int last = N * steps;
+        int[] lut = new int[last + 1];
+        for (int i = 0; i < last; i++)
+            lut[i] = palette.colour((double) i / (double) last);
+        lut[last] = BLACK;
+        return lut;
+    }
+
+    /**
+     * Tablica kolorów wyrównanych histogramem: kolor zależy od tego, jaka
+     * część uciekających pikseli obrazu ucieka nie później, więc paleta
+     * rozkłada się równomiernie niezależnie od <i>N</i> i powiększenia.
+     * Histogram liczony jest równolegle z gotowych prędkości ucieczki.
+     *
+     * @param palette paleta
+     * @param N       maksymalna liczba iteracji
+     * @param steps   liczba kroków na iterację
+     * @param counts  prędkości ucieczki pikseli
+     * @param length  liczba pikseli w <i>counts</i>
+     * @param threads liczba wątków
+     * @return tablica kolorów dla tego obrazu
+     */
+    static int[] histogram(Palette palette, int N, int steps, int[] counts, int length, int threads) {
+        int last = N * steps;
+
+        // histogram części całkowitych, bez punktów zbioru
+        long[] hist = threads > 1
+                ? TileRenderer.pool(threads).submit(() -> count(IntStream.range(0, CHUNKS).parallel(), N, steps, counts, length)).join()
+                : count(IntStream.range(0, CHUNKS), N, steps, counts, length);
+
+        // dystrybuanta: cdf[n] = część pikseli o prędkości mniejszej niż n
+        double[] cdf = new double[N + 2];
+        long total = 0;
+        for (int n = 0; n <= N; n++)
+            total += hist[n];
+        long sum = 0;
+        for (int n = 0; n <= N; n++) {
+            cdf[n] = total == 0 ? 0 : (double) sum / total;
+            sum += hist[n];
+        }
+        cdf[N + 1] = 1;
+
+        int[] lut = new int[last + 1];
+        for (int i = 0; i < last; i++) {
+            int n = i / steps;
+            double f = (double) (i % steps) / steps;
+            lut[i] = palette.colour(cdf[n] + f * (cdf[n + 1] - cdf[n]));
+        }
+        lut[last] = BLACK;
+        return lut;
+    }
+
+    /**
+     * Zlicza piksele o danej części całkowitej prędkości ucieczki;
+     * każdy fragment tablicy zliczany jest do osobnego histogramu
+     */
+    private static long[] count(IntStream chunks, int N, int steps, int[] counts, int length) {
+        int last = N * steps;
+        return chunks.collect(
+                () -> new long[N + 1],
+                (hist, c) -> {
+                    int from = (int) ((long) length * c / CHUNKS);
+                    int to = (int) ((long) length * (c + 1) / CHUNKS);
+                    for (int i = from; i < to; i++) {
+                        if (counts[i] < last)
+                            hist[counts[i] / steps]++;
+                    }
+                },
+                (a, b) -> {
+                    for (int n = 0; n <= N; n++)
+                        a[n] += b[n];
+                });
+    }
+
+    private static final class Key {
+        final Palette palette;
+        final int N, steps;
+
+        Key(Palette palette, int N, int steps) {
+            this.palette = palette;
+            this.N = N;
+            this.steps = steps;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return palette == k.palette && N == k.N && steps == k.steps;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(palette), N, steps);
+        }
+    }
+}
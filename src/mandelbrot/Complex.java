@@ -127,7 +127,7 @@ public class Complex implements Field<Complex> {
      * @return Kwadrat modułu liczby zespolonej
      */
     public double sqrAbs() {
-        return (Math.pow(this.r, 2) + Math.pow(this.i, 2));
+        return this.r * this.r + this.i * this.i;
     }
 
     /**
@@ -253,36 +253,53 @@ public class Complex implements Field<Complex> {
 
     /**
      * Zwraca String reprezentujący wartość liczby zespolonej.
-     * String jest w formacie "-1.23+4.56i"
+     * String jest w formacie "-1.23+4.56i", z jednym znakiem przed częścią
+     * urojoną, także dla -0.0 i NaN, więc {@link #valueOf} go odczyta.
      *
      * @return String reprezentujący liczbę zespoloną
      */
     @Override
     public String toString() {
 
-        if (this.i >= 0)
+        // -0.0 ma znak minus, a NaN żadnego znaku
+        if (Double.isNaN(this.i) || Math.copySign(1.0, this.i) > 0)
             return String.valueOf(this.r) + "+" + String.valueOf(this.i) + "i";
         return String.valueOf(this.r) + String.valueOf(this.i) + "i";
     }
 
     /**
-     * Zwraca Complex z wartościami z argumentu s
+     * Zwraca Complex z wartościami z argumentu s. Części mogą mieć
+     * wykładnik, np. "1.0E-5-2e+3i"; napis bez "i" to liczba rzeczywista,
+     * a jedna liczba z "i" - urojona.
      *
      * @param s String z wartością liczby zespolonej
      * @return liczbę zespoloną o wartości reprezentowanej przez s
+     * @throws NumberFormatException jeżeli s nie jest liczbą zespoloną
      */
     public static Complex valueOf(String s) {
 
         // pozbycie się białych spacji z przodu i z tyłu
         s = s.trim();
 
-        // indeks znaku '+' lub '-' stojącego przy części urojonej
-        int beginOfImag = s.indexOf('-', 1) * s.indexOf('+', 1) * (-1);
+        if (!s.endsWith("i"))
+            return new Complex(Double.parseDouble(s));
+
+        // indeks znaku '+' lub '-' stojącego przy części urojonej;
+        // znak tuż po 'e' należy do wykładnika
+        int beginOfImag = s.length() - 2;
+        while (beginOfImag > 0) {
+            char c = s.charAt(beginOfImag);
+            char before = s.charAt(beginOfImag - 1);
+            if ((c == '+' || c == '-') && before != 'e' && before != 'E')
+                break;
+            beginOfImag--;
+        }
 
+        String imag = s.substring(Math.max(beginOfImag, 0), s.length() - 1);
+        if (beginOfImag <= 0)
+            return new Complex(0, Double.parseDouble(imag));
         String real = s.substring(0, beginOfImag);
-        String imag = s.substring(beginOfImag, s.length() - 1);
-
-        return new Complex(Double.valueOf(real), Double.valueOf(imag));
+        return new Complex(Double.parseDouble(real), Double.parseDouble(imag));
     }
 
     /**
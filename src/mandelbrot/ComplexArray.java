@@ -0,0 +1,349 @@
+package mandelbrot;
+
+import java.util.Arrays;
+
+/**
+ * Tablica liczb zespolonych przechowywana jako dwie tablice double:
+ * części rzeczywistych i urojonych. W odróżnieniu od tablicy obiektów
+ * {@link Complex} liczby leżą w pamięci jedna za drugą, a działania
+ * wykonywane są w miejscu na całych zakresach, bez tworzenia obiektów.
+ * <p>
+ * Pętle działań są proste (jeden licznik, bez wywołań i rozgałęzień),
+ * więc kompilator JIT może je wektoryzować. Wyniki są co do bitu równe
+ * działaniom {@link Complex} wykonanym na kolejnych elementach.
+ * <p>
+ * Działania dwuargumentowe łączą elementy o tych samych indeksach;
+ * argumentem może być ta sama tablica, np. <tt>a.mul(0, n, a)</tt>
+ * podnosi elementy do kwadratu.
+ */
+public class ComplexArray implements Field<ComplexArray> {
+
+    private final double[] re, im;
+
+    /**
+     * Konstruuje tablicę <i>length</i> zer
+     *
+     * @param length liczba elementów
+     */
+    public ComplexArray(int length) {
+        this(new double[length], new double[length]);
+    }
+
+    /**
+     * Konstruuje tablicę na podanych tablicach części, bez kopiowania
+     *
+     * @param re części rzeczywiste
+     * @param im części urojone, tej samej długości
+     * @throws IllegalArgumentException jeżeli długości są różne
+     */
+    public ComplexArray(double[] re, double[] im) {
+        if (re.length != im.length)
+            throw new IllegalArgumentException("Różne długości części: " + re.length + " i " + im.length);
+        this.re = re;
+        this.im = im;
+    }
+
+    /**
+     * Konstruuje tablicę o wartościach kolejnych liczb <i>c</i>
+     *
+     * @param c liczby zespolone
+     */
+    public ComplexArray(Complex... c) {
+        this(c.length);
+        for (int k = 0; k < c.length; k++)
+            set(k, c[k]);
+    }
+
+    /**
+     * Konstruuje kopię tablicy <i>a</i>
+     *
+     * @param a tablica liczb zespolonych
+     */
+    public ComplexArray(ComplexArray a) {
+        this(a.re.clone(), a.im.clone());
+    }
+
+    public int length() {
+        return re.length;
+    }
+
+    /**
+     * Części rzeczywiste; zmiany tablicy zmieniają tę tablicę liczb
+     *
+     * @return tablica części rzeczywistych
+     */
+    public double[] re() {
+        return re;
+    }
+
+    /**
+     * Części urojone; zmiany tablicy zmieniają tę tablicę liczb
+     *
+     * @return tablica części urojonych
+     */
+    public double[] im() {
+        return im;
+    }
+
+    /**
+     * Zwraca element <i>k</i> jako nowy obiekt
+     *
+     * @param k indeks
+     * @return nową liczbę zespoloną równą elementowi <i>k</i>
+     */
+    public Complex get(int k) {
+        return new Complex(re[k], im[k]);
+    }
+
+    /**
+     * Ustawia element <i>k</i> na wartość <i>c</i>
+     */
+    public void set(int k, Complex c) {
+        set(k, c.re(), c.im());
+    }
+
+    /**
+     * Ustawia element <i>k</i> na <i>r</i> + <i>i</i>*i
+     */
+    public void set(int k, double r, double i) {
+        re[k] = r;
+        im[k] = i;
+    }
+
+    /**
+     * Dodaje elementy <i>b</i> do elementów od <i>from</i> do <i>to</i> (wyłącznie)
+     *
+     * @param from pierwszy indeks
+     * @param to   indeks za ostatnim
+     * @param b    składniki
+     * @return ta tablica
+     */
+    public ComplexArray add(int from, int to, ComplexArray b) {
+        check(from, to, b);
+        double[] ar = re, ai = im, br = b.re, bi = b.im;
+        for (int k = from; k < to; k++) {
+            ar[k] += br[k];
+            ai[k] += bi[k];
+        }
+        return this;
+    }
+
+    /**
+     * Odejmuje elementy <i>b</i> od elementów od <i>from</i> do <i>to</i> (wyłącznie)
+     *
+     * @param from pierwszy indeks
+     * @param to   indeks za ostatnim
+     * @param b    odjemniki
+     * @return ta tablica
+     */
+    public ComplexArray sub(int from, int to, ComplexArray b) {
+        check(from, to, b);
+        double[] ar = re, ai = im, br = b.re, bi = b.im;
+        for (int k = from; k < to; k++) {
+            ar[k] -= br[k];
+            ai[k] -= bi[k];
+        }
+        return this;
+    }
+
+    /**
+     * Mnoży elementy od <i>from</i> do <i>to</i> (wyłącznie) przez elementy <i>b</i>
+     *
+     * @param from pierwszy indeks
+     * @param to   indeks za ostatnim
+     * @param b    czynniki
+     * @return ta tablica
+     */
+    public ComplexArray mul(int from, int to, ComplexArray b) {
+        check(from, to, b);
+        double[] ar = re, ai = im, br = b.re, bi = b.im;
+        for (int k = from; k < to; k++) {
+            // te same działania co Complex.mul
+            double xr = ar[k], xi = ai[k], yr = br[k], yi = bi[k];
+            ar[k] = xr * yr - xi * yi;
+            ai[k] = xr * yi + xi * yr;
+        }
+        return this;
+    }
+
+    /**
+     * Mnoży elementy od <i>from</i> do <i>to</i> (wyłącznie) przez liczbę <i>c</i>
+     *
+     * @param from pierwszy indeks
+     * @param to   indeks za ostatnim
+     * @param c    czynnik
+     * @return ta tablica
+     */
+    public ComplexArray mul(int from, int to, Complex c) {
+        check(from, to, this);
+        double[] ar = re, ai = im;
+        double yr = c.re(), yi = c.im();
+        for (int k = from; k < to; k++) {
+            double xr = ar[k], xi = ai[k];
+            ar[k] = xr * yr - xi * yi;
+            ai[k] = xr * yi + xi * yr;
+        }
+        return this;
+    }
+
+    /**
+     * Dzieli elementy od <i>from</i> do <i>to</i> (wyłącznie) przez elementy <i>b</i>.
+     * Tak jak {@link Complex#div}, dzielenie przez 0 rzuca wyjątek; wtedy
+     * żaden element nie jest zmieniany.
+     *
+     * @param from pierwszy indeks
+     * @param to   indeks za ostatnim
+     * @param b    dzielniki
+     * @return ta tablica
+     * @throws ArithmeticException jeżeli któryś dzielnik jest równy 0
+     */
+    public ComplexArray div(int from, int to, ComplexArray b) throws ArithmeticException {
+        check(from, to, b);
+        double[] ar = re, ai = im, br = b.re, bi = b.im;
+        // sprawdzenie w osobnej pętli, żeby pętla dzieląca nie miała rozgałęzień
+        for (int k = from; k < to; k++) {
+            if (br[k] == 0 && bi[k] == 0)
+                throw new ArithmeticException("Dzielenie przez 0 (indeks " + k + ")");
+        }
+        for (int k = from; k < to; k++) {
+            // te same działania co Complex.div
+            double xr = ar[k], xi = ai[k], yr = br[k], yi = bi[k];
+            double mianownik = (yr * yr) + (yi * yi);
+            ar[k] = (xr * yr + xi * yi) / mianownik;
+            ai[k] = (xi * yr - xr * yi) / mianownik;
+        }
+        return this;
+    }
+
+    /**
+     * Kwadraty modułów elementów od <i>from</i> do <i>to</i> (wyłącznie)
+     *
+     * @param from pierwszy indeks
+     * @param to   indeks za ostatnim
+     * @param out  tablica wyników, pod tymi samymi indeksami
+     */
+    public void sqrAbs(int from, int to, double[] out) {
+        check(from, to, out);
+        double[] ar = re, ai = im;
+        for (int k = from; k < to; k++)
+            out[k] = ar[k] * ar[k] + ai[k] * ai[k];
+    }
+
+    /**
+     * Moduły elementów od <i>from</i> do <i>to</i> (wyłącznie)
+     *
+     * @param from pierwszy indeks
+     * @param to   indeks za ostatnim
+     * @param out  tablica wyników, pod tymi samymi indeksami
+     */
+    public void abs(int from, int to, double[] out) {
+        check(from, to, out);
+        double[] ar = re, ai = im;
+        for (int k = from; k < to; k++)
+            out[k] = Math.sqrt(ar[k] * ar[k] + ai[k] * ai[k]);
+    }
+
+    /**
+     * Fazy elementów od <i>from</i> do <i>to</i> (wyłącznie), z przedziału
+     * <i>-pi</i> do <i>pi</i>. Math.atan2 nie jest wektoryzowana, więc ta
+     * pętla liczy element po elemencie.
+     *
+     * @param from pierwszy indeks
+     * @param to   indeks za ostatnim
+     * @param out  tablica wyników, pod tymi samymi indeksami
+     */
+    public void phase(int from, int to, double[] out) {
+        check(from, to, out);
+        double[] ar = re, ai = im;
+        for (int k = from; k < to; k++)
+            out[k] = Math.atan2(ai[k], ar[k]);
+    }
+
+    /**
+     * Dodaje elementy <i>t</i> do wszystkich elementów
+     *
+     * @param t tablica tej samej długości
+     * @return ta tablica
+     */
+    @Override
+    public ComplexArray add(ComplexArray t) {
+        return add(0, length(), t);
+    }
+
+    /**
+     * Odejmuje elementy <i>t</i> od wszystkich elementów
+     *
+     * @param t tablica tej samej długości
+     * @return ta tablica
+     */
+    @Override
+    public ComplexArray sub(ComplexArray t) {
+        return sub(0, length(), t);
+    }
+
+    /**
+     * Mnoży wszystkie elementy przez elementy <i>t</i>
+     *
+     * @param t tablica tej samej długości
+     * @return ta tablica
+     */
+    @Override
+    public ComplexArray mul(ComplexArray t) {
+        return mul(0, length(), t);
+    }
+
+    /**
+     * Dzieli wszystkie elementy przez elementy <i>t</i>
+     *
+     * @param t tablica tej samej długości
+     * @return ta tablica
+     * @throws ArithmeticException jeżeli któryś dzielnik jest równy 0
+     */
+    @Override
+    public ComplexArray div(ComplexArray t) throws ArithmeticException {
+        return div(0, length(), t);
+    }
+
+    /**
+     * Zwraca String w formacie "[-1.23+4.56i, 0.0+1.0i]"
+     *
+     * @return String reprezentujący tablicę
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int k = 0; k < re.length; k++) {
+            if (k > 0)
+                sb.append(", ");
+            sb.append(get(k));
+        }
+        return sb.append(']').toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ComplexArray))
+            return false;
+        ComplexArray a = (ComplexArray) o;
+        return Arrays.equals(re, a.re) && Arrays.equals(im, a.im);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(re) + Arrays.hashCode(im);
+    }
+
+    /**
+     * Sprawdza zakres przed pętlą, żeby w pętli nie było sprawdzeń
+     * poza tymi, które kompilator JIT potrafi usunąć
+     */
+    private void check(int from, int to, ComplexArray b) {
+        check(from, to, b.re);
+    }
+
+    private void check(int from, int to, double[] out) {
+        if (from < 0 || from > to || to > re.length || to > out.length)
+            throw new IndexOutOfBoundsException("Zakres " + from + ".." + to
+                    + " poza tablicą o długości " + Math.min(re.length, out.length));
+    }
+}
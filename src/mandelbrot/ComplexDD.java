@@ -0,0 +1,282 @@
+package mandelbrot;
+
+import java.math.BigDecimal;
+
+/**
+ * Liczba zespolona o częściach zapisanych jako double-double: suma dwóch
+ * liczb double, starszej i młodszej, co daje około 106 bitów mantysy.
+ * Działania zmieniają obiekt, na którym są wywołane, tak jak w {@link Complex}.
+ */
+public class ComplexDD implements Field<ComplexDD> {
+
+    //części starsze i młodsze
+    private double rh, rl, ih, il;
+
+    /**
+     * Wynik działania pomocniczego: liczba double-double <tt>hi + lo</tt>.
+     * Obiekty żyją tylko w obrębie jednego działania, więc po wkompilowaniu
+     * metod pomocniczych JIT trzyma je w rejestrach.
+     */
+    private static final class DD {
+        final double hi, lo;
+
+        DD(double hi, double lo) {
+            this.hi = hi;
+            this.lo = lo;
+        }
+    }
+
+    /**
+     * Konstruuje liczbę <i>ComplexDD</i> = 0
+     */
+    public ComplexDD() {
+        this(0d, 0d);
+    }
+
+    /**
+     * Konstruuje liczbę <i>ComplexDD</i> = <i>r</i> + <i>i</i>*i
+     */
+    public ComplexDD(double r, double i) {
+        this.rh = r;
+        this.ih = i;
+    }
+
+    /**
+     * Konstruuje liczbę <i>ComplexDD</i> o wartości równej liczbie c
+     *
+     * @param c liczba ComplexDD
+     */
+    public ComplexDD(ComplexDD c) {
+        setVal(c);
+    }
+
+    /**
+     * Konstruuje liczbę <i>ComplexDD</i> najbliższą <i>r</i> + <i>i</i>*i
+     *
+     * @param r część rzeczywista
+     * @param i część urojona
+     */
+    public ComplexDD(BigDecimal r, BigDecimal i) {
+        this.rh = r.doubleValue();
+        this.rl = r.subtract(new BigDecimal(rh)).doubleValue();
+        this.ih = i.doubleValue();
+        this.il = i.subtract(new BigDecimal(ih)).doubleValue();
+    }
+
+    /**
+     * Dodaje liczbę c
+     *
+     * @param c dodawana liczba ComplexDD
+     * @return ten obiekt
+     */
+    public ComplexDD add(ComplexDD c) {
+        DD r = ddAdd(rh, rl, c.rh, c.rl);
+        DD i = ddAdd(ih, il, c.ih, c.il);
+        return set(r, i);
+    }
+
+    /**
+     * Dodaje liczbę <i>r</i> + <i>i</i>*i podaną w double
+     *
+     * @param r część rzeczywista
+     * @param i część urojona
+     * @return ten obiekt
+     */
+    public ComplexDD add(double r, double i) {
+        DD re = ddAdd(rh, rl, r, 0);
+        DD im = ddAdd(ih, il, i, 0);
+        return set(re, im);
+    }
+
+    /**
+     * Odejmuje liczbę c
+     *
+     * @param c odjemnik typu ComplexDD
+     * @return ten obiekt
+     */
+    public ComplexDD sub(ComplexDD c) {
+        DD r = ddAdd(rh, rl, -c.rh, -c.rl);
+        DD i = ddAdd(ih, il, -c.ih, -c.il);
+        return set(r, i);
+    }
+
+    /**
+     * Mnoży z liczbą c
+     *
+     * @param c czynnik mnożenia
+     * @return ten obiekt pomnożony przez c
+     */
+    public ComplexDD mul(ComplexDD c) {
+        DD p = ddMul(rh, rl, c.rh, c.rl);
+        DD q = ddMul(ih, il, c.ih, c.il);
+        DD r = ddAdd(p.hi, p.lo, -q.hi, -q.lo);
+
+        p = ddMul(rh, rl, c.ih, c.il);
+        q = ddMul(ih, il, c.rh, c.rl);
+        DD i = ddAdd(p.hi, p.lo, q.hi, q.lo);
+        return set(r, i);
+    }
+
+    /**
+     * Dzieli przez liczbę c
+     *
+     * @param c dzielnik
+     * @return ten obiekt podzielony przez c
+     * @throws ArithmeticException jeżeli następuje dzielenie przez 0
+     */
+    public ComplexDD div(ComplexDD c) throws ArithmeticException {
+        if (c.rh == 0 && c.ih == 0)
+            throw new ArithmeticException("Dzielenie przez 0");
+
+        DD p = ddMul(c.rh, c.rl, c.rh, c.rl);
+        DD q = ddMul(c.ih, c.il, c.ih, c.il);
+        DD mianownik = ddAdd(p.hi, p.lo, q.hi, q.lo);
+
+        p = ddMul(rh, rl, c.rh, c.rl);
+        q = ddMul(ih, il, c.ih, c.il);
+        DD r = ddAdd(p.hi, p.lo, q.hi, q.lo);
+
+        p = ddMul(ih, il, c.rh, c.rl);
+        q = ddMul(rh, rl, c.ih, c.il);
+        DD i = ddAdd(p.hi, p.lo, -q.hi, -q.lo);
+
+        return set(ddDiv(r.hi, r.lo, mianownik.hi, mianownik.lo),
+                ddDiv(i.hi, i.lo, mianownik.hi, mianownik.lo));
+    }
+
+    private ComplexDD set(DD r, DD i) {
+        rh = r.hi;
+        rl = r.lo;
+        ih = i.hi;
+        il = i.lo;
+        return this;
+    }
+
+    /**
+     * Kwadrat modułu liczby zespolonej, z dokładnością double
+     *
+     * @return Kwadrat modułu liczby zespolonej
+     */
+    public double sqrAbs() {
+        return rh * rh + ih * ih;
+    }
+
+    /**
+     * Część rzeczywista w zaokrągleniu do double
+     *
+     * @return część rzeczywistą liczby zespolonej
+     */
+    public double re() {
+        return rh + rl;
+    }
+
+    /**
+     * Część urojona w zaokrągleniu do double
+     *
+     * @return część urojoną liczby zespolonej
+     */
+    public double im() {
+        return ih + il;
+    }
+
+    /**
+     * Ustawia wartość liczby zespolonej na wartość
+     * równą liczbie zespolonej <i>c</i> podanej w argumencie
+     *
+     * @param c liczba zespolona
+     */
+    public void setVal(ComplexDD c) {
+        this.rh = c.rh;
+        this.rl = c.rl;
+        this.ih = c.ih;
+        this.il = c.il;
+    }
+
+    /**
+     * Zwraca String reprezentujący dokładną wartość liczby zespolonej.
+     * String jest w formacie "-1.23+4.56i", z jednym znakiem przed częścią
+     * urojoną; części nieskończone i NaN zapisywane są jak w {@link Complex}.
+     *
+     * @return String reprezentujący liczbę zespoloną
+     */
+    @Override
+    public String toString() {
+        String i = part(ih, il);
+        if (i.startsWith("-"))
+            return part(rh, rl) + i + "i";
+        return part(rh, rl) + "+" + i + "i";
+    }
+
+    /**
+     * Dokładna wartość części rzeczywistej
+     *
+     * @throws NumberFormatException jeżeli część nie jest skończona
+     */
+    BigDecimal exactRe() {
+        return new BigDecimal(rh).add(new BigDecimal(rl));
+    }
+
+    /**
+     * Dokładna wartość części urojonej
+     *
+     * @throws NumberFormatException jeżeli część nie jest skończona
+     */
+    BigDecimal exactIm() {
+        return new BigDecimal(ih).add(new BigDecimal(il));
+    }
+
+    /**
+     * Dokładna wartość części <i>h</i> + <i>l</i>
+     */
+    private static String part(double h, double l) {
+        if (!Double.isFinite(h) || !Double.isFinite(l))
+            return String.valueOf(h + l);
+        BigDecimal d = new BigDecimal(h).add(new BigDecimal(l));
+        // BigDecimal nie ma ujemnego zera
+        if (d.signum() == 0 && Math.copySign(1.0, h) < 0)
+            return "-0";
+        return d.toString();
+    }
+
+    /**
+     * Suma <i>a</i> + <i>b</i>
+     */
+    private static DD ddAdd(double ah, double al, double bh, double bl) {
+        double s = ah + bh;
+        double bb = s - ah;
+        double e = (ah - (s - bb)) + (bh - bb);
+        double t = al + bl;
+        double tb = t - al;
+        double f = (al - (t - tb)) + (bl - tb);
+        e += t;
+        double u = s + e;
+        e = e - (u - s);
+        e += f;
+        s = u + e;
+        return new DD(s, e - (s - u));
+    }
+
+    /**
+     * Iloczyn <i>a</i> * <i>b</i>
+     */
+    private static DD ddMul(double ah, double al, double bh, double bl) {
+        double p = ah * bh;
+        double e = Math.fma(ah, bh, -p);
+        e += ah * bl + al * bh;
+        double s = p + e;
+        return new DD(s, e - (s - p));
+    }
+
+    /**
+     * Iloraz <i>a</i> / <i>b</i>
+     */
+    private static DD ddDiv(double ah, double al, double bh, double bl) {
+        double q1 = ah / bh;
+        // reszta a - q1 * b
+        DD p = ddMul(bh, bl, q1, 0);
+        DD r = ddAdd(ah, al, -p.hi, -p.lo);
+        double q2 = r.hi / bh;
+        double s = q1 + q2;
+        return new DD(s, q2 - (s - q1));
+    }
+}
@@ -1,7 +1,30 @@
 package mandelbrot;
 
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 
+import java.nio.IntBuffer;
+
 public interface ComplexDrawable {
-    void draw(PixelWriter pw, Complex a, Complex b, int w, int h);
+
+    /**
+     * Rysuje prostokąt o rogach <i>a</i> i <i>b</i>. Domyślnie liczy raster
+     * metodą {@link #draw(IntBuffer, Complex, Complex, int, int)} i przekazuje
+     * go jednym wywołaniem <tt>setPixels</tt>.
+     */
+    default void draw(PixelWriter pw, Complex a, Complex b, int w, int h) {
+        int[] argb = new int[w * h];
+        draw(IntBuffer.wrap(argb), a, b, w, h);
+        pw.setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w);
+    }
+
+    /**
+     * Rysuje prostokąt o rogach <i>a</i> i <i>b</i> do rastra ARGB: piksel
+     * (<i>x</i>, <i>y</i>) trafia pod indeks <tt>y * w + x</tt> bufora,
+     * niezależnie od jego pozycji. Bufor może być bezpośredni, np. bufor
+     * {@link javafx.scene.image.PixelBuffer}.
+     *
+     * @param argb bufor o pojemności co najmniej <tt>w * h</tt>
+     */
+    void draw(IntBuffer argb, Complex a, Complex b, int w, int h);
 }
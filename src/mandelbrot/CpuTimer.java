@@ -0,0 +1,63 @@
+package mandelbrot;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Czas procesora jednego liczenia: wątku, który je rozpoczął, oraz tych
+ * fragmentów pracy, które wykonały dla niego wątki pul. Praca innych
+ * liczeń w tych samych pulach, np. kafelków liczonych zawczasu, nie jest
+ * wliczana. Fragment w wątku puli mierzą {@link #start()} i {@link #stop(long)}.
+ */
+final class CpuTimer {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private final Thread owner = Thread.currentThread();
+    private final long begin = now();
+    private final LongAdder workers = new LongAdder();
+
+    /**
+     * Czas procesora bieżącego wątku albo -1, gdy JVM go nie mierzy
+     */
+    private static long now() {
+        return SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * Początek fragmentu pracy; w wątku, który rozpoczął liczenie, fragment
+     * nie jest mierzony osobno, bo liczy się cały czas tego wątku
+     *
+     * @return odczyt do przekazania {@link #stop(long)}
+     */
+    long start() {
+        return Thread.currentThread() != owner ? now() : -1;
+    }
+
+    /**
+     * Koniec fragmentu pracy rozpoczętego w tym samym wątku
+     *
+     * @param start wynik {@link #start()}
+     */
+    void stop(long start) {
+        if (start < 0)
+            return;
+        long time = now() - start;
+        if (time > 0)
+            workers.add(time);
+    }
+
+    /**
+     * Czas procesora od utworzenia; wywoływana w wątku, który rozpoczął liczenie
+     *
+     * @return czas w nanosekundach, 0 gdy JVM go nie mierzy
+     */
+    long elapsed() {
+        long end = now();
+        if (begin < 0 || end < 0)
+            return 0;
+        return Math.max(end - begin, 0) + workers.sum();
+    }
+}
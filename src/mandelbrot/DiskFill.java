@@ -0,0 +1,120 @@
+package mandelbrot;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Renderowanie odległością z wypełnianiem kół: piksel policzony
+ * {@link DistanceKernel} daje dolne oszacowanie odległości od zbioru,
+ * więc koło o tym promieniu na pewno leży poza zbiorem. Piksele koła
+ * dalsze od zbioru niż {@link DistanceKernel#clearance()} dostają kolor tła
+ * bez liczenia. W szerokich widokach większość pikseli tła jest w ten
+ * sposób wypełniana, a liczone są głównie piksele blisko brzegu.
+ * <p>
+ * Widok dzielony jest na kafelki siatki {@link TileRenderer#TILE}, a koła
+ * wypełniane tylko w obrębie kafelka, więc wynik nie zależy od liczby wątków.
+ */
+final class DiskFill {
+
+    //piksel jeszcze nie policzony
+    private static final int NONE = -1;
+
+    private DiskFill() {
+    }
+
+    /**
+     * Liczy wartości całego widoku <i>v</i> do tablicy <i>out</i>
+     * o rozmiarze <tt>w * h</tt>.
+     *
+     * @param threads   liczba wątków
+     * @param kernel    algorytm odległości, utworzony dla odstępu pikseli <i>v</i>
+     * @param v         widok
+     * @param out       tablica wyników
+     * @param stats     liczniki pikseli policzonych i wypełnionych
+     * @param cancelled zwraca true, gdy liczenie należy przerwać
+     * @param timer     czas procesora liczenia
+     * @throws CancellationException jeżeli liczenie zostało przerwane
+     */
+    static void render(int threads, DistanceKernel kernel, Viewport v, int[] out, FillStats stats,
+                       BooleanSupplier cancelled, CpuTimer timer) throws CancellationException {
+        final int T = TileRenderer.TILE;
+        Arrays.fill(out, 0, v.w * v.h, NONE);
+        int tilesX = (v.w + T - 1) / T;
+        int tilesY = (v.h + T - 1) / T;
+
+        IntConsumer tile = i -> {
+            if (cancelled.getAsBoolean())
+                throw new CancellationException();
+            int x0 = i % tilesX * T;
+            int y0 = i / tilesX * T;
+            long start = timer.start();
+            tile(kernel, v, out, stats, x0, y0, Math.min(x0 + T, v.w), Math.min(y0 + T, v.h));
+            timer.stop(start);
+        };
+
+        // strumień równoległy wykonuje się w puli, z której został uruchomiony
+        if (threads > 1)
+            TileRenderer.pool(threads).submit(() -> IntStream.range(0, tilesX * tilesY).parallel().forEach(tile)).join();
+        else
+            IntStream.range(0, tilesX * tilesY).forEach(tile);
+    }
+
+    /**
+     * Liczy kafelek od (<i>x0</i>, <i>y0</i>) do (<i>x1</i>, <i>y1</i>)
+     * (wyłącznie), pomijając piksele wypełnione wcześniej. Piksele brane są
+     * najpierw z rzadkiej siatki, potem z coraz gęstszych, więc pierwsze
+     * koła są duże i leżą całe w kafelku.
+     */
+    private static void tile(DistanceKernel kernel, Viewport v, int[] out, FillStats stats,
+                             int x0, int y0, int x1, int y1) {
+        double clearance = kernel.clearance();
+        long iterated = 0;
+        long filled = 0;
+        for (int step = TileRenderer.TILE / 2; step >= 1; step /= 2) {
+            for (int y = y0; y < y1; y += step) {
+                double im = v.im(y);
+                for (int x = x0; x < x1; x += step) {
+                    int i = y * v.w + x;
+                    if (out[i] != NONE)
+                        continue;
+                    double d = kernel.distance(v.re(x), im);
+                    out[i] = kernel.value(d);
+                    iterated++;
+                    if (d > clearance)
+                        filled += disk(v, out, x, y, d - clearance, x0, y0, x1, y1);
+                }
+            }
+        }
+        stats.iterated.add(iterated);
+        stats.filled.add(filled);
+    }
+
+    /**
+     * Wypełnia wartością 0 niepoliczone piksele koła o środku (<i>x</i>,
+     * <i>y</i>) i promieniu <i>radius</i>, leżące w kafelku
+     *
+     * @return liczba wypełnionych pikseli
+     */
+    private static int disk(Viewport v, int[] out, int x, int y, double radius,
+                            int x0, int y0, int x1, int y1) {
+        int n = 0;
+        int rows = (int) (radius / v.deltaIm);
+        for (int yy = Math.max(y - rows, y0); yy <= Math.min(y + rows, y1 - 1); yy++) {
+            double dy = (yy - y) * v.deltaIm;
+            double half = Math.sqrt(Math.max(radius * radius - dy * dy, 0)) / v.deltaRe;
+            int from = (int) Math.max(Math.ceil(x - half), x0);
+            int to = (int) Math.min(x + half, x1 - 1);
+            int row = yy * v.w;
+            for (int k = from; k <= to; k++) {
+                if (out[row + k] == NONE) {
+                    out[row + k] = 0;
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,143 @@
+package mandelbrot;
+
+/**
+ * Kolorowanie odległością od zbioru: razem z <i>z</i> liczona jest pochodna
+ * <i>dz</i>/<i>dc</i> = 2<i>z</i> <i>dz</i>/<i>dc</i> + 1, z której dla
+ * punktów uciekających wynika dolne oszacowanie odległości od zbioru
+ * (twierdzenie Koebego o 1/4):
+ * <tt>sinh G / (2 e^G |G'|)</tt>, gdzie <i>G</i> = ln|<i>z</i>| / 2^<i>n</i>.
+ * <p>
+ * Wynik jest liczbą stałoprzecinkową o {@link #STEPS} krokach na iterację,
+ * tak jak w {@link SmoothKernel}, ale nie jest prędkością ucieczki:
+ * punkty dalsze od zbioru niż {@link #SHADE} pikseli dostają 0, a bliższe
+ * coraz więcej, aż do <tt>N * STEPS</tt> przy samym brzegu, tak jak punkty
+ * zbioru. Brzeg rysowany jest więc ostrą linią grubości około piksela,
+ * także tam, gdzie nitki zbioru są cieńsze od piksela.
+ */
+public class DistanceKernel implements EscapeKernel {
+
+    //kroki na jedną iterację
+    public static final int STEPS = 16;
+
+    //odległość w pikselach, od której punkty mają kolor tła
+    static final double SHADE = 2;
+
+    //po ucieczce orbita jest iterowana dalej, aż |z|^2 przekroczy tę wartość,
+    //bo oszacowanie jest dokładne dopiero dla dużych |z|
+    private static final double BAILOUT = 1e20;
+    private static final int EXTRA = 64;
+
+    private final double r2;
+    private final int N;
+    private final double pixel;
+    private final InteriorStats interior;
+
+    /**
+     * @param r        promień ucieczki
+     * @param N        maksymalna liczba iteracji
+     * @param pixel    odstęp pikseli widoku, jednostka odległości w wyniku
+     * @param interior liczniki punktów kardioidy i koła okresu 2,
+     *                 null wyłącza ich rozpoznawanie
+     */
+    public DistanceKernel(double r, int N, double pixel, InteriorStats interior) {
+        this.r2 = r * r;
+        this.N = N;
+        this.pixel = pixel;
+        this.interior = interior;
+    }
+
+    @Override
+    public int escape(double cr, double ci) {
+        return value(distance(cr, ci));
+    }
+
+    /**
+     * Wartość piksela odległego od zbioru o <i>d</i>
+     *
+     * @param d odległość albo liczba ujemna dla punktów, które nie uciekły
+     * @return wartość od 0 (daleko) do <tt>N * STEPS</tt> (brzeg i zbiór)
+     */
+    int value(double d) {
+        int top = N * STEPS;
+        if (d < 0)
+            return top;
+        double t = d / (SHADE * pixel);
+        if (t >= 1)
+            return 0;
+        return (int) ((1 - t) * top);
+    }
+
+    /**
+     * Odległość, o którą dolne oszacowanie w środku koła musi przekraczać
+     * jego promień, żeby wszystkie punkty koła, liczone osobno, dostały 0.
+     * Oszacowanie jest co najwyżej 4e^<i>G</i> razy mniejsze od odległości,
+     * a w otoczeniu zbioru <i>G</i> &lt; 1.
+     */
+    double clearance() {
+        return 4 * Math.E * SHADE * pixel;
+    }
+
+    /**
+     * Dolne oszacowanie odległości punktu <i>c</i> od zbioru
+     *
+     * @return odległość albo -1, jeżeli punkt nie uciekł w <i>N</i> iteracjach
+     */
+    double distance(double cr, double ci) {
+
+        if (interior != null && r2 >= 4) {
+            if (InteriorStats.inCardioid(cr, ci)) {
+                interior.cardioid.increment();
+                return -1;
+            }
+            if (InteriorStats.inBulb(cr, ci)) {
+                interior.bulb.increment();
+                return -1;
+            }
+        }
+
+        double zr = cr;     //z1 = c, dz1/dc = 1
+        double zi = ci;
+        double dr = 1;
+        double di = 0;
+        double zr2 = zr * zr;
+        double zi2 = zi * zi;
+        int n = 2;
+        for (; n <= N; n++) {
+            double t = 2 * (zr * dr - zi * di) + 1;
+            di = 2 * (zr * di + zi * dr);
+            dr = t;
+            // te same działania w tej samej kolejności co w PrimitiveKernel
+            t = zr * zi;
+            zr = zr2 - zi2 + cr;
+            zi = t + t + ci;
+            zr2 = zr * zr;
+            zi2 = zi * zi;
+            if (zr2 + zi2 > r2)
+                break;
+        }
+        if (n > N)
+            return -1;
+
+        for (int k = 0; k < EXTRA && zr2 + zi2 <= BAILOUT; k++) {
+            n++;
+            double t = 2 * (zr * dr - zi * di) + 1;
+            di = 2 * (zr * di + zi * dr);
+            dr = t;
+            t = zr * zi;
+            zr = zr2 - zi2 + cr;
+            zi = t + t + ci;
+            zr2 = zr * zr;
+            zi2 = zi * zi;
+        }
+
+        double m = zr2 + zi2;
+        double dz = Math.hypot(dr, di);
+        if (!(dz < Double.POSITIVE_INFINITY) || m <= 1)
+            return 0;
+        // |z| ln|z| / (2 |dz|) razy (1 - e^-2G) / 2G, czynnik bliski 1 dla małych G
+        double lnZ = 0.5 * Math.log(m);
+        double G = Math.scalb(lnZ, -n);
+        double f = G < 1e-9 ? 1 : -Math.expm1(-2 * G) / (2 * G);
+        return f * Math.sqrt(m) * lnZ / (2 * dz);
+    }
+}
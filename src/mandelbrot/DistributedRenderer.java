@@ -0,0 +1,447 @@
+package mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Koordynator liczenia w wielu procesach: widok dzielony jest na pasy
+ * wierszy, które liczą węzły {@link TileWorker} połączone przez gniazda.
+ * Pas węzła, który zerwał połączenie albo nie odpowiedział w czasie
+ * {@link #setTimeout}, wraca do kolejki. Gdy kolejka jest pusta, wolne
+ * węzły liczą równolegle pasy najdłużej liczone przez inne węzły
+ * i przyjmowany jest wynik, który nadejdzie pierwszy.
+ * <p>
+ * Pasy są liczone przez {@link Viewport#rows}, więc wynik jest co do bitu
+ * równy liczeniu całego widoku w jednym procesie z tym samym algorytmem.
+ * Podział widoku, pamięć kafelków i przenoszenie klatek nie są używane.
+ * Kolorowanie i dodatkowe próbki wygładzania krawędzi liczone są lokalnie,
+ * jak w {@link MandelRenderer}.
+ */
+public class DistributedRenderer extends MandelRenderer implements Closeable {
+
+    private final List<InetSocketAddress> workers;
+
+    //połączenia bezczynne między liczeniami; null, gdy trzeba połączyć od nowa
+    private final Connection[] connections;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "mandelbrot-coordinator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int tileRows = 16;
+    private int timeout = 120_000;
+    private final LongAdder reassigned = new LongAdder();
+
+    /**
+     * @param r       promień ucieczki
+     * @param N       maksymalna liczba iteracji
+     * @param workers adresy węzłów
+     */
+    public DistributedRenderer(double r, int N, List<InetSocketAddress> workers) {
+        super(r, N);
+        if (workers.isEmpty())
+            throw new IllegalArgumentException("Brak węzłów");
+        this.workers = new ArrayList<>(workers);
+        this.connections = new Connection[workers.size()];
+    }
+
+    /**
+     * Odczytuje listę adresów w postaci <tt>host:port,host:port</tt>;
+     * bez portu przyjmowany jest {@link TileWorker#DEFAULT_PORT}
+     *
+     * @param list adresy rozdzielone przecinkami
+     * @return adresy węzłów
+     */
+    public static List<InetSocketAddress> parseWorkers(String list) {
+        List<InetSocketAddress> workers = new ArrayList<>();
+        for (String s : list.split(",")) {
+            s = s.trim();
+            int colon = s.lastIndexOf(':');
+            String host = colon < 0 ? s : s.substring(0, colon);
+            int port = colon < 0 ? TileWorker.DEFAULT_PORT : Integer.parseInt(s.substring(colon + 1));
+            if (host.isEmpty())
+                throw new IllegalArgumentException("Brak nazwy węzła: " + s);
+            workers.add(InetSocketAddress.createUnresolved(host, port));
+        }
+        return workers;
+    }
+
+    /**
+     * Ustawia wysokość pasa wysyłanego do węzła
+     *
+     * @param tileRows liczba wierszy, co najmniej 1
+     */
+    public void setTileRows(int tileRows) {
+        if (tileRows < 1)
+            throw new IllegalArgumentException("Pas musi mieć co najmniej jeden wiersz");
+        this.tileRows = tileRows;
+    }
+
+    public int getTileRows() {
+        return tileRows;
+    }
+
+    /**
+     * Ustawia czas oczekiwania na połączenie i na wynik pasa; węzeł, który
+     * go przekroczy, jest rozłączany, a jego pas liczy inny węzeł
+     *
+     * @param timeout czas w milisekundach, 0 oznacza brak limitu
+     */
+    public void setTimeout(int timeout) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Czas oczekiwania nie może być ujemny");
+        this.timeout = timeout;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Liczba pasów przekazanych innemu węzłowi: po błędzie, przekroczeniu
+     * czasu albo równolegle do wolnego węzła, sumowana ze wszystkich liczeń
+     *
+     * @return liczba przekazanych pasów
+     */
+    public long getReassigned() {
+        return reassigned.sum();
+    }
+
+    /**
+     * Liczy prędkości ucieczki pikseli widoku w węzłach
+     *
+     * @throws UncheckedIOException gdy żaden węzeł nie może dokończyć liczenia
+     * @see MandelRenderer#escapeCounts
+     */
+    @Override
+    public int escapeCounts(Viewport view, int[] counts, BooleanSupplier cancelled) throws CancellationException {
+        Job job = new Job(view, counts, tileRows, workers.size());
+        if (job.remaining == 0)
+            return getFormula() != null || getJulia() != null || view.relativeSpacing() < DOUBLE_LIMIT ? 1
+                    : getDistanceEstimation() ? DistanceKernel.STEPS
+                    : getSmooth() ? SmoothKernel.STEPS : 1;
+
+        for (int i = 0; i < workers.size(); i++) {
+            int worker = i;
+            executor.execute(() -> serve(worker, job));
+        }
+
+        boolean interrupted = false;
+        synchronized (job) {
+            try {
+                while (job.remaining > 0 && job.alive > 0 && job.error == null) {
+                    if (cancelled.getAsBoolean())
+                        break;
+                    job.wait(50);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            // węzły liczące już niepotrzebne kopie pasów są rozłączane
+            job.stopped = true;
+            for (Socket socket : job.busy) {
+                if (socket != null)
+                    closeQuietly(socket);
+            }
+            job.notifyAll();
+            while (job.alive > 0) {
+                try {
+                    job.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (job.error != null)
+            throw new IllegalStateException(job.error);
+        if (job.remaining > 0 && (interrupted || cancelled.getAsBoolean()))
+            throw new CancellationException();
+        if (job.remaining > 0)
+            throw new UncheckedIOException(new IOException("Żaden węzeł nie dokończył liczenia: " + job.failure));
+        return job.steps;
+    }
+
+    /**
+     * Pętla jednego węzła: pobiera pasy, dopóki są do policzenia
+     */
+    private void serve(int worker, Job job) {
+        Connection c;
+        synchronized (connections) {
+            c = connections[worker];
+            connections[worker] = null;
+        }
+        try {
+            if (c == null) {
+                Socket socket = new Socket();
+                if (!job.connecting(worker, socket))
+                    return;
+                c = new Connection(socket, workers.get(worker), timeout);
+            }
+            int[] buffer = new int[job.view.w * job.tileRows];
+            int band;
+            while ((band = job.next(worker, c.socket)) >= 0) {
+                int y0 = band * job.tileRows;
+                int rows = Math.min(job.tileRows, job.view.h - y0);
+                int steps = c.band(band, this, job.view, y0, rows, buffer);
+                job.done(worker, band, steps, buffer);
+            }
+            // gniazdo mogło zostać zamknięte na koniec liczenia
+            if (!c.socket.isClosed()) {
+                synchronized (connections) {
+                    connections[worker] = c;
+                }
+            }
+        } catch (IOException e) {
+            if (c != null)
+                closeQuietly(c.socket);
+            InetSocketAddress address = workers.get(worker);
+            job.failed(worker, address.getHostString() + ":" + address.getPort() + ": " + e.getMessage());
+        } finally {
+            job.exit();
+        }
+    }
+
+    /**
+     * Kończy połączenia z węzłami
+     */
+    @Override
+    public void close() {
+        synchronized (connections) {
+            for (int i = 0; i < connections.length; i++) {
+                if (connections[i] == null)
+                    continue;
+                try {
+                    connections[i].out.writeInt(-1);
+                    connections[i].out.flush();
+                } catch (IOException e) {
+                    // węzeł i tak jest rozłączany
+                }
+                closeQuietly(connections[i].socket);
+                connections[i] = null;
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nic więcej nie da się zrobić
+        }
+    }
+
+    /**
+     * Stan jednego liczenia widoku, wspólny dla wątków węzłów
+     */
+    private class Job {
+        final Viewport view;
+        final int[] counts;
+        final int tileRows;
+
+        final ArrayDeque<Integer> pending = new ArrayDeque<>();
+        final boolean[] done;
+        //liczba węzłów liczących pas i chwila rozpoczęcia pierwszego z nich
+        final int[] running;
+        final long[] started;
+        //pas i gniazdo każdego węzła w trakcie liczenia
+        final int[] current;
+        final Socket[] busy;
+
+        int remaining;
+        int alive;
+        int steps = -1;
+        boolean stopped;
+        String error;
+        String failure;
+
+        Job(Viewport view, int[] counts, int tileRows, int workers) {
+            this.view = view;
+            this.counts = counts;
+            this.tileRows = tileRows;
+            int bands = (view.h + tileRows - 1) / tileRows;
+            for (int b = 0; b < bands; b++)
+                pending.add(b);
+            this.done = new boolean[bands];
+            this.running = new int[bands];
+            this.started = new long[bands];
+            this.current = new int[workers];
+            Arrays.fill(current, -1);
+            this.busy = new Socket[workers];
+            this.remaining = bands;
+            this.alive = workers;
+        }
+
+        /**
+         * Zapamiętuje gniazdo łączącego się węzła, by dało się je zamknąć
+         * po zakończeniu liczenia; false, gdy liczenie już się zakończyło
+         */
+        synchronized boolean connecting(int worker, Socket socket) {
+            busy[worker] = socket;
+            return remaining > 0 && !stopped && error == null;
+        }
+
+        /**
+         * Następny pas dla węzła: z kolejki, a gdy jest pusta - pas liczony
+         * najdłużej przez jeden inny węzeł; -1, gdy nie ma już nic do liczenia
+         */
+        synchronized int next(int worker, Socket socket) {
+            while (true) {
+                if (remaining == 0 || stopped || error != null) {
+                    busy[worker] = null;
+                    return -1;
+                }
+                int band = pending.isEmpty() ? slowest() : pending.poll();
+                if (band >= 0) {
+                    if (running[band]++ == 0)
+                        started[band] = System.nanoTime();
+                    else
+                        reassigned.increment();
+                    current[worker] = band;
+                    busy[worker] = socket;
+                    return band;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+        }
+
+        private int slowest() {
+            int band = -1;
+            for (int b = 0; b < done.length; b++) {
+                if (!done[b] && running[b] == 1 && (band < 0 || started[b] < started[band]))
+                    band = b;
+            }
+            return band;
+        }
+
+        synchronized void done(int worker, int band, int steps, int[] buffer) {
+            running[band]--;
+            current[worker] = -1;
+            busy[worker] = null;
+            if (this.steps < 0)
+                this.steps = steps;
+            else if (this.steps != steps)
+                error = "Pasy widoku liczone z różną dokładnością";
+            if (!done[band]) {
+                int y0 = band * tileRows;
+                int rows = Math.min(tileRows, view.h - y0);
+                System.arraycopy(buffer, 0, counts, y0 * view.w, rows * view.w);
+                done[band] = true;
+                remaining--;
+            }
+            notifyAll();
+        }
+
+        synchronized void failed(int worker, String message) {
+            int band = current[worker];
+            if (band >= 0) {
+                running[band]--;
+                if (!done[band] && running[band] == 0) {
+                    pending.addFirst(band);
+                    reassigned.increment();
+                }
+            }
+            current[worker] = -1;
+            busy[worker] = null;
+            if (!stopped)
+                failure = message;
+            notifyAll();
+        }
+
+        synchronized void exit() {
+            alive--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Połączenie z węzłem po wymianie nagłówków protokołu
+     */
+    private static class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(Socket socket, InetSocketAddress address, int timeout) throws IOException {
+            this.socket = socket;
+            try {
+                if (address.isUnresolved())
+                    address = new InetSocketAddress(address.getHostString(), address.getPort());
+                socket.connect(address, timeout);
+                socket.setSoTimeout(timeout);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeInt(TileWorker.MAGIC);
+                out.writeInt(TileWorker.VERSION);
+                out.flush();
+                if (in.readInt() != TileWorker.MAGIC || in.readInt() != TileWorker.VERSION)
+                    throw new IOException("Nieznany protokół");
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Zleca węzłowi pas i czeka na wynik
+         *
+         * @return liczbę części iteracji
+         */
+        int band(int id, MandelRenderer settings, Viewport v, int y0, int rows, int[] buffer) throws IOException {
+            out.writeInt(id);
+            v.write(out);
+            out.writeDouble(settings.getR());
+            out.writeInt(settings.getN());
+            out.writeUTF(settings.getKernel().name());
+            out.writeBoolean(settings.getInteriorChecks());
+            out.writeBoolean(settings.getSmooth());
+            out.writeBoolean(settings.getDistanceEstimation());
+            Formula formula = settings.getFormula();
+            Complex julia = settings.getJulia();
+            out.writeUTF(formula == null ? "" : formula.toString());
+            out.writeBoolean(julia != null);
+            if (julia != null) {
+                out.writeDouble(julia.re());
+                out.writeDouble(julia.im());
+            }
+            out.writeInt(y0);
+            out.writeInt(rows);
+            out.flush();
+
+            if (in.readInt() != id)
+                throw new IOException("Odpowiedź dla innego pasa");
+            int steps = in.readInt();
+            if (steps == TileWorker.ERROR)
+                throw new IOException(in.readUTF());
+            TileWorker.readInts(in, buffer, rows * v.w);
+            return steps;
+        }
+    }
+}
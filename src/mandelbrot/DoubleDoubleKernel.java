@@ -0,0 +1,67 @@
+package mandelbrot;
+
+/**
+ * Prędkość ucieczki liczona na liczbach {@link ComplexDD} (około 106 bitów
+ * mantysy), dla powiększeń, w których double już nie wystarcza,
+ * a perturbacja jeszcze się nie opłaca. Piksel to środek widoku
+ * w double-double przesunięty o odległość od środka w double.
+ */
+public class DoubleDoubleKernel implements EscapeKernel {
+
+    private final double r2;
+    private final int N;
+    private final ComplexDD center;
+
+    /**
+     * @param v widok, którego środek jest punktem odniesienia pikseli
+     * @param r promień ucieczki
+     * @param N maksymalna liczba iteracji
+     */
+    public DoubleDoubleKernel(Viewport v, double r, int N) {
+        this.r2 = r * r;
+        this.N = N;
+        this.center = new ComplexDD(v.centerRe, v.centerIm);
+    }
+
+    @Override
+    public int escape(double re, double im) {
+        return escape(new ComplexDD(re, im), new ComplexDD());
+    }
+
+    @Override
+    public int escape(Viewport v, int x, int y) {
+        ComplexDD c = new ComplexDD(center).add(v.deltaRe(x), v.deltaIm(y));
+        return escape(c, new ComplexDD());
+    }
+
+    @Override
+    public void escapeRow(Viewport v, int y, int x0, int x1, int[] out) {
+        ComplexDD c = new ComplexDD();
+        ComplexDD z = new ComplexDD();
+        double dci = v.deltaIm(y);
+        int offset = y * v.w;
+        for (int x = x0; x < x1; x++) {
+            c.setVal(center);
+            c.add(v.deltaRe(x), dci);
+            out[offset + x] = escape(c, z);
+        }
+    }
+
+    /**
+     * @param c punkt
+     * @param z obiekt roboczy na kolejne wartości orbity
+     */
+    private int escape(ComplexDD c, ComplexDD z) {
+
+        int v = 0;
+        z.setVal(c);    //z1 = 0+0i + c
+        for (int n = 2; n <= N; n++) {
+            v = n;
+            z.mul(z).add(c);
+            if (z.sqrAbs() > r2)
+                break;
+        }
+
+        return v;
+    }
+}
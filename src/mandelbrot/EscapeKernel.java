@@ -0,0 +1,49 @@
+package mandelbrot;
+
+/**
+ * Algorytm liczący prędkość ucieczki punktu <i>c</i> dla iteracji
+ * <i>z</i> = <i>z</i>^2 + <i>c</i>.
+ * Prędkość ucieczki jest numerem iteracji, w której |<i>z</i>| przekroczył
+ * promień <i>r</i>, albo <i>N</i>, jeżeli punkt nie uciekł.
+ */
+public interface EscapeKernel {
+
+    /**
+     * Prędkość ucieczki punktu <i>re</i> + <i>im</i>*i
+     *
+     * @param re część rzeczywista punktu
+     * @param im część urojona punktu
+     * @return prędkość ucieczki
+     */
+    int escape(double re, double im);
+
+    /**
+     * Prędkość ucieczki piksela (<i>x</i>, <i>y</i>) widoku <i>v</i>
+     *
+     * @param v widok
+     * @param x kolumna
+     * @param y wiersz
+     * @return prędkość ucieczki
+     */
+    default int escape(Viewport v, int x, int y) {
+        return escape(v.re(x), v.im(y));
+    }
+
+    /**
+     * Liczy prędkości ucieczki fragmentu wiersza <i>y</i> widoku <i>v</i>
+     * od kolumny <i>x0</i> do <i>x1</i> (wyłącznie) i zapisuje je
+     * w <i>out</i> pod indeksami <tt>y * w + x</tt>.
+     *
+     * @param v   widok
+     * @param y   wiersz
+     * @param x0  pierwsza kolumna
+     * @param x1  kolumna za ostatnią
+     * @param out tablica wyników o rozmiarze <tt>w * h</tt>
+     */
+    default void escapeRow(Viewport v, int y, int x0, int x1, int[] out) {
+        double im = v.im(y);
+        int offset = y * v.w;
+        for (int x = x0; x < x1; x++)
+            out[offset + x] = escape(v.re(x), im);
+    }
+}
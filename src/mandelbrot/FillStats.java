@@ -0,0 +1,34 @@
+package mandelbrot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Liczniki pikseli policzonych algorytmem ucieczki oraz pikseli
+ * wypełnionych bez liczenia. Mogą być zwiększane z wielu wątków.
+ */
+public class FillStats {
+
+    final LongAdder iterated = new LongAdder();
+    final LongAdder filled = new LongAdder();
+
+    public long getIterated() {
+        return iterated.sum();
+    }
+
+    public long getFilled() {
+        return filled.sum();
+    }
+
+    /**
+     * Zeruje wszystkie liczniki
+     */
+    public void reset() {
+        iterated.reset();
+        filled.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "policzone=" + getIterated() + " wypełnione=" + getFilled();
+    }
+}
@@ -0,0 +1,367 @@
+package mandelbrot;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Locale;
+
+/**
+ * Wzór iteracji <i>z</i> = <i>f</i>(<i>z</i>, <i>c</i>) podany tekstem,
+ * np. <tt>z^2 + c</tt> (zbiór Mandelbrota), <tt>z^3 + c</tt> (multibrot)
+ * albo <tt>(|re(z)| + i*|im(z)|)^2 + c</tt> (płonący statek).
+ * Wzór jest kompilowany do kodu bajtowego na zmiennych double
+ * ({@link FormulaCompiler}), więc liczy się tak szybko jak algorytm
+ * napisany ręcznie.
+ * <p>
+ * Składnia: liczby (także urojone, np. <tt>0.5i</tt>), <tt>i</tt>,
+ * zmienne <tt>z</tt> i <tt>c</tt>, działania <tt>+ - * /</tt>, potęga
+ * <tt>^</tt> o stałym wykładniku, moduł <tt>|x|</tt> oraz funkcje
+ * <tt>re im abs conj sqr exp</tt>.
+ * <p>
+ * Iteracja ma tę samą postać co dla zbioru Mandelbrota:
+ * <i>z</i><sub>1</sub> = <i>f</i>(<i>z</i><sub>0</sub>, <i>c</i>), a prędkość
+ * ucieczki to pierwsze <i>n</i> &ge; 2, dla którego
+ * |<i>z<sub>n</sub></i>| &gt; <i>r</i>. Dla zbioru Mandelbrota
+ * <i>z</i><sub>0</sub> = 0 i <i>c</i> jest punktem, dla zbioru Julii
+ * <i>z</i><sub>0</sub> jest punktem, a <i>c</i> stałą.
+ */
+public class Formula {
+
+    /**
+     * Wzór zbioru Mandelbrota; kompilowany daje te same wyniki co {@link PrimitiveKernel}
+     */
+    public static final Formula MANDELBROT = parse("z^2 + c");
+
+    //największy wykładnik całkowity liczony mnożeniem
+    static final int MAX_POWER = 64;
+
+    private final String text;
+    final Node root;
+
+    //skompilowane konstruktory dla zbioru Mandelbrota i Julii, tworzone przy pierwszym użyciu
+    private MethodHandle mandelbrot, julia;
+
+    private Formula(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * Odczytuje wzór
+     *
+     * @param text wzór, np. <tt>z^2 + c</tt>
+     * @return wzór gotowy do kompilacji
+     * @throws IllegalArgumentException jeżeli wzór jest niepoprawny
+     */
+    public static Formula parse(String text) {
+        Parser p = new Parser(text);
+        Node root = p.expression();
+        if (p.pos < text.length())
+            throw p.error("Nieoczekiwany znak '" + text.charAt(p.pos) + "'");
+        return new Formula(text.trim(), root);
+    }
+
+    /**
+     * Algorytm liczący prędkość ucieczki punktów <i>c</i> dla tego wzoru
+     *
+     * @param r promień ucieczki
+     * @param N maksymalna liczba iteracji
+     * @return skompilowany algorytm
+     */
+    public EscapeKernel kernel(double r, int N) {
+        MethodHandle constructor;
+        synchronized (this) {
+            if (mandelbrot == null)
+                mandelbrot = FormulaCompiler.compile(root, false);
+            constructor = mandelbrot;
+        }
+        return FormulaKernel.create(constructor, this, r, N, 0, 0);
+    }
+
+    /**
+     * Algorytm liczący prędkość ucieczki punktów <i>z</i><sub>0</sub>
+     * zbioru Julii o stałej <i>c</i>
+     *
+     * @param r promień ucieczki
+     * @param N maksymalna liczba iteracji
+     * @param c stała wzoru
+     * @return skompilowany algorytm
+     */
+    public EscapeKernel julia(double r, int N, Complex c) {
+        MethodHandle constructor;
+        synchronized (this) {
+            if (julia == null)
+                julia = FormulaCompiler.compile(root, true);
+            constructor = julia;
+        }
+        return FormulaKernel.create(constructor, this, r, N, c.re(), c.im());
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Węzeł drzewa wzoru
+     */
+    abstract static class Node {
+        /**
+         * Wartość węzła, jeżeli nie zależy od <i>z</i> ani <i>c</i>;
+         * inaczej null
+         */
+        abstract double[] constant();
+    }
+
+    static final class Num extends Node {
+        final double re, im;
+
+        Num(double re, double im) {
+            this.re = re;
+            this.im = im;
+        }
+
+        @Override
+        double[] constant() {
+            return new double[]{re, im};
+        }
+    }
+
+    static final class Var extends Node {
+        final char name;
+
+        Var(char name) {
+            this.name = name;
+        }
+
+        @Override
+        double[] constant() {
+            return null;
+        }
+    }
+
+    static final class Unary extends Node {
+        //'-' albo nazwa funkcji
+        final String op;
+        final Node arg;
+
+        Unary(String op, Node arg) {
+            this.op = op;
+            this.arg = arg;
+        }
+
+        @Override
+        double[] constant() {
+            double[] a = arg.constant();
+            if (a == null)
+                return null;
+            Complex x = new Complex(a[0], a[1]);
+            switch (op) {
+                case "-": return new double[]{-a[0], -a[1]};
+                case "re": return new double[]{a[0], 0};
+                case "im": return new double[]{a[1], 0};
+                case "abs": return new double[]{x.abs(), 0};
+                case "conj": return new double[]{a[0], -a[1]};
+                case "sqr": x.mul(new Complex(x)); return new double[]{x.re(), x.im()};
+                default:
+                    double e = Math.exp(a[0]);
+                    return new double[]{e * Math.cos(a[1]), e * Math.sin(a[1])};
+            }
+        }
+    }
+
+    static final class Binary extends Node {
+        //'+', '-', '*', '/' albo '^'
+        final char op;
+        final Node left, right;
+
+        Binary(char op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double[] constant() {
+            double[] a = left.constant();
+            double[] b = right.constant();
+            if (a == null || b == null || op == '^')
+                return null;
+            Complex x = new Complex(a[0], a[1]);
+            Complex y = new Complex(b[0], b[1]);
+            switch (op) {
+                case '+': x.add(y); break;
+                case '-': x.sub(y); break;
+                case '*': x.mul(y); break;
+                default: x.div(y);
+            }
+            return new double[]{x.re(), x.im()};
+        }
+    }
+
+    /**
+     * Parser metodą zejść rekurencyjnych:
+     * <pre>
+     * wyrażenie = składnik {("+" | "-") składnik}
+     * składnik  = czynnik {("*" | "/") czynnik}
+     * czynnik   = "-" czynnik | potęga
+     * potęga    = atom ["^" czynnik]
+     * atom      = liczba ["i"] | "i" | "z" | "c" | funkcja "(" wyrażenie ")"
+     *           | "(" wyrażenie ")" | "|" wyrażenie "|"
+     * </pre>
+     */
+    private static final class Parser {
+        final String s;
+        int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Node expression() {
+            Node n = term();
+            while (true) {
+                if (eat('+'))
+                    n = new Binary('+', n, term());
+                else if (eat('-'))
+                    n = new Binary('-', n, term());
+                else
+                    return n;
+            }
+        }
+
+        Node term() {
+            Node n = factor();
+            while (true) {
+                if (eat('*'))
+                    n = new Binary('*', n, factor());
+                else if (eat('/'))
+                    n = new Binary('/', n, factor());
+                else
+                    return n;
+            }
+        }
+
+        Node factor() {
+            if (eat('-'))
+                return new Unary("-", factor());
+            Node base = atom();
+            if (!eat('^'))
+                return base;
+            int at = pos;
+            Node exponent = factor();
+            double[] e;
+            try {
+                e = exponent.constant();
+            } catch (ArithmeticException ex) {
+                throw error(at, ex.getMessage());
+            }
+            if (e == null || e[1] != 0)
+                throw error(at, "Wykładnik musi być stałą rzeczywistą");
+            if (Math.abs(e[0]) > MAX_POWER && e[0] == Math.rint(e[0]))
+                throw error(at, "Wykładnik całkowity może wynosić co najwyżej " + MAX_POWER);
+            return new Binary('^', base, exponent);
+        }
+
+        Node atom() {
+            skip();
+            if (pos >= s.length())
+                throw error("Niepełny wzór");
+            char ch = s.charAt(pos);
+            if (eat('(')) {
+                Node n = expression();
+                expect(')');
+                return n;
+            }
+            if (eat('|')) {
+                Node n = expression();
+                expect('|');
+                return new Unary("abs", n);
+            }
+            if (Character.isDigit(ch) || ch == '.') {
+                int start = pos;
+                while (pos < s.length() && (Character.isDigit(s.charAt(pos)) || s.charAt(pos) == '.'))
+                    pos++;
+                // wykładnik dziesiętny, np. 1e-5
+                if (pos < s.length() && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+                    int mark = pos++;
+                    if (pos < s.length() && (s.charAt(pos) == '+' || s.charAt(pos) == '-'))
+                        pos++;
+                    if (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                        while (pos < s.length() && Character.isDigit(s.charAt(pos)))
+                            pos++;
+                    } else {
+                        pos = mark;
+                    }
+                }
+                double value;
+                try {
+                    value = Double.parseDouble(s.substring(start, pos));
+                } catch (NumberFormatException e) {
+                    throw error(start, "Niepoprawna liczba");
+                }
+                if (pos < s.length() && s.charAt(pos) == 'i' && !identifierAt(pos + 1)) {
+                    pos++;
+                    return new Num(0, value);
+                }
+                return new Num(value, 0);
+            }
+            if (Character.isLetter(ch)) {
+                int start = pos;
+                while (identifierAt(pos))
+                    pos++;
+                String name = s.substring(start, pos).toLowerCase(Locale.ROOT);
+                switch (name) {
+                    case "z":
+                    case "c":
+                        return new Var(name.charAt(0));
+                    case "i":
+                        return new Num(0, 1);
+                    case "re":
+                    case "im":
+                    case "abs":
+                    case "conj":
+                    case "sqr":
+                    case "exp":
+                        expect('(');
+                        Node arg = expression();
+                        expect(')');
+                        return new Unary(name, arg);
+                    default:
+                        throw error(start, "Nieznana nazwa '" + name + "'");
+                }
+            }
+            throw error("Nieoczekiwany znak '" + ch + "'");
+        }
+
+        private boolean identifierAt(int i) {
+            return i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+        }
+
+        private boolean eat(char ch) {
+            skip();
+            if (pos < s.length() && s.charAt(pos) == ch) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char ch) {
+            if (!eat(ch))
+                throw error("Oczekiwano '" + ch + "'");
+        }
+
+        private void skip() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+                pos++;
+        }
+
+        IllegalArgumentException error(String message) {
+            skip();
+            return error(pos, message);
+        }
+
+        IllegalArgumentException error(int at, String message) {
+            return new IllegalArgumentException(message + " na pozycji " + (at + 1) + ": " + s);
+        }
+    }
+}
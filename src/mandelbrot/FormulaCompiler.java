@@ -0,0 +1,565 @@
+package mandelbrot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Kompiluje drzewo wzoru ({@link Formula}) do klasy dziedziczącej po
+ * {@link FormulaKernel}, której metoda <tt>escape(double, double)</tt> liczy
+ * całą iterację na zmiennych lokalnych double, bez obiektów i wywołań
+ * wirtualnych. Działania zespolone rozpisywane są na działania na częściach
+ * rzeczywistych i urojonych w tej samej kolejności co w {@link Complex},
+ * a części znane przy kompilacji (np. urojona część <tt>re(z)</tt>) są
+ * upraszczane. Potęgi całkowite liczone są mnożeniem.
+ * <p>
+ * Klasa jest zapisywana w formacie klas Javy 5, który nie wymaga ramek
+ * mapy stosu, i ładowana jako klasa ukryta, więc znika razem z ostatnim
+ * swoim obiektem.
+ */
+final class FormulaCompiler {
+
+    private static final String NAME = "mandelbrot/CompiledFormula";
+    private static final String SUPER = "mandelbrot/FormulaKernel";
+
+    //kody operacji maszyny wirtualnej
+    private static final int DCONST_0 = 0x0e, DCONST_1 = 0x0f, ICONST_0 = 0x03, ICONST_2 = 0x05;
+    private static final int LDC2_W = 0x14, ILOAD = 0x15, DLOAD = 0x18, ALOAD_0 = 0x2a;
+    private static final int ISTORE = 0x36, DSTORE = 0x39;
+    private static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77;
+    private static final int IINC = 0x84, DCMPG = 0x98, IFGT = 0x9d, IF_ICMPGT = 0xa3, GOTO = 0xa7;
+    private static final int IRETURN = 0xac, RETURN = 0xb1, GETFIELD = 0xb4;
+    private static final int INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, WIDE = 0xc4;
+
+    //zmienne lokalne escape(double x, double y): 0 this, 1-2 x, 3-4 y
+    private static final int X = 1, Y = 3, R2 = 5, N = 7, V = 8, NI = 9;
+    private static final int CR = 10, CI = 12, ZR = 14, ZI = 16, TEMP = 18;
+
+    private final ConstantPool cp = new ConstantPool();
+    private final Code code = new Code();
+    private int nextLocal = TEMP;
+
+    private FormulaCompiler() {
+    }
+
+    /**
+     * Kompiluje wzór i ładuje klasę
+     *
+     * @param root  drzewo wzoru
+     * @param julia true: <i>z</i><sub>0</sub> to punkt, a <i>c</i> stała;
+     *              false: <i>z</i><sub>0</sub> = 0, a <i>c</i> to punkt
+     * @return konstruktor skompilowanej klasy, bez argumentów
+     */
+    static MethodHandle compile(Formula.Node root, boolean julia) {
+        byte[] bytes = new FormulaCompiler().classFile(root, julia);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException("Nie udało się załadować skompilowanego wzoru", e);
+        }
+    }
+
+    private byte[] classFile(Formula.Node root, boolean julia) {
+        int thisClass = cp.cls(NAME);
+        int superClass = cp.cls(SUPER);
+        byte[] init = constructor();
+        byte[] escape = escape(root, julia);
+        int initName = cp.utf("<init>");
+        int initType = cp.utf("()V");
+        int escapeName = cp.utf("escape");
+        int escapeType = cp.utf("(DD)I");
+        int codeName = cp.utf("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            cp.write(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020);   //public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);  //interfejsy
+            out.writeShort(0);  //pola
+            out.writeShort(2);  //metody
+            method(out, initName, initType, codeName, 1, 1, init);
+            method(out, escapeName, escapeType, codeName, 8, nextLocal, escape);
+            out.writeShort(0);  //atrybuty
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void method(DataOutputStream out, int name, int type, int codeName,
+                               int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(0x0001);     //public
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);  //tablica wyjątków
+        out.writeShort(0);  //atrybuty
+    }
+
+    private byte[] constructor() {
+        Code c = new Code();
+        c.op(ALOAD_0);
+        c.op(INVOKESPECIAL);
+        c.u2(cp.member(10, SUPER, "<init>", "()V"));
+        c.op(RETURN);
+        return c.bytes();
+    }
+
+    /**
+     * Metoda escape: z<sub>1</sub> = f(z<sub>0</sub>, c), a potem dla n od 2 do N
+     * v = n, z = f(z, c), aż |z|^2 &gt; r^2
+     */
+    private byte[] escape(Formula.Node root, boolean julia) {
+        field("r2", "D", R2);
+        field("N", "I", N);
+        if (julia) {
+            field("cr", "D", CR);
+            field("ci", "D", CI);
+            store(DLOAD, X, DSTORE, ZR);
+            store(DLOAD, Y, DSTORE, ZI);
+        } else {
+            store(DLOAD, X, DSTORE, CR);
+            store(DLOAD, Y, DSTORE, CI);
+            code.op(DCONST_0);
+            local(DSTORE, ZR);
+            code.op(DCONST_0);
+            local(DSTORE, ZI);
+        }
+        iterate(root);
+
+        code.op(ICONST_0);
+        local(ISTORE, V);
+        code.op(ICONST_2);
+        local(ISTORE, NI);
+
+        int loop = code.position();
+        local(ILOAD, NI);
+        local(ILOAD, N);
+        int exit1 = code.jump(IF_ICMPGT);
+        local(ILOAD, NI);
+        local(ISTORE, V);
+        iterate(root);
+        // te same działania co z.sqrAbs() > r * r
+        local(DLOAD, ZR);
+        local(DLOAD, ZR);
+        code.op(DMUL);
+        local(DLOAD, ZI);
+        local(DLOAD, ZI);
+        code.op(DMUL);
+        code.op(DADD);
+        local(DLOAD, R2);
+        // dcmpg: NaN, np. po dzieleniu przez 0, liczy się jako ucieczka
+        code.op(DCMPG);
+        int exit2 = code.jump(IFGT);
+        code.op(IINC);
+        code.u1(NI);
+        code.u1(1);
+        code.patch(code.jump(GOTO), loop);
+
+        int end = code.position();
+        code.patch(exit1, end);
+        code.patch(exit2, end);
+        local(ILOAD, V);
+        code.op(IRETURN);
+        return code.bytes();
+    }
+
+    /**
+     * Liczy f(z, c) i zapisuje wynik w z
+     */
+    private void iterate(Formula.Node root) {
+        Val f = gen(root);
+        load(f.re);
+        load(f.im);
+        local(DSTORE, ZI);
+        local(DSTORE, ZR);
+    }
+
+    private void field(String name, String type, int slot) {
+        code.op(ALOAD_0);
+        code.op(GETFIELD);
+        code.u2(cp.member(9, SUPER, name, type));
+        local(type.equals("D") ? DSTORE : ISTORE, slot);
+    }
+
+    private void store(int load, int from, int store, int to) {
+        local(load, from);
+        local(store, to);
+    }
+
+    private void local(int op, int slot) {
+        if (slot > 255) {
+            code.op(WIDE);
+            code.op(op);
+            code.u2(slot);
+        } else {
+            code.op(op);
+            code.u1(slot);
+        }
+    }
+
+    // --- wartości ---
+
+    /**
+     * Część liczby: zmienna lokalna albo stała znana przy kompilacji
+     */
+    private static final class Op {
+        final int slot;
+        final double value;
+
+        Op(int slot, double value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        boolean constant() {
+            return slot < 0;
+        }
+
+        boolean is(double v) {
+            return constant() && value == v;
+        }
+    }
+
+    private static final class Val {
+        final Op re, im;
+
+        Val(Op re, Op im) {
+            this.re = re;
+            this.im = im;
+        }
+    }
+
+    private static Op constant(double v) {
+        return new Op(-1, v);
+    }
+
+    private static Op variable(int slot) {
+        return new Op(slot, 0);
+    }
+
+    private static final Op ZERO = constant(0);
+    private static final Op ONE = constant(1);
+
+    private void load(Op a) {
+        if (!a.constant()) {
+            local(DLOAD, a.slot);
+        } else if (Double.doubleToRawLongBits(a.value) == 0) {
+            code.op(DCONST_0);
+        } else if (a.value == 1) {
+            code.op(DCONST_1);
+        } else {
+            code.op(LDC2_W);
+            code.u2(cp.number(a.value));
+        }
+    }
+
+    private Op emit(int op, Op... args) {
+        for (Op a : args)
+            load(a);
+        code.op(op);
+        return result();
+    }
+
+    private Op result() {
+        int slot = nextLocal;
+        nextLocal += 2;
+        local(DSTORE, slot);
+        return variable(slot);
+    }
+
+    private Op add(Op a, Op b) {
+        if (a.constant() && b.constant())
+            return constant(a.value + b.value);
+        if (a.is(0))
+            return b;
+        if (b.is(0))
+            return a;
+        return emit(DADD, a, b);
+    }
+
+    private Op sub(Op a, Op b) {
+        if (a.constant() && b.constant())
+            return constant(a.value - b.value);
+        if (b.is(0))
+            return a;
+        if (a.is(0))
+            return neg(b);
+        return emit(DSUB, a, b);
+    }
+
+    private Op mul(Op a, Op b) {
+        if (a.constant() && b.constant())
+            return constant(a.value * b.value);
+        if (a.is(0) || b.is(0))
+            return ZERO;
+        if (a.is(1))
+            return b;
+        if (b.is(1))
+            return a;
+        return emit(DMUL, a, b);
+    }
+
+    private Op div(Op a, Op b) {
+        if (a.constant() && b.constant())
+            return constant(a.value / b.value);
+        if (b.is(1))
+            return a;
+        return emit(DDIV, a, b);
+    }
+
+    private Op neg(Op a) {
+        if (a.constant())
+            return constant(-a.value);
+        return emit(DNEG, a);
+    }
+
+    /**
+     * Wywołanie funkcji z {@link Math} o jednym albo dwóch argumentach double
+     */
+    private Op math(String name, Op... args) {
+        boolean constant = true;
+        for (Op a : args)
+            constant &= a.constant();
+        if (constant) {
+            double x = args[0].value;
+            switch (name) {
+                case "abs": return constant(Math.abs(x));
+                case "sqrt": return constant(Math.sqrt(x));
+                case "exp": return constant(Math.exp(x));
+                case "cos": return constant(Math.cos(x));
+                case "sin": return constant(Math.sin(x));
+                case "atan2": return constant(Math.atan2(x, args[1].value));
+                case "pow": return constant(Math.pow(x, args[1].value));
+                default: throw new IllegalArgumentException(name);
+            }
+        }
+        for (Op a : args)
+            load(a);
+        code.op(INVOKESTATIC);
+        code.u2(cp.member(10, "java/lang/Math", name, args.length == 1 ? "(D)D" : "(DD)D"));
+        return result();
+    }
+
+    // --- działania zespolone ---
+
+    private Val gen(Formula.Node node) {
+        if (node instanceof Formula.Num) {
+            Formula.Num n = (Formula.Num) node;
+            return new Val(constant(n.re), constant(n.im));
+        }
+        if (node instanceof Formula.Var) {
+            return ((Formula.Var) node).name == 'z'
+                    ? new Val(variable(ZR), variable(ZI))
+                    : new Val(variable(CR), variable(CI));
+        }
+        if (node instanceof Formula.Unary) {
+            Formula.Unary u = (Formula.Unary) node;
+            Val x = gen(u.arg);
+            switch (u.op) {
+                case "-": return new Val(neg(x.re), neg(x.im));
+                case "re": return new Val(x.re, ZERO);
+                case "im": return new Val(x.im, ZERO);
+                case "conj": return new Val(x.re, neg(x.im));
+                case "sqr": return mul(x, x);
+                case "abs":
+                    if (x.im.is(0))
+                        return new Val(math("abs", x.re), ZERO);
+                    return new Val(math("sqrt", add(mul(x.re, x.re), mul(x.im, x.im))), ZERO);
+                default:
+                    Op e = math("exp", x.re);
+                    return new Val(mul(e, math("cos", x.im)), mul(e, math("sin", x.im)));
+            }
+        }
+        Formula.Binary b = (Formula.Binary) node;
+        Val x = gen(b.left);
+        if (b.op == '^') {
+            double p = b.right.constant()[0];
+            return p == Math.rint(p) ? pow(x, (int) p) : pow(x, p);
+        }
+        Val y = gen(b.right);
+        switch (b.op) {
+            case '+': return new Val(add(x.re, y.re), add(x.im, y.im));
+            case '-': return new Val(sub(x.re, y.re), sub(x.im, y.im));
+            case '*': return mul(x, y);
+            default: return div(x, y);
+        }
+    }
+
+    //kolejność działań jak w Complex.mul
+    private Val mul(Val a, Val b) {
+        return new Val(sub(mul(a.re, b.re), mul(a.im, b.im)),
+                add(mul(a.re, b.im), mul(a.im, b.re)));
+    }
+
+    //kolejność działań jak w Complex.div
+    private Val div(Val a, Val b) {
+        Op mianownik = add(mul(b.re, b.re), mul(b.im, b.im));
+        return new Val(div(add(mul(a.re, b.re), mul(a.im, b.im)), mianownik),
+                div(sub(mul(a.im, b.re), mul(a.re, b.im)), mianownik));
+    }
+
+    private Val pow(Val x, int n) {
+        if (n == 0)
+            return new Val(ONE, ZERO);
+        if (n < 0)
+            return div(new Val(ONE, ZERO), pow(x, -n));
+        if (n == 1)
+            return x;
+        if (n % 2 == 0) {
+            Val s = pow(x, n / 2);
+            return mul(s, s);
+        }
+        return mul(pow(x, n - 1), x);
+    }
+
+    /**
+     * Potęga o wykładniku niecałkowitym, w postaci biegunowej
+     */
+    private Val pow(Val x, double p) {
+        Op r = math("pow", add(mul(x.re, x.re), mul(x.im, x.im)), constant(p / 2));
+        Op t = mul(math("atan2", x.im, x.re), constant(p));
+        return new Val(mul(r, math("cos", t)), mul(r, math("sin", t)));
+    }
+
+    // --- zapis klasy ---
+
+    /**
+     * Pula stałych klasy; te same wpisy dostają ten sam numer
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int next = 1;
+
+        int utf(String s) {
+            return entry("U" + s, 1, () -> out.writeUTF(s));
+        }
+
+        int cls(String name) {
+            int n = utf(name);
+            return entry("C" + name, 1, () -> {
+                out.writeByte(7);
+                out.writeShort(n);
+            });
+        }
+
+        int number(double v) {
+            return entry("D" + Double.doubleToRawLongBits(v), 2, () -> {
+                out.writeByte(6);
+                out.writeDouble(v);
+            });
+        }
+
+        /**
+         * Odwołanie do pola (<i>tag</i> 9) albo metody (<i>tag</i> 10)
+         */
+        int member(int tag, String owner, String name, String type) {
+            int c = cls(owner);
+            int n = utf(name);
+            int t = utf(type);
+            int nat = entry("N" + name + ":" + type, 1, () -> {
+                out.writeByte(12);
+                out.writeShort(n);
+                out.writeShort(t);
+            });
+            return entry(tag + owner + "." + name + ":" + type, 1, () -> {
+                out.writeByte(tag);
+                out.writeShort(c);
+                out.writeShort(nat);
+            });
+        }
+
+        private interface Writer {
+            void write() throws IOException;
+        }
+
+        private int entry(String key, int size, Writer writer) {
+            Integer index = entries.get(key);
+            if (index != null)
+                return index;
+            try {
+                if (key.startsWith("U"))
+                    out.writeByte(1);
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entries.put(key, next);
+            next += size;
+            return next - size;
+        }
+
+        void write(DataOutputStream to) throws IOException {
+            to.writeShort(next);
+            to.write(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Kod metody ze skokami uzupełnianymi po poznaniu celu
+     */
+    private static final class Code {
+        private byte[] b = new byte[256];
+        private int pos;
+
+        void op(int op) {
+            u1(op);
+        }
+
+        void u1(int v) {
+            if (pos == b.length)
+                b = java.util.Arrays.copyOf(b, 2 * b.length);
+            b[pos++] = (byte) v;
+        }
+
+        void u2(int v) {
+            u1(v >> 8);
+            u1(v);
+        }
+
+        int position() {
+            return pos;
+        }
+
+        /**
+         * Zapisuje skok i zwraca jego położenie do uzupełnienia
+         */
+        int jump(int op) {
+            int at = pos;
+            op(op);
+            u2(0);
+            return at;
+        }
+
+        void patch(int jump, int target) {
+            int offset = target - jump;
+            b[jump + 1] = (byte) (offset >> 8);
+            b[jump + 2] = (byte) offset;
+        }
+
+        byte[] bytes() {
+            return java.util.Arrays.copyOf(b, pos);
+        }
+    }
+}
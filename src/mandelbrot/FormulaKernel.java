@@ -0,0 +1,46 @@
+package mandelbrot;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Klasa bazowa algorytmów skompilowanych ze wzoru ({@link Formula}).
+ * Kod bajtowy wygenerowany przez {@link FormulaCompiler} dziedziczy po niej
+ * i na początku każdego punktu przepisuje jej pola do zmiennych lokalnych.
+ */
+public abstract class FormulaKernel implements EscapeKernel {
+
+    //pola czytane przez kod generowany, stąd nazwy w FormulaCompiler
+    double r2;
+    int N;
+    //stała c zbioru Julii
+    double cr, ci;
+
+    private Formula formula;
+
+    protected FormulaKernel() {
+    }
+
+    /**
+     * Tworzy obiekt skompilowanej klasy i ustawia jego parametry
+     */
+    static FormulaKernel create(MethodHandle constructor, Formula formula, double r, int N, double cr, double ci) {
+        FormulaKernel k;
+        try {
+            k = (FormulaKernel) constructor.invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        k.formula = formula;
+        k.r2 = r * r;
+        k.N = N;
+        k.cr = cr;
+        k.ci = ci;
+        return k;
+    }
+
+    public Formula getFormula() {
+        return formula;
+    }
+}
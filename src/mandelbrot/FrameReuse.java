@@ -0,0 +1,193 @@
+package mandelbrot;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prędkości ucieczki ostatniej narysowanej klatki, przenoszone do
+ * następnej. Po przesunięciu widoku część wspólna jest kopiowana na nowe
+ * miejsce i liczone są tylko odsłonięte pasy. Po powiększeniu lub
+ * pomniejszeniu o potęgę 2 przenoszony jest co drugi (co czwarty...)
+ * piksel.
+ * <p>
+ * Klatki są wyrównane do siatki ({@link Viewport#aligned()}), więc piksele
+ * przeniesione mają dokładnie te same współrzędne, co policzone od nowa.
+ */
+public class FrameReuse {
+
+    /**
+     * Wartość piksela, którego nie udało się przenieść
+     */
+    static final int NONE = -1;
+
+    //największy przenoszony stosunek kroków
+    private static final long MAX_SCALE = 1 << 10;
+
+    private Viewport view;
+    private int[] counts;
+    private double r;
+    private int N, steps;
+
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder computed = new LongAdder();
+
+    /**
+     * Czy z ostatniej klatki da się przenieść choć jeden piksel widoku <i>v</i>
+     *
+     * @param v widok wyrównany do siatki
+     * @param r promień ucieczki
+     * @param N liczba iteracji
+     * @return true, gdy widoki mają część wspólną
+     */
+    public synchronized boolean overlaps(Viewport v, double r, int N) {
+        if (view == null || this.r != r || this.N != N)
+            return false;
+        long[] re = scale(view.deltaRe, v.deltaRe);
+        long[] im = scale(view.deltaIm, v.deltaIm);
+        if (re == null || im == null)
+            return false;
+        return first(v.ox, v.w, view.ox, view.w, re) < v.w && first(v.oy, v.h, view.oy, view.h, im) < v.h;
+    }
+
+    /**
+     * Przenosi do <i>out</i> piksele ostatniej klatki leżące w węzłach
+     * widoku <i>v</i>; pozostałe dostają {@link #NONE}
+     *
+     * @param v     widok wyrównany do siatki
+     * @param r     promień ucieczki
+     * @param N     liczba iteracji
+     * @param steps liczba części, na które podzielona jest iteracja
+     * @param out   tablica na <tt>w * h</tt> wartości
+     * @return liczbę przeniesionych pikseli
+     */
+    synchronized long copy(Viewport v, double r, int N, int steps, int[] out) {
+        Arrays.fill(out, 0, v.w * v.h, NONE);
+        if (view == null || this.r != r || this.N != N || this.steps != steps)
+            return 0;
+        long[] re = scale(view.deltaRe, v.deltaRe);
+        long[] im = scale(view.deltaIm, v.deltaIm);
+        if (re == null || im == null)
+            return 0;
+
+        long n = 0;
+        for (int y = 0; y < v.h; y++) {
+            long py = local(v.oy + y, im, view.oy, view.h);
+            if (py < 0)
+                continue;
+            int src = (int) py * view.w;
+            if (re[0] == 1 && re[1] == 1) {
+                // ten sam krok: jeden odcinek wiersza
+                int x0 = (int) Math.max(view.ox - v.ox, 0);
+                int x1 = (int) Math.min(view.ox + view.w - v.ox, v.w);
+                if (x0 < x1) {
+                    System.arraycopy(counts, (int) (src + v.ox + x0 - view.ox), out, y * v.w + x0, x1 - x0);
+                    n += x1 - x0;
+                }
+                continue;
+            }
+            for (int x = 0; x < v.w; x++) {
+                long px = local(v.ox + x, re, view.ox, view.w);
+                if (px >= 0) {
+                    out[y * v.w + x] = counts[src + (int) px];
+                    n++;
+                }
+            }
+        }
+        reused.add(n);
+        return n;
+    }
+
+    /**
+     * Zapamiętuje klatkę do przeniesienia w następnym rysowaniu
+     *
+     * @param v      widok wyrównany do siatki
+     * @param r      promień ucieczki
+     * @param N      liczba iteracji
+     * @param steps  liczba części, na które podzielona jest iteracja
+     * @param counts prędkości ucieczki pikseli widoku
+     */
+    synchronized void store(Viewport v, double r, int N, int steps, int[] counts) {
+        int size = v.w * v.h;
+        if (this.counts == null || this.counts.length != size)
+            this.counts = new int[size];
+        System.arraycopy(counts, 0, this.counts, 0, size);
+        this.view = v;
+        this.r = r;
+        this.N = N;
+        this.steps = steps;
+    }
+
+    /**
+     * Zapomina ostatnią klatkę
+     */
+    public synchronized void clear() {
+        view = null;
+        counts = null;
+    }
+
+    public long getReused() {
+        return reused.sum();
+    }
+
+    /**
+     * @return liczbę pikseli liczonych od nowa mimo przenoszenia
+     */
+    public long getComputed() {
+        return computed.sum();
+    }
+
+    void computed(long n) {
+        computed.add(n);
+    }
+
+    /**
+     * Czy piksele widoku <i>a</i> mogą zostać przeniesione do widoku
+     * <i>b</i>: kroki obu widoków są równe albo różnią się o potęgę 2
+     *
+     * @param a widok poprzedni
+     * @param b widok następny
+     * @return true, gdy kroki widoków pozwalają na przenoszenie
+     */
+    static boolean related(Viewport a, Viewport b) {
+        return scale(a.deltaRe, b.deltaRe) != null && scale(a.deltaIm, b.deltaIm) != null;
+    }
+
+    /**
+     * Stosunek kroku <i>old</i> do <i>now</i> jako ułamek {licznik, mianownik},
+     * gdy jest dokładną potęgą 2; inaczej null
+     */
+    private static long[] scale(double old, double now) {
+        if (old == now)
+            return new long[]{1, 1};
+        for (long k = 2; k <= MAX_SCALE; k *= 2) {
+            if (old == now * k)
+                return new long[]{1, k};
+            if (old * k == now)
+                return new long[]{k, 1};
+        }
+        return null;
+    }
+
+    /**
+     * Numer piksela poprzedniego widoku (zaczynającego się w węźle <i>oldO</i>,
+     * o <i>oldN</i> pikselach), w którym leży węzeł <i>g</i> nowej siatki,
+     * albo -1, gdy takiego piksela nie ma
+     */
+    private static long local(long g, long[] scale, long oldO, int oldN) {
+        if (Math.floorMod(g, scale[1]) != 0)
+            return -1;
+        long p = g / scale[1] * scale[0] - oldO;
+        return p < oldN ? p : -1;
+    }
+
+    /**
+     * Pierwszy piksel nowego widoku, który leży w poprzednim, albo <i>n</i>
+     */
+    private static int first(long o, int n, long oldO, int oldN, long[] scale) {
+        for (int i = 0; i < n; i++) {
+            if (local(o + i, scale, oldO, oldN) >= 0)
+                return i;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,71 @@
+package mandelbrot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Liczniki pikseli wnętrza zbioru rozpoznanych bez wykonywania
+ * wszystkich <i>N</i> iteracji. Mogą być zwiększane z wielu wątków.
+ */
+public class InteriorStats {
+
+    //punkty w głównej kardioidzie
+    final LongAdder cardioid = new LongAdder();
+
+    //punkty w kole okresu 2
+    final LongAdder bulb = new LongAdder();
+
+    //punkty, których orbita wpadła w cykl
+    final LongAdder period = new LongAdder();
+
+    /**
+     * Sprawdza, czy punkt leży w głównej kardioidzie
+     *
+     * @param re część rzeczywista punktu
+     * @param im część urojona punktu
+     * @return true jeżeli punkt leży w głównej kardioidzie
+     */
+    static boolean inCardioid(double re, double im) {
+        double x = re - 0.25;
+        double im2 = im * im;
+        double q = x * x + im2;
+        return q * (q + x) <= 0.25 * im2;
+    }
+
+    /**
+     * Sprawdza, czy punkt leży w kole okresu 2, o środku -1 i promieniu 1/4
+     *
+     * @param re część rzeczywista punktu
+     * @param im część urojona punktu
+     * @return true jeżeli punkt leży w kole okresu 2
+     */
+    static boolean inBulb(double re, double im) {
+        double x = re + 1;
+        return x * x + im * im <= 0.0625;
+    }
+
+    public long getCardioid() {
+        return cardioid.sum();
+    }
+
+    public long getBulb() {
+        return bulb.sum();
+    }
+
+    public long getPeriod() {
+        return period.sum();
+    }
+
+    /**
+     * Zeruje wszystkie liczniki
+     */
+    public void reset() {
+        cardioid.reset();
+        bulb.reset();
+        period.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "kardioida=" + getCardioid() + " koło=" + getBulb() + " cykl=" + getPeriod();
+    }
+}
@@ -0,0 +1,96 @@
+package mandelbrot;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Dobór liczby iteracji <i>N</i> do widoku. Punktem wyjścia jest głębokość
+ * powiększenia; zgrubny podgląd policzony z zapasem pokazuje, po ilu
+ * iteracjach uciekają punkty brzegu, i <i>N</i> jest obniżane do
+ * najmniejszej wartości, przy której brzeg jest jeszcze rozróżniony.
+ */
+public class IterationPolicy {
+
+    //najmniejsza i największa dobierana liczba iteracji
+    static final int MIN = 64;
+    static final int MAX = 1 << 20;
+
+    //N dla pełnego widoku zbioru i przyrost na każdy rząd wielkości powiększenia
+    static final int BASE = 100;
+    static final int PER_DECADE = 150;
+
+    //ile razy więcej iteracji liczy podgląd niż wynika z powiększenia
+    static final int HEADROOM = 4;
+
+    //bok podglądu w punktach
+    static final int PREVIEW = 64;
+
+    //część uciekających punktów podglądu, które muszą uciec przed N
+    static final double QUANTILE = 0.995;
+
+    //zapas ponad kwantyl, żeby punkty między punktami podglądu też uciekły
+    static final double MARGIN = 1.25;
+
+    private IterationPolicy() {
+    }
+
+    /**
+     * <i>N</i> wynikające tylko z powiększenia: {@value #BASE} dla widoku
+     * szerokości 4 i {@value #PER_DECADE} więcej na każde dziesięciokrotne
+     * powiększenie
+     *
+     * @param v widok
+     * @return liczbę iteracji
+     */
+    public static int fromScale(Viewport v) {
+        double span = Math.min(v.deltaRe * v.w, v.deltaIm * v.h);
+        double decades = Math.max(0, Math.log10(4 / span));
+        return (int) Math.min(MAX, BASE + PER_DECADE * decades);
+    }
+
+    /**
+     * Dobiera <i>N</i> do widoku na podstawie powiększenia i podglądu
+     * o boku około {@value #PREVIEW} punktów
+     *
+     * @param v         widok
+     * @param r         promień ucieczki
+     * @param threads   liczba wątków liczących podgląd
+     * @param cancelled sprawdzane w trakcie liczenia podglądu
+     * @return liczbę iteracji
+     */
+    public static int choose(Viewport v, double r, int threads, BooleanSupplier cancelled) {
+        int scale = fromScale(v);
+        int cap = (int) Math.min(MAX, (long) HEADROOM * scale);
+        int step = Math.max(1, (Math.max(v.w, v.h) + PREVIEW - 1) / PREVIEW);
+        Viewport preview = v.coarse(step);
+
+        MandelRenderer mr = new MandelRenderer(r, cap);
+        mr.setThreads(threads);
+        int[] counts = new int[preview.w * preview.h];
+        mr.escapeCounts(preview, counts, cancelled);
+        return fromCounts(counts, cap);
+    }
+
+    /**
+     * <i>N</i> wynikające z prędkości ucieczki podglądu liczonego
+     * z <i>cap</i> iteracjami: punkty, które nie uciekły, traktowane są
+     * jako wnętrze
+     *
+     * @param counts prędkości ucieczki podglądu
+     * @param cap    liczba iteracji podglądu
+     * @return liczbę iteracji, nie większą niż <i>cap</i>
+     */
+    static int fromCounts(int[] counts, int cap) {
+        int[] escaped = new int[counts.length];
+        int n = 0;
+        for (int c : counts)
+            if (c < cap)
+                escaped[n++] = c;
+        if (n == 0)
+            return Math.min(cap, Math.max(MIN, cap / HEADROOM));
+
+        Arrays.sort(escaped, 0, n);
+        int kwantyl = escaped[(int) (QUANTILE * (n - 1))];
+        return (int) Math.min(cap, Math.max(MIN, Math.ceil(kwantyl * MARGIN)));
+    }
+}
@@ -0,0 +1,390 @@
+package mandelbrot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Plik prędkości ucieczki pikseli wraz z widokiem, <i>N</i> i <i>r</i>,
+ * pozwalający zmieniać kolory, wycinać i zmniejszać obraz bez ponownego
+ * liczenia.
+ * <p>
+ * Układ pliku (liczby big-endian):
+ * <pre>
+ * nagłówek  "MBRC", wersja, w, h, N, steps, r,
+ *           minRe, maxIm, deltaRe, deltaIm, środek (2 x UTF)
+ * tabela    h + 1 przesunięć początków wierszy (long)
+ * wiersze   ciągi znaczników int: n &gt; 0 - n kolejnych wartości,
+ *           n &lt; 0 - wartość powtórzona -n razy
+ * </pre>
+ * Długie jednolite odcinki, głównie wnętrze zbioru, zajmują po 8 bajtów.
+ * Plik czytany jest przez odwzorowanie w pamięci, fragmentami obejmującymi
+ * całe wiersze, więc rozmiar pliku nie jest ograniczony stertą.
+ */
+public class IterationRaster implements Closeable {
+
+    private static final int MAGIC = 0x4D425243;
+    private static final int VERSION = 1;
+
+    //najkrótszy odcinek zapisywany jako powtórzenie
+    private static final int MIN_RUN = 3;
+
+    //największa długość nagłówka: dwa napisy UTF i pola stałej długości
+    private static final int HEADER = 2 * (1 << 16) + 128;
+
+    //największa długość jednego odwzorowanego fragmentu pliku
+    private static final long REGION = 1L << 30;
+
+    private final FileChannel channel;
+    private final Viewport viewport;
+    private final int N, steps;
+    private final double r;
+    private final long[] rows;
+    private final int[] firstRow;
+    private final long[] regionStart;
+    private final MappedByteBuffer[] regions;
+
+    private IterationRaster(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER));
+        if (header.getInt() != MAGIC || header.getInt() != VERSION)
+            throw new IOException("Nieznany format pliku");
+        int w = header.getInt();
+        int h = header.getInt();
+        N = header.getInt();
+        steps = header.getInt();
+        r = header.getDouble();
+        double minRe = header.getDouble();
+        double maxIm = header.getDouble();
+        double deltaRe = header.getDouble();
+        double deltaIm = header.getDouble();
+        BigDecimal centerRe = new BigDecimal(utf(header));
+        BigDecimal centerIm = new BigDecimal(utf(header));
+        viewport = new Viewport(minRe, maxIm, deltaRe, deltaIm, w, h, centerRe, centerIm);
+
+        rows = new long[h + 1];
+        channel.map(FileChannel.MapMode.READ_ONLY, header.position(), 8L * (h + 1)).asLongBuffer().get(rows);
+
+        // fragmenty do REGION bajtów, każdy z całymi wierszami
+        int count = 0;
+        int[] first = new int[16];
+        for (int y = 0; y < h; y++) {
+            if (y == 0 || rows[y + 1] - rows[first[count - 1]] > REGION) {
+                if (count == first.length)
+                    first = Arrays.copyOf(first, 2 * count);
+                first[count++] = y;
+            }
+        }
+        firstRow = Arrays.copyOf(first, count);
+        regionStart = new long[count];
+        regions = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long end = i + 1 < count ? rows[firstRow[i + 1]] : rows[h];
+            regionStart[i] = rows[firstRow[i]];
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, regionStart[i], end - regionStart[i]);
+        }
+    }
+
+    /**
+     * Otwiera plik prędkości ucieczki do odczytu
+     *
+     * @param file plik
+     * @return otwarty plik
+     * @throws IOException błąd odczytu lub nieznany format
+     */
+    public static IterationRaster open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new IterationRaster(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Liczy widok pasami wierszy i zapisuje prędkości ucieczki do pliku
+     *
+     * @param mr   obiekt liczący
+     * @param v    widok
+     * @param band liczba wierszy liczonych naraz
+     * @param file plik docelowy
+     * @throws IOException błąd zapisu
+     */
+    public static void save(MandelRenderer mr, Viewport v, int band, Path file) throws IOException {
+        int[] counts = new int[v.w * Math.min(band, v.h)];
+        BooleanSupplier never = () -> false;
+        int rows = Math.min(band, v.h);
+        int steps = mr.escapeCounts(v.rows(0, rows), counts, never);
+        try (Writer writer = new Writer(file, v, mr.getN(), steps, mr.getR())) {
+            writer.write(counts, rows);
+            for (int y = rows; y < v.h; y += band) {
+                rows = Math.min(band, v.h - y);
+                if (mr.escapeCounts(v.rows(y, rows), counts, never) != steps)
+                    throw new IllegalStateException("Pasy widoku liczone z różną dokładnością");
+                writer.write(counts, rows);
+            }
+        }
+    }
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    public int width() {
+        return viewport.w;
+    }
+
+    public int height() {
+        return viewport.h;
+    }
+
+    public int getN() {
+        return N;
+    }
+
+    public double getR() {
+        return r;
+    }
+
+    /**
+     * @return liczbę części, na które podzielona jest jedna iteracja
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Odczytuje wiersz <i>y</i>
+     *
+     * @param y   numer wiersza
+     * @param out tablica na co najmniej <i>w</i> wartości, wypełniana od <i>off</i>
+     * @param off indeks pierwszej wartości w <i>out</i>
+     */
+    public void row(int y, int[] out, int off) {
+        if (y < 0 || y >= viewport.h)
+            throw new IndexOutOfBoundsException("Wiersz " + y + " poza obrazem");
+        int region = Arrays.binarySearch(firstRow, y);
+        if (region < 0)
+            region = -region - 2;
+        MappedByteBuffer buffer = regions[region];
+        int pos = (int) (rows[y] - regionStart[region]);
+        int end = (int) (rows[y + 1] - regionStart[region]);
+        int x = off;
+        while (pos < end) {
+            int n = buffer.getInt(pos);
+            pos += 4;
+            if (n > 0) {
+                for (int i = 0; i < n; i++, pos += 4)
+                    out[x++] = buffer.getInt(pos);
+            } else {
+                int value = buffer.getInt(pos);
+                pos += 4;
+                Arrays.fill(out, x, x - n, value);
+                x -= n;
+            }
+        }
+    }
+
+    /**
+     * Koloruje obraz paletą i zapisuje go pasami wierszy
+     *
+     * @param palette paleta
+     * @param band    liczba wierszy kolorowanych naraz
+     * @param writer  zapis obrazu, zamykany po zapisaniu, np.
+     *                {@link RowWriter#create(Path, int, int)}
+     * @throws IOException błąd zapisu
+     */
+    public void recolour(Palette palette, int band, RowWriter writer) throws IOException {
+        int w = viewport.w;
+        int[] lut = ColourTable.linear(palette, N, steps);
+        int[] argb = new int[w * Math.min(band, viewport.h)];
+        try (writer) {
+            for (int y = 0; y < viewport.h; y += band) {
+                int n = Math.min(band, viewport.h - y);
+                for (int i = 0; i < n; i++)
+                    row(y + i, argb, i * w);
+                for (int i = 0; i < n * w; i++)
+                    argb[i] = lut[argb[i]];
+                writer.write(argb, n);
+            }
+        }
+    }
+
+    /**
+     * Zapisuje wycinek obrazu jako nowy plik prędkości ucieczki
+     *
+     * @param x0   pierwsza kolumna wycinka
+     * @param y0   pierwszy wiersz wycinka
+     * @param cw   szerokość wycinka
+     * @param ch   wysokość wycinka
+     * @param file plik docelowy
+     * @throws IOException błąd zapisu
+     */
+    public void crop(int x0, int y0, int cw, int ch, Path file) throws IOException {
+        Viewport v = viewport.crop(x0, y0, cw, ch);
+        int[] line = new int[viewport.w];
+        int[] out = new int[cw];
+        try (Writer writer = new Writer(file, v, N, steps, r)) {
+            for (int y = y0; y < y0 + ch; y++) {
+                row(y, line, 0);
+                System.arraycopy(line, x0, out, 0, cw);
+                writer.write(out, 1);
+            }
+        }
+    }
+
+    /**
+     * Zapisuje obraz zmniejszony <i>step</i> razy jako nowy plik: piksel
+     * (<i>x</i>, <i>y</i>) to piksel (<i>x</i>*<i>step</i>, <i>y</i>*<i>step</i>),
+     * tak jak w {@link Viewport#coarse(int)}
+     *
+     * @param step co ile pikseli brany jest punkt
+     * @param file plik docelowy
+     * @throws IOException błąd zapisu
+     */
+    public void downsample(int step, Path file) throws IOException {
+        if (step < 1)
+            throw new IllegalArgumentException("Krok musi być dodatni");
+        Viewport v = viewport.coarse(step);
+        int[] line = new int[viewport.w];
+        int[] out = new int[v.w];
+        try (Writer writer = new Writer(file, v, N, steps, r)) {
+            for (int y = 0; y < v.h; y++) {
+                row(y * step, line, 0);
+                for (int x = 0; x < v.w; x++)
+                    out[x] = line[x * step];
+                writer.write(out, 1);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static String utf(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort() & 0xFFFF];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Zapis pliku prędkości ucieczki kolejnymi wierszami. Tabela początków
+     * wierszy uzupełniana jest przy zamknięciu.
+     */
+    static class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final int w, h;
+        private final long[] rows;
+        private final long table;
+        private int y;
+        private ByteBuffer buffer;
+
+        Writer(Path file, Viewport v, int N, int steps, double r) throws IOException {
+            this.w = v.w;
+            this.h = v.h;
+            this.rows = new long[h + 1];
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(w);
+            header.writeInt(h);
+            header.writeInt(N);
+            header.writeInt(steps);
+            header.writeDouble(r);
+            header.writeDouble(v.re(0));
+            header.writeDouble(v.im(0));
+            header.writeDouble(v.deltaRe);
+            header.writeDouble(v.deltaIm);
+            header.writeUTF(v.centerRe.toString());
+            header.writeUTF(v.centerIm.toString());
+            header.flush();
+
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+            table = channel.position();
+            rows[0] = table + 8L * (h + 1);
+            channel.position(rows[0]);
+            // najgorszy przypadek: dwa znaczniki na każde MIN_RUN wartości
+            buffer = ByteBuffer.allocate(4 * (w + 2 * (w / MIN_RUN + 1)));
+        }
+
+        /**
+         * Dopisuje kolejne wiersze
+         *
+         * @param counts prędkości ucieczki wierszy, wiersz po wierszu
+         * @param n      liczba wierszy
+         * @throws IOException błąd zapisu
+         */
+        void write(int[] counts, int n) throws IOException {
+            if (y + n > h)
+                throw new IllegalStateException("Więcej wierszy niż wysokość obrazu");
+            for (int i = 0; i < n; i++, y++) {
+                buffer.clear();
+                encode(counts, i * w, buffer);
+                buffer.flip();
+                rows[y + 1] = rows[y] + buffer.remaining();
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+        }
+
+        private void encode(int[] c, int off, ByteBuffer out) {
+            int end = off + w;
+            int literal = off;
+            int i = off;
+            while (i < end) {
+                int j = i + 1;
+                while (j < end && c[j] == c[i])
+                    j++;
+                if (j - i >= MIN_RUN) {
+                    literal(c, literal, i, out);
+                    out.putInt(i - j);
+                    out.putInt(c[i]);
+                    literal = j;
+                }
+                i = j;
+            }
+            literal(c, literal, end, out);
+        }
+
+        private static void literal(int[] c, int from, int to, ByteBuffer out) {
+            if (from == to)
+                return;
+            out.putInt(to - from);
+            for (int i = from; i < to; i++)
+                out.putInt(c[i]);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (y != h)
+                    throw new IOException("Zapisano " + y + " z " + h + " wierszy");
+                ByteBuffer b = ByteBuffer.allocate(8 * (h + 1));
+                b.asLongBuffer().put(rows);
+                long pos = table;
+                while (b.hasRemaining())
+                    pos += channel.write(b, pos);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
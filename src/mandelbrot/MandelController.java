@@ -1,36 +1,95 @@
 package mandelbrot;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.effect.BlendMode;
-import javafx.scene.image.PixelWriter;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.paint.Color;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.TextField;
+import javafx.util.Duration;
 
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.math.MathContext;
 import java.util.Scanner;
 
 public class MandelController {
 
     public Canvas canvas;
     public TextField paramR;
+    public TextField paramN;
     public TextField complexA, complexB;
     public TextField width, height;
+    public TextField formula, julia;
+    public CheckBox overlay;
+    public CheckBox antialias;
+    public CheckBox distance;
     private GraphicsContext gc;
-    final private double Re1 = -2;
-    final private double Re2 = 2;
-    final private double Im1 = -2;
-    final private double Im2 = 2;
-    private double re1 = Re1;
-    private double im1 = Im1;
-    private double re2 = Re2;
-    private double im2 = Im2;
+    final private BigDecimal Re1 = BigDecimal.valueOf(-2);
+    final private BigDecimal Re2 = BigDecimal.valueOf(2);
+    final private BigDecimal Im1 = BigDecimal.valueOf(-2);
+    final private BigDecimal Im2 = BigDecimal.valueOf(2);
+
+    //widok w BigDecimal, żeby powiększać poza dokładność double
+    private BigDecimal re1 = Re1;
+    private BigDecimal im1 = Im1;
+    private BigDecimal re2 = Re2;
+    private BigDecimal im2 = Im2;
 
     //współrzędne ramki
     private double x1, y1, x2, y2;
 
+    //przeciąganie prawym przyciskiem przesuwa widok zamiast powiększać
+    private boolean panning;
+
+    //N dobrane dla ostatniego widoku; przesunięcie go zachowuje, żeby
+    //piksele poprzedniej klatki dało się przenieść
+    private volatile int lastN;
+    private boolean keepN;
+
+    //kafelki wspólne dla kolejnych rysowań
+    private final TileCache tileCache = new TileCache(64L << 20);
+
+    //piksele poprzedniej klatki przenoszone przy przesuwaniu i skalowaniu
+    private final FrameReuse frameReuse = new FrameReuse();
+
+    private final int threads = Runtime.getRuntime().availableProcessors();
+
+    //kolejka liczenia: widok na ekranie, potem kafelki ramki i brzegu widoku
+    private final RenderScheduler scheduler = new RenderScheduler(threads);
+
+    //kafelki ramki liczone przed jej wybraniem; porzucane, gdy się nie przydadzą
+    private static final long PREFETCH_NANOS = 5_000_000_000L;
+    private static final long MARGIN_NANOS = 30_000_000_000L;
+
+    //pas kafelków wokół widoku liczony zawczasu pod przesuwanie
+    private static final int MARGIN_TILES = 2;
+
+    //ramka musi się zatrzymać na tyle, zanim jej kafelki zostaną zlecone
+    private static final Duration PREFETCH_DELAY = Duration.millis(150);
+
+    private RenderScheduler.Ticket prefetch;
+    private PauseTransition prefetchDelay;
+    private volatile RenderScheduler.Ticket margins;
+
+    //liczy obrazy poza wątkiem JavaFX
+    private final ProgressiveRenderer renderer = new ProgressiveRenderer(scheduler);
+
+    //obraz współdzielący pamięć z buforem pikseli
+    private PixelBuffer<IntBuffer> pixelBuffer;
+    private WritableImage image;
+
     private static double defaultHeight;
     private static double defaultWidth;
 
@@ -38,10 +97,13 @@ public class MandelController {
         gc = canvas.getGraphicsContext2D();
         defaultHeight = canvas.getHeight();
         defaultWidth = canvas.getWidth();
+        prefetchDelay = new PauseTransition(PREFETCH_DELAY);
+        prefetchDelay.setOnFinished(e -> prefetch());
         clear(gc);
     }
 
     public void mousePressed(MouseEvent mouseEvent) {
+        panning = mouseEvent.getButton() == MouseButton.SECONDARY;
         x1 = mouseEvent.getX();
         y1 = mouseEvent.getY();
         x2 = x1;
@@ -49,6 +111,8 @@ public class MandelController {
     }
 
     public void mouseMoves(MouseEvent mouseEvent) {
+        if (panning)
+            return;
         double x = mouseEvent.getX();
         double y = mouseEvent.getY();
         gc.setGlobalBlendMode(BlendMode.DIFFERENCE);
@@ -57,40 +121,173 @@ public class MandelController {
         x2 = x;
         y2 = y;
         rect(gc);
+        // kafelki poprzedniej ramki są już niepotrzebne, nowe dopiero po
+        // zatrzymaniu ramki, a nie przy każdym ruchu myszy
+        if (prefetch != null)
+            prefetch.cancel();
+        prefetchDelay.playFromStart();
+    }
+
+    /**
+     * Zleca liczenie kafelków widoku zaznaczonego ramką, zanim przycisk
+     * zostanie puszczony; wywoływana, gdy ramka przez {@link #PREFETCH_DELAY}
+     * się nie zmieniła. Zmiana ramki porzuca kafelki poprzedniej.
+     */
+    private void prefetch() {
+        if (prefetch != null)
+            prefetch.cancel();
+        if (x1 == x2 || y1 == y2)
+            return;
+        double r = getR();
+        Integer fixedN = getN();
+        Formula f;
+        Complex c;
+        try {
+            f = getFormula();
+            c = getJulia();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return;
+        }
+        SamplePattern pattern = antialias.isSelected() ? SamplePattern.ROTATED_4 : null;
+        boolean estimate = distance.isSelected();
+        BigDecimal[] z = zoomed();
+        Viewport v = new Viewport(z[0], z[1], z[2], z[3], (int) canvas.getWidth(), (int) canvas.getHeight());
+
+        RenderScheduler.Ticket ticket = scheduler.ticket();
+        prefetch = ticket;
+        long deadline = System.nanoTime() + PREFETCH_NANOS;
+        // N dobierane jak w draw(), żeby kafelki miały te same klucze
+        scheduler.submit(RenderScheduler.Priority.PREFETCH, deadline, ticket, () -> {
+            int N = fixedN != null ? fixedN : IterationPolicy.choose(v, r, 1, ticket::isCancelled);
+            MandelRenderer mr = renderer(r, N, f, c, pattern, estimate);
+            for (Runnable job : mr.tileJobs(v, 0))
+                scheduler.submit(RenderScheduler.Priority.PREFETCH, deadline, ticket, job);
+        });
     }
 
     public void mouseReleased(MouseEvent mouseEvent) {
         x2 = mouseEvent.getX();
         y2 = mouseEvent.getY();
 
+        if (panning) {
+            pan(Math.round(x1 - x2), Math.round(y1 - y2));
+            return;
+        }
+
         rect(gc);
-        double deltaRe = re2-re1;
-        double deltaIm = im2-im1;
-        double tmpre1 = this.re1;
-        double tmpim1 = this.im2;
-        this.re1 = tmpre1 + ((x1 / canvas.getWidth()) * deltaRe);
-        this.re2 = tmpre1 + ((x2 / canvas.getWidth()) * deltaRe);
-        this.im1 = tmpim1 - ((y1 / canvas.getHeight()) * deltaIm);
-        this.im2 = tmpim1 - ((y2 / canvas.getHeight()) * deltaIm);
+        // kafelki już policzone zostają w pamięci, resztę policzy draw()
+        prefetchDelay.stop();
+        if (prefetch != null)
+            prefetch.cancel();
+        BigDecimal[] z = zoomed();
+        this.re1 = z[0];
+        this.im1 = z[1];
+        this.re2 = z[2];
+        this.im2 = z[3];
 
         System.out.format("%f %f %f %f\n", x1, y1, x2, y2);
 
         draw();
     }
 
+    /**
+     * Rogi widoku zaznaczonego ramką: re1, im1, re2, im2
+     */
+    private BigDecimal[] zoomed() {
+        BigDecimal deltaRe = re2.subtract(re1);
+        BigDecimal deltaIm = im2.subtract(im1);
+        BigDecimal tmpre1 = this.re1;
+        BigDecimal tmpim1 = this.im2;
+        MathContext mc = context(deltaRe.multiply(fraction(Math.abs(x2 - x1), canvas.getWidth())));
+        return new BigDecimal[]{
+                tmpre1.add(fraction(x1, canvas.getWidth()).multiply(deltaRe), mc),
+                tmpim1.subtract(fraction(y1, canvas.getHeight()).multiply(deltaIm), mc),
+                tmpre1.add(fraction(x2, canvas.getWidth()).multiply(deltaRe), mc),
+                tmpim1.subtract(fraction(y2, canvas.getHeight()).multiply(deltaIm), mc)};
+    }
+
+    /**
+     * Przesuwa widok o całą liczbę pikseli, tak by poprzednia klatka
+     * pokrywała się z nową i nie była liczona od nowa
+     */
+    private void pan(long dx, long dy) {
+        if (dx == 0 && dy == 0)
+            return;
+        BigDecimal deltaRe = re2.subtract(re1).abs();
+        BigDecimal deltaIm = im2.subtract(im1).abs();
+        MathContext mc = context(deltaRe);
+        BigDecimal shiftRe = deltaRe.multiply(BigDecimal.valueOf(dx)).divide(BigDecimal.valueOf(canvas.getWidth()), mc);
+        BigDecimal shiftIm = deltaIm.multiply(BigDecimal.valueOf(dy)).divide(BigDecimal.valueOf(canvas.getHeight()), mc);
+        // dokładne dodawanie zachowuje szerokość widoku, a więc i krok pikseli
+        re1 = re1.add(shiftRe);
+        re2 = re2.add(shiftRe);
+        im1 = im1.subtract(shiftIm);
+        im2 = im2.subtract(shiftIm);
+        keepN = true;
+        draw();
+    }
+
+    /**
+     * Kółko myszy powiększa lub pomniejsza widok dwukrotnie wokół kursora;
+     * co drugi piksel nowej klatki pochodzi wtedy z poprzedniej
+     */
+    public void scroll(ScrollEvent scrollEvent) {
+        if (scrollEvent.getDeltaY() == 0)
+            return;
+        BigDecimal factor = scrollEvent.getDeltaY() > 0 ? new BigDecimal("0.5") : BigDecimal.valueOf(2);
+        BigDecimal fx = fraction(scrollEvent.getX(), canvas.getWidth());
+        BigDecimal fy = fraction(scrollEvent.getY(), canvas.getHeight());
+        BigDecimal minRe = re1.min(re2);
+        BigDecimal maxIm = im1.max(im2);
+        BigDecimal deltaRe = re2.subtract(re1).abs();
+        BigDecimal deltaIm = im2.subtract(im1).abs();
+        BigDecimal newRe = deltaRe.multiply(factor);
+        BigDecimal newIm = deltaIm.multiply(factor);
+        MathContext mc = context(newRe);
+        // punkt pod kursorem zostaje w miejscu
+        re1 = minRe.add(fx.multiply(deltaRe.subtract(newRe)), mc);
+        re2 = re1.add(newRe);
+        im2 = maxIm.subtract(fy.multiply(deltaIm.subtract(newIm)), mc);
+        im1 = im2.subtract(newIm);
+        draw();
+    }
+
+    private static BigDecimal fraction(double x, double size) {
+        return new BigDecimal(x / size);
+    }
+
+    /**
+     * Dokładność współrzędnych widoku o szerokości <i>span</i>:
+     * 20 cyfr więcej niż rząd wielkości szerokości
+     */
+    private static MathContext context(BigDecimal span) {
+        int exponent = span.precision() - span.scale() - 1;
+        return new MathContext(Math.max(34, 20 - exponent));
+    }
+
     public void clearCanvas(ActionEvent actionEvent) {
         clear(gc);
     }
 
     private void clear(GraphicsContext gc) {
+        renderer.cancel();
+        if (prefetch != null)
+            prefetch.cancel();
+        if (margins != null)
+            margins.cancel();
+        frameReuse.clear();
         gc.setFill(Color.WHITE);
         gc.setGlobalBlendMode(BlendMode.SRC_OVER);
         gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
         complexA.clear();
         complexB.clear();
         paramR.clear();
+        paramN.clear();
+        paramN.setPromptText("N (auto)");
         width.clear();
         height.clear();
+        formula.clear();
+        julia.clear();
         re1 = Re1;
         im1 = Im1;
         re2 = Re2;
@@ -120,19 +317,106 @@ public class MandelController {
     public void draw() {
 
         double r = getR();
+        Integer fixedN = getN();
+        Formula f;
+        Complex c;
+        try {
+            f = getFormula();
+            c = getJulia();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        int keptN = keepN ? lastN : 0;
+        keepN = false;
         setParams();
-        Complex a = new Complex(re1, im1);
-        Complex b = new Complex(re2, im2);
+        Viewport v = new Viewport(re1, im1, re2, im2, (int) canvas.getWidth(), (int) canvas.getHeight());
+        SamplePattern pattern = antialias.isSelected() ? SamplePattern.ROTATED_4 : null;
+        boolean estimate = distance.isSelected();
+
+        if (margins != null)
+            margins.cancel();
+
+        // nowe zlecenie przerywa liczenie poprzedniego widoku;
+        // N dobierane jest w wątku renderującym, bo wymaga podglądu
+        renderer.submit(cancelled -> {
+            int N = fixedN != null ? fixedN
+                    : keptN > 0 ? keptN : IterationPolicy.choose(v, r, threads, cancelled);
+            lastN = N;
+            Platform.runLater(() -> paramN.setPromptText("N = " + N + (fixedN == null ? " (auto)" : "")));
+
+            MandelRenderer mr = renderer(r, N, f, c, pattern, estimate);
+            mr.setFrameReuse(frameReuse);
+
+            // brzeg widoku liczy się dopiero, gdy kolejka nie ma nic pilniejszego;
+            // osobny obiekt liczący, żeby kafelki brzegu nie wchodziły do pomiarów klatki
+            if (!cancelled.getAsBoolean()) {
+                RenderScheduler.Ticket ticket = scheduler.ticket();
+                margins = ticket;
+                long deadline = System.nanoTime() + MARGIN_NANOS;
+                for (Runnable job : renderer(r, N, f, c, pattern, estimate).tileJobs(v, MARGIN_TILES))
+                    scheduler.submit(RenderScheduler.Priority.MARGIN, deadline, ticket, job);
+            }
+            return mr;
+        }, v, frame -> Platform.runLater(() -> show(frame)));
+    }
+
+    /**
+     * Obiekt liczący z ustawieniami okna. Rysowanie i liczenie kafelków
+     * zawczasu używają tych samych ustawień, więc kafelki trafiają w pamięć.
+     */
+    private MandelRenderer renderer(double r, int N, Formula f, Complex c, SamplePattern pattern, boolean estimate) {
+        MandelRenderer mr = new MandelRenderer(r, N);
+        mr.setThreads(threads);
+        mr.setTileCache(tileCache);
+        mr.setFormula(f);
+        mr.setJulia(c);
+        mr.setAntialiasing(pattern);
+        mr.setDistanceEstimation(estimate);
+        return mr;
+    }
 
-        WritableImage wr = new WritableImage((int) canvas.getWidth(), (int) canvas.getHeight());
-        PixelWriter pw = wr.getPixelWriter();
+    private void show(ProgressiveRenderer.Frame frame) {
+        if (!renderer.isCurrent(frame))
+            return;
 
-        MandelFractal mf = new MandelFractal(r);
+        if (pixelBuffer == null || pixelBuffer.getWidth() != frame.w || pixelBuffer.getHeight() != frame.h) {
+            IntBuffer buffer = ByteBuffer.allocateDirect(4 * frame.w * frame.h)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+            // kolory są nieprzezroczyste, więc ARGB i ARGB_PRE są tym samym
+            pixelBuffer = new PixelBuffer<>(frame.w, frame.h, buffer, PixelFormat.getIntArgbPreInstance());
+            image = new WritableImage(pixelBuffer);
+        }
+
+        // jedno kopiowanie całej klatki, bez wywołań dla każdego piksela
+        pixelBuffer.updateBuffer(pb -> {
+            IntBuffer buffer = pb.getBuffer();
+            buffer.clear();
+            buffer.put(frame.argb, 0, frame.w * frame.h);
+            return null;
+        });
 
-        mf.draw(pw, a, b, (int) canvas.getWidth(), (int) canvas.getHeight());
         gc.setGlobalBlendMode(BlendMode.SRC_OVER);
-        gc.drawImage(wr, 0, 0, canvas.getWidth(), canvas.getHeight());
+        gc.drawImage(image, 0, 0, frame.w, frame.h);
 
+        if (frame.last && frame.metrics != null && overlay.isSelected())
+            drawMetrics(frame.metrics);
+    }
+
+    /**
+     * Wypisuje pomiary klatki w lewym górnym rogu obrazu
+     */
+    private void drawMetrics(RenderMetrics m) {
+        String[] lines = {
+                String.format("%.1f ms, %.2f Mpx/s", m.getWallNanos() * 1e-6, m.pixelsPerSecond() * 1e-6),
+                String.format("N = %d, średnio %.1f iteracji", m.getN(), m.meanIterations()),
+                String.format("wnętrze %.1f%%, policzone %d px", 100 * m.interiorFraction(), m.getComputed()),
+                String.format("%s, wątki %d (%.0f%%)", m.getKernel(), m.getThreads(), 100 * m.utilization())};
+        gc.setFill(Color.rgb(0, 0, 0, 0.6));
+        gc.fillRect(4, 4, 260, 16 * lines.length + 8);
+        gc.setFill(Color.WHITE);
+        for (int i = 0; i < lines.length; i++)
+            gc.fillText(lines[i], 10, 22 + 16 * i);
     }
 
     private void setParams() {
@@ -160,24 +444,56 @@ public class MandelController {
         return r;
     }
 
+    /**
+     * Liczba iteracji wpisana przez użytkownika albo null, gdy ma być dobrana
+     */
+    private Integer getN() {
+        Integer N = null;
+        Scanner sc = new Scanner(paramN.getText());
+        if (sc.hasNextInt())
+            N = Math.max(1, sc.nextInt());
+        sc.close();
+        return N;
+    }
+
+    /**
+     * Wzór wpisany przez użytkownika albo null dla zbioru Mandelbrota
+     *
+     * @throws IllegalArgumentException jeżeli wzór jest niepoprawny
+     */
+    private Formula getFormula() {
+        String text = formula.getText().trim();
+        return text.isEmpty() ? null : Formula.parse(text);
+    }
+
+    /**
+     * Stała zbioru Julii albo null dla zbioru Mandelbrota
+     *
+     * @throws IllegalArgumentException jeżeli liczba jest niepoprawna
+     */
+    private Complex getJulia() {
+        String text = julia.getText().trim();
+        return text.isEmpty() ? null : new Complex(text);
+    }
+
     private Complex getA() {
         if (!complexA.getText().isEmpty())
             return new Complex(complexA.getText());
         else
-            return new Complex(re1, im1);
+            return new Complex(re1.doubleValue(), im1.doubleValue());
     }
 
     private Complex getB() {
         if (!complexB.getText().isEmpty())
             return new Complex(complexB.getText());
         else
-            return new Complex(re2, im2);
+            return new Complex(re2.doubleValue(), im2.doubleValue());
     }
 
     public void set(ActionEvent actionEvent) {
-        this.re1 = getA().re();
-        this.re2 = getB().re();
-        this.im1 = getA().im();
-        this.im2 = getB().im();
+        this.re1 = BigDecimal.valueOf(getA().re());
+        this.re2 = BigDecimal.valueOf(getB().re());
+        this.im1 = BigDecimal.valueOf(getA().im());
+        this.im2 = BigDecimal.valueOf(getB().im());
     }
 }
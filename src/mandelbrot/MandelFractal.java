@@ -8,10 +8,11 @@ import javafx.scene.image.PixelFormat;
 import javafx.scene.image.PixelWriter;
 import javafx.stage.Stage;
 
+import java.nio.IntBuffer;
+
 public class MandelFractal extends Application implements ComplexDrawable {
 
-    private double r;
-    final private int N;
+    private final MandelRenderer renderer;
 
     public MandelFractal() {
         this(2d);
@@ -22,8 +23,11 @@ public class MandelFractal extends Application implements ComplexDrawable {
     }
 
     public MandelFractal(double r, int N) {
-        this.r = r;
-        this.N = N;
+        this(new MandelRenderer(r, N));
+    }
+
+    public MandelFractal(MandelRenderer renderer) {
+        this.renderer = renderer;
     }
 
     public static void main(String[] args) {
@@ -38,77 +42,36 @@ public class MandelFractal extends Application implements ComplexDrawable {
         primaryStage.show();
     }
 
+    /**
+     * Obiekt liczący obraz; przez niego ustawia się algorytm, liczbę wątków,
+     * paletę itd.
+     *
+     * @return obiekt liczący obraz
+     */
+    public MandelRenderer getRenderer() {
+        return renderer;
+    }
+
     @Override
     public void draw(PixelWriter pw, Complex a, Complex b, int w, int h) {
+        draw(pw, new Viewport(a, b, w, h));
+    }
 
-        double maxRe = Math.max(a.re(), b.re());
-        double minRe = Math.min(a.re(), b.re());
-        double maxIm = Math.max(a.im(), b.im());
-        double minIm = Math.min(a.im(), b.im());
-        double deltaRe = Math.abs(maxRe - minRe) / w;
-        double deltaIm = Math.abs(maxIm - minIm) / h;
-        Complex p = new Complex(minRe, maxIm);
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                pw.setArgb(x, y, colour(p));
-                p.setRe(p.re() + deltaRe);
-            }
-            p.setRe(minRe);
-            p.setIm(p.im()-deltaIm);
-        }
+    @Override
+    public void draw(IntBuffer argb, Complex a, Complex b, int w, int h) {
+        renderer.render(new Viewport(a, b, w, h), argb, () -> false);
     }
 
     /**
-     * Funkcja zwraca kolor piksela
-     * @param c - liczba Complex
-     * @return
+     * Rysuje widok <i>v</i>. Widok o rogach w {@link java.math.BigDecimal}
+     * pozwala na powiększenia głębsze niż dokładność double.
+     *
+     * @param pw obiekt zapisujący piksele
+     * @param v  widok
      */
-    private int colour(Complex c) {
-
-        int predkosc = predkoscUcieczki(c);
-
-        //zbieżny
-        if (predkosc == N)
-            return 0xFF000000;  //czarny
-
-
-        double procentPredkosci = ((double) predkosc / (double) N) * 100;
-        int red, green, blue;
-        red = green = blue = 0;
-
-        if (procentPredkosci < 50) {      //R
-            red = (int) ((1d - 2d * procentPredkosci) * 0xFF);
-            red = red << 16;
-        }
-
-        if (25 < procentPredkosci && procentPredkosci < 75) {   //G
-            green = (int) (((procentPredkosci - 0.25) * 2) * 0xFF);
-            green = green << 8;
-        }
-
-        if (procentPredkosci > 50) {    //B
-            blue = (int) (((procentPredkosci - 0.5) * 2) * 0xFF);
-        }
-
-        int kolor = (red | green | blue);
-        kolor |= 0xFF000000;
-
-        return kolor;
-    }
-
-    private int predkoscUcieczki(Complex c) {
-
-        int v = 0;
-        Complex z1 = new Complex(c);    //z1 = 0+0i + c
-        for (int n = 2; n <= N; n++) {
-            v = n;
-            z1.mul(z1).add(c);
-            if (z1.sqrAbs() > (r * r))
-                break;
-        }
-
-        return v;
+    public void draw(PixelWriter pw, Viewport v) {
+        int[] argb = renderer.render(v, () -> false);
+        pw.setPixels(0, 0, v.w, v.h, PixelFormat.getIntArgbInstance(), argb, 0, v.w);
     }
 
 }
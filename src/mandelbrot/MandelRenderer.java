@@ -0,0 +1,794 @@
+package mandelbrot;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Liczenie obrazu zbioru Mandelbrota bez zależności od JavaFX: wybór
+ * algorytmu, podział pracy na wątki, pamięć kafelków i kolorowanie.
+ * Używany przez okno {@link MandelFractal} i przez {@link BatchRenderer}
+ * działający bez ekranu.
+ */
+public class MandelRenderer {
+
+    /**
+     * Algorytm liczenia prędkości ucieczki używany przez {@link #render}
+     */
+    public enum Kernel {
+        /** referencyjny, na obiektach {@link Complex} */
+        COMPLEX,
+        /** na zmiennych double, bez alokacji dla piksela */
+        PRIMITIVE,
+        /** pasami punktów w rejestrach wektorowych, bez Vector API jak PRIMITIVE */
+        VECTOR,
+        /** na liczbach double-double {@link ComplexDD} */
+        DOUBLE_DOUBLE,
+        /** odchylenia od orbity odniesienia, dla powiększeń poza zasięgiem double */
+        PERTURBATION
+    }
+
+    /**
+     * Względny odstęp pikseli ({@link Viewport#relativeSpacing()}), poniżej
+     * którego algorytmy na double zastępowane są przez double-double
+     */
+    static final double DOUBLE_LIMIT = 1e-13;
+
+    /**
+     * Względny odstęp pikseli, poniżej którego double-double zastępowane
+     * jest perturbacją
+     */
+    static final double DOUBLE_DOUBLE_LIMIT = 1e-28;
+
+    private double r;
+    final private int N;
+    private int threads = 1;
+    private Kernel kernel = Kernel.PRIMITIVE;
+    private boolean interiorChecks = true;
+    private final InteriorStats interiorStats = new InteriorStats();
+    private boolean subdivision = false;
+    private final FillStats fillStats = new FillStats();
+    private final LongAdder rebases = new LongAdder();
+    private TileCache tileCache;
+    private FrameReuse frameReuse;
+    private OrbitCache orbitCache;
+    private Consumer<RenderMetrics> metricsListener;
+    private volatile RenderMetrics lastMetrics;
+    private Palette palette = Palette.CLASSIC;
+    private boolean smooth = false;
+    private boolean histogram = false;
+    private boolean distance = false;
+    private Formula formula;
+    private Complex julia;
+    private SamplePattern antialiasing;
+    private final LongAdder antialiased = new LongAdder();
+
+    //widok i algorytm ostatniego liczenia; wygładzanie liczy nim dodatkowe próbki
+    private volatile Counted lastCounted;
+
+    public MandelRenderer() {
+        this(2d);
+    }
+
+    public MandelRenderer(double r) {
+        this(r, 100);
+    }
+
+    public MandelRenderer(double r, int N) {
+        this.r = r;
+        this.N = N;
+    }
+
+    public double getR() {
+        return r;
+    }
+
+    public int getN() {
+        return N;
+    }
+
+    /**
+     * Ustawia liczbę wątków renderujących. Dla 1 obraz liczony jest
+     * w wątku wołającym, dla większej liczby - kafelkami w puli fork-join.
+     * Wynik jest identyczny niezależnie od liczby wątków.
+     *
+     * @param threads liczba wątków, co najmniej 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Liczba wątków musi być dodatnia");
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Wybiera algorytm liczenia prędkości ucieczki
+     *
+     * @param kernel algorytm
+     */
+    public void setKernel(Kernel kernel) {
+        this.kernel = kernel;
+    }
+
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Włącza lub wyłącza rozpoznawanie wnętrza zbioru (kardioida, koło
+     * okresu 2, cykle orbit) w algorytmach PRIMITIVE i VECTOR.
+     * Wyłączenie daje wyniki dokładnie równe algorytmowi referencyjnemu.
+     *
+     * @param interiorChecks true aby rozpoznawać wnętrze
+     */
+    public void setInteriorChecks(boolean interiorChecks) {
+        this.interiorChecks = interiorChecks;
+    }
+
+    public boolean getInteriorChecks() {
+        return interiorChecks;
+    }
+
+    /**
+     * Liczniki pikseli wnętrza rozpoznanych skrótami, sumowane
+     * ze wszystkich wywołań {@link #render}
+     *
+     * @return liczniki punktów wnętrza
+     */
+    public InteriorStats getInteriorStats() {
+        return interiorStats;
+    }
+
+    /**
+     * Włącza renderowanie przez rekurencyjny podział widoku: prostokąty
+     * o jednolitym brzegu są wypełniane bez liczenia wnętrza.
+     *
+     * @param subdivision true aby dzielić widok
+     */
+    public void setSubdivision(boolean subdivision) {
+        this.subdivision = subdivision;
+    }
+
+    public boolean getSubdivision() {
+        return subdivision;
+    }
+
+    /**
+     * Liczniki pikseli policzonych i wypełnionych przy podziale widoku
+     * i kolorowaniu odległością, sumowane ze wszystkich wywołań {@link #render}
+     *
+     * @return liczniki pikseli
+     */
+    public FillStats getFillStats() {
+        return fillStats;
+    }
+
+    /**
+     * Liczba przeniesień odchylenia na początek orbity odniesienia
+     * w algorytmie perturbacji, sumowana ze wszystkich wywołań {@link #render}
+     *
+     * @return liczba przeniesień
+     */
+    public long getRebases() {
+        return rebases.sum();
+    }
+
+    /**
+     * Ustawia pamięć podręczną kafelków. Z pamięcią widok jest wyrównywany
+     * do siatki swoich kroków (przesunięcie mniejsze niż pół piksela),
+     * a kafelki obecne w pamięci nie są liczone ponownie.
+     * Pamięć nie jest używana przy podziale widoku i w powiększeniach
+     * wymagających dokładności większej niż double.
+     *
+     * @param tileCache pamięć kafelków, null wyłącza pamięć
+     */
+    public void setTileCache(TileCache tileCache) {
+        this.tileCache = tileCache;
+    }
+
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * Ustawia przenoszenie pikseli z poprzedniej klatki. Widok jest wtedy
+     * wyrównywany do siatki, a po przesunięciu albo zmianie skali o potęgę 2
+     * liczone są tylko piksele, których nie było w poprzedniej klatce.
+     * Przenoszenie ma pierwszeństwo przed pamięcią kafelków i, tak jak ona,
+     * nie działa przy podziale widoku i poza zasięgiem dokładności double.
+     *
+     * @param frameReuse poprzednia klatka, null wyłącza przenoszenie
+     */
+    public void setFrameReuse(FrameReuse frameReuse) {
+        this.frameReuse = frameReuse;
+    }
+
+    public FrameReuse getFrameReuse() {
+        return frameReuse;
+    }
+
+    /**
+     * Czy rysowanie widoku przeniesie piksele z poprzedniej klatki
+     *
+     * @param view widok
+     * @return true, gdy część pikseli nie będzie liczona
+     */
+    public boolean reuses(Viewport view) {
+        return frameReuse != null && aligns(view) && frameReuse.overlaps(view.aligned(), r, N);
+    }
+
+    /**
+     * Czy widok może być liczony w siatce widoku wyrównanego, z pamięcią
+     * kafelków albo klatek; ich klucze nie obejmują wzoru ani rodzaju
+     * kolorowania innego niż płynne. Double-double i perturbacja liczą
+     * piksele względem środka widoku, dla którego je utworzono, więc nie
+     * mogą liczyć osobnych kafelków siatki.
+     */
+    private boolean aligns(Viewport view) {
+        return !subdivision && !distance && !custom() && view.relativeSpacing() >= DOUBLE_LIMIT
+                && kernel != Kernel.DOUBLE_DOUBLE && kernel != Kernel.PERTURBATION;
+    }
+
+    /**
+     * Ustawia pamięć orbity odniesienia perturbacji, dzięki której kolejne
+     * widoki o tym samym środku nie liczą orbity od nowa
+     *
+     * @param orbitCache pamięć orbity, null wyłącza pamięć
+     */
+    public void setOrbitCache(OrbitCache orbitCache) {
+        this.orbitCache = orbitCache;
+    }
+
+    public OrbitCache getOrbitCache() {
+        return orbitCache;
+    }
+
+    /**
+     * Ustawia odbiorcę pomiarów; wywoływany w wątku liczącym po każdym
+     * liczeniu widoku, także podglądu zgrubnego
+     *
+     * @param metricsListener odbiorca pomiarów, null wyłącza powiadamianie
+     */
+    public void setMetricsListener(Consumer<RenderMetrics> metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Pomiary ostatniego zakończonego liczenia
+     *
+     * @return pomiary albo null, gdy nic jeszcze nie zostało policzone
+     */
+    public RenderMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    /**
+     * Ustawia paletę barw
+     *
+     * @param palette paleta
+     */
+    public void setPalette(Palette palette) {
+        this.palette = palette;
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    /**
+     * Włącza kolorowanie z częścią ułamkową prędkości ucieczki, bez pasm.
+     * Działa w zakresie dokładności double; przy głębszych powiększeniach
+     * kolorowanie pozostaje całkowite.
+     *
+     * @param smooth true aby kolorować płynnie
+     */
+    public void setSmooth(boolean smooth) {
+        this.smooth = smooth;
+    }
+
+    public boolean getSmooth() {
+        return smooth;
+    }
+
+    /**
+     * Włącza wyrównanie kolorów histogramem prędkości ucieczki obrazu
+     *
+     * @param histogram true aby wyrównywać histogramem
+     */
+    public void setHistogram(boolean histogram) {
+        this.histogram = histogram;
+    }
+
+    public boolean getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Włącza kolorowanie odległością od zbioru ({@link DistanceKernel})
+     * z wypełnianiem kół tła bez liczenia ({@link DiskFill}). Działa
+     * w zakresie dokładności double dla zbioru Mandelbrota; ma pierwszeństwo
+     * przed kolorowaniem płynnym i podziałem widoku, a wyłącza pamięć kafelków
+     * i przenoszenie klatek.
+     *
+     * @param distance true aby kolorować odległością
+     */
+    public void setDistanceEstimation(boolean distance) {
+        this.distance = distance;
+    }
+
+    public boolean getDistanceEstimation() {
+        return distance;
+    }
+
+    /**
+     * Włącza wygładzanie krawędzi: piksele, których prędkość ucieczki różni
+     * się od sąsiednich, dostają kolor uśredniony z dodatkowych próbek
+     *
+     * @param antialiasing rozmieszczenie próbek, null wyłącza wygładzanie
+     */
+    public void setAntialiasing(SamplePattern antialiasing) {
+        this.antialiasing = antialiasing;
+    }
+
+    public SamplePattern getAntialiasing() {
+        return antialiasing;
+    }
+
+    /**
+     * Liczba pikseli wygładzonych dodatkowymi próbkami, sumowana ze
+     * wszystkich wywołań {@link #render}
+     *
+     * @return liczba wygładzonych pikseli
+     */
+    public long getAntialiased() {
+        return antialiased.sum();
+    }
+
+    /**
+     * Ustawia własny wzór iteracji, liczony skompilowanym algorytmem
+     * na liczbach double niezależnie od wybranego algorytmu. Wzór wyłącza
+     * kolorowanie płynne, rozpoznawanie wnętrza, pamięć kafelków
+     * i przenoszenie klatek.
+     *
+     * @param formula wzór, null przywraca zbiór Mandelbrota
+     */
+    public void setFormula(Formula formula) {
+        this.formula = formula;
+    }
+
+    public Formula getFormula() {
+        return formula;
+    }
+
+    /**
+     * Rysuje zbiór Julii wzoru (bez wzoru: <i>z</i>^2 + <i>c</i>) o stałej
+     * <i>c</i>; punkt widoku jest wtedy wartością początkową <i>z</i>
+     *
+     * @param julia stała <i>c</i>, null rysuje zbiór Mandelbrota
+     */
+    public void setJulia(Complex julia) {
+        this.julia = julia == null ? null : new Complex(julia);
+    }
+
+    public Complex getJulia() {
+        return julia == null ? null : new Complex(julia);
+    }
+
+    /**
+     * Czy liczony jest własny wzór albo zbiór Julii zamiast zbioru Mandelbrota
+     */
+    private boolean custom() {
+        return formula != null || julia != null;
+    }
+
+    private EscapeKernel escapeKernel(Viewport v) {
+        if (custom()) {
+            Formula f = formula != null ? formula : Formula.MANDELBROT;
+            return julia != null ? f.julia(r, N, julia) : f.kernel(r, N);
+        }
+        InteriorStats interior = interiorChecks ? interiorStats : null;
+        double spacing = v.relativeSpacing();
+        if (kernel == Kernel.PERTURBATION || spacing < DOUBLE_DOUBLE_LIMIT)
+            return orbitCache != null
+                    ? new PerturbationKernel(orbitCache.get(v, r, N), r, N)
+                    : new PerturbationKernel(v, r, N);
+        if (kernel == Kernel.DOUBLE_DOUBLE || spacing < DOUBLE_LIMIT)
+            return new DoubleDoubleKernel(v, r, N);
+        double pixel = Math.max(v.deltaRe, v.deltaIm);
+        if (distance)
+            return new DistanceKernel(r, N, pixel, interior);
+        if (smooth)
+            return new SmoothKernel(r, N, interior);
+        switch (kernel) {
+            case COMPLEX:
+                return (re, im) -> predkoscUcieczki(new Complex(re, im));
+            case VECTOR:
+                return vectorKernel(r, N, interior, pixel);
+            default:
+                return new PrimitiveKernel(r, N, interior, pixel);
+        }
+    }
+
+    /**
+     * Tworzy {@link VectorKernel}, a jeżeli Vector API jest niedostępne -
+     * {@link PrimitiveKernel} o tych samych parametrach. Klasa VectorKernel
+     * ładowana jest dopiero tutaj, po sprawdzeniu modułu.
+     */
+    static EscapeKernel vectorKernel(double r, int N, InteriorStats interior, double pixel) {
+        if (!vectorAvailable())
+            return new PrimitiveKernel(r, N, interior, pixel);
+        try {
+            return new VectorKernel(r, N, interior, pixel);
+        } catch (LinkageError e) {
+            return new PrimitiveKernel(r, N, interior, pixel);
+        }
+    }
+
+    /**
+     * Sprawdza, czy moduł Vector API został załadowany do maszyny wirtualnej
+     *
+     * @return true jeżeli można używać Vector API
+     */
+    static boolean vectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * Liczy kolory pikseli widoku. Może być wywołana poza wątkiem JavaFX.
+     *
+     * @param view      widok
+     * @param cancelled sprawdzane w trakcie liczenia; gdy zwróci true,
+     *                  liczenie jest przerywane
+     * @return kolory ARGB kolejnych wierszy widoku
+     * @throws CancellationException jeżeli liczenie zostało przerwane
+     */
+    public int[] render(Viewport view, BooleanSupplier cancelled) throws CancellationException {
+        int[] argb = new int[view.w * view.h];
+        render(view, IntBuffer.wrap(argb), cancelled);
+        return argb;
+    }
+
+    /**
+     * Liczy kolory pikseli widoku do bufora: piksel (<i>x</i>, <i>y</i>)
+     * trafia pod indeks <tt>y * w + x</tt>. Bufor tablicowy zaczynający się
+     * od początku tablicy służy od razu za tablicę prędkości ucieczki.
+     *
+     * @param view      widok
+     * @param argb      bufor o pojemności co najmniej <tt>w * h</tt>
+     * @param cancelled sprawdzane w trakcie liczenia; gdy zwróci true,
+     *                  liczenie jest przerywane
+     * @throws CancellationException jeżeli liczenie zostało przerwane
+     */
+    public void render(Viewport view, IntBuffer argb, BooleanSupplier cancelled) throws CancellationException {
+
+        int w = view.w;
+        int h = view.h;
+        int[] counts = argb.hasArray() && argb.arrayOffset() == 0 && argb.array().length >= w * h
+                ? argb.array() : new int[w * h];
+
+        int steps = escapeCounts(view, counts, cancelled);
+        int[] lut = histogram
+                ? ColourTable.histogram(palette, N, steps, counts, w * h, threads)
+                : ColourTable.linear(palette, N, steps);
+
+        SamplePattern pattern = antialiasing;
+        if (pattern == null) {
+            // kolor zastępuje prędkość ucieczki, także gdy bufor i tablica są wspólne
+            TileRenderer.render(threads, w, h, (y, x0, x1) -> {
+                for (int i = y * w + x0; i < y * w + x1; i++)
+                    argb.put(i, lut[counts[i]]);
+            });
+            return;
+        }
+
+        // krawędzie wyszukiwane są przed kolorowaniem, które nadpisuje prędkości ucieczki
+        byte[] edges = Antialiasing.edges(counts, w, h, steps, threads, cancelled);
+        Counted c = lastCounted;
+        if (c == null || c.view != view)
+            c = new Counted(view, view, escapeKernel(view));
+        EscapeKernel k = c.kernel;
+        Viewport fine = c.counted.fine(pattern.scale);
+        TileRenderer.render(threads, w, h, cancelled, (y, x0, x1) -> {
+            int n = 0;
+            for (int x = x0; x < x1; x++) {
+                int i = y * w + x;
+                if (edges[i] != 0) {
+                    argb.put(i, Antialiasing.colour(k, fine, pattern, x, y, counts[i], lut));
+                    n++;
+                } else {
+                    argb.put(i, lut[counts[i]]);
+                }
+            }
+            antialiased.add(n);
+        });
+    }
+
+    /**
+     * Widok podany do {@link #escapeCounts}, widok, którego piksele
+     * faktycznie policzono (np. wyrównany do siatki), i użyty algorytm
+     */
+    private static final class Counted {
+        final Viewport view, counted;
+        final EscapeKernel kernel;
+
+        Counted(Viewport view, Viewport counted, EscapeKernel kernel) {
+            this.view = view;
+            this.counted = counted;
+            this.kernel = kernel;
+        }
+    }
+
+    /**
+     * Liczy prędkości ucieczki pikseli widoku bez kolorowania: piksel
+     * (<i>x</i>, <i>y</i>) trafia pod indeks <tt>y * w + x</tt>.
+     * Przy kolorowaniu płynnym wartości są w jednostkach 1/<i>steps</i>
+     * iteracji, od 0 do <tt>N * steps</tt>. Przy kolorowaniu odległością
+     * wartości z tego samego zakresu wynikają z odległości od zbioru.
+     *
+     * @param view      widok
+     * @param counts    tablica o długości co najmniej <tt>w * h</tt>
+     * @param cancelled sprawdzane w trakcie liczenia; gdy zwróci true,
+     *                  liczenie jest przerywane
+     * @return liczbę części, na które podzielona jest jedna iteracja
+     * @throws CancellationException jeżeli liczenie zostało przerwane
+     */
+    public int escapeCounts(Viewport view, int[] counts, BooleanSupplier cancelled) throws CancellationException {
+
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        long start = System.nanoTime();
+        CpuTimer timer = new CpuTimer();
+        long iterated = fillStats.getIterated();
+
+        int w = view.w;
+        int h = view.h;
+        boolean cached = tileCache != null && aligns(view);
+        boolean reuse = frameReuse != null && aligns(view);
+        Viewport v = cached || reuse ? view.aligned() : view;
+        EscapeKernel k = escapeKernel(v);
+        int steps = k instanceof SmoothKernel ? SmoothKernel.STEPS
+                : k instanceof DistanceKernel ? DistanceKernel.STEPS : 1;
+
+        if (reuse && frameReuse.copy(v, r, N, steps, counts) > 0) {
+            drawMissing(v, k, counts, cached, cancelled, timer);
+        } else if (cached) {
+            drawCached(v, k, counts, cancelled, timer);
+        } else if (k instanceof DistanceKernel) {
+            DiskFill.render(threads, (DistanceKernel) k, v, counts, fillStats, cancelled, timer);
+        } else if (subdivision) {
+            MarianiSilver.render(threads, k, v, counts, fillStats, cancelled, timer);
+        } else {
+            TileRenderer.render(threads, w, h, cancelled, timer, (y, x0, x1) -> k.escapeRow(v, y, x0, x1, counts));
+            fillStats.iterated.add((long) w * h);
+        }
+
+        if (reuse)
+            frameReuse.store(v, r, N, steps, counts);
+        lastCounted = new Counted(view, v, k);
+        if (k instanceof PerturbationKernel)
+            rebases.add(((PerturbationKernel) k).getRebases());
+
+        long wall = System.nanoTime() - start;
+        long cpu = timer.elapsed();
+        event.end();
+        measured(v, k, steps, counts, fillStats.getIterated() - iterated, wall, cpu, event);
+        return steps;
+    }
+
+    /**
+     * Zapisuje pomiary liczenia, powiadamia odbiorcę i zatwierdza zdarzenie JFR
+     */
+    private void measured(Viewport v, EscapeKernel k, int steps, int[] counts, long computed,
+                          long wall, long cpu, RenderEvent event) {
+        int pixels = v.w * v.h;
+        int top = N * steps;
+        long sum = 0;
+        long interior = 0;
+        for (int i = 0; i < pixels; i++) {
+            sum += counts[i];
+            if (counts[i] >= top)
+                interior++;
+        }
+        String name = k.getClass().isSynthetic() ? kernel.name()
+                : k instanceof FormulaKernel ? "FormulaKernel" : k.getClass().getSimpleName();
+        RenderMetrics m = new RenderMetrics(v, N, name, threads, pixels,
+                Math.min(computed, pixels), interior, sum / steps, wall, cpu);
+        lastMetrics = m;
+        if (metricsListener != null)
+            metricsListener.accept(m);
+        if (event.shouldCommit()) {
+            event.set(m);
+            event.commit();
+        }
+    }
+
+    /**
+     * Liczy odcinki wierszy, których nie udało się przenieść z poprzedniej
+     * klatki; z pamięcią kafelków najpierw bierze piksele z kafelków
+     * policzonych wcześniej, np. zawczasu przy brzegu widoku
+     */
+    private void drawMissing(Viewport v, EscapeKernel k, int[] out, boolean cached, BooleanSupplier cancelled,
+                             CpuTimer timer) {
+        if (cached)
+            copyCached(v, k, out);
+        TileRenderer.render(threads, v.w, v.h, cancelled, timer, (y, x0, x1) -> {
+            int row = y * v.w;
+            int n = 0;
+            for (int x = x0; x < x1; x++) {
+                if (out[row + x] != FrameReuse.NONE)
+                    continue;
+                int end = x + 1;
+                while (end < x1 && out[row + end] == FrameReuse.NONE)
+                    end++;
+                k.escapeRow(v, y, x, end, out);
+                n += end - x;
+                x = end;
+            }
+            fillStats.iterated.add(n);
+            frameReuse.computed(n);
+        });
+    }
+
+    /**
+     * Kopiuje z pamięci kafelki widoku <i>v</i>, w których brakuje pikseli
+     */
+    private void copyCached(Viewport v, EscapeKernel k, int[] out) {
+        final int T = TileRenderer.TILE;
+        for (long ty = Math.floorDiv(v.oy, T); ty * T < v.oy + v.h; ty++) {
+            for (long tx = Math.floorDiv(v.ox, T); tx * T < v.ox + v.w; tx++) {
+                int x0 = (int) Math.max(tx * T - v.ox, 0);
+                int x1 = (int) Math.min(tx * T + T - v.ox, v.w);
+                int y0 = (int) Math.max(ty * T - v.oy, 0);
+                int y1 = (int) Math.min(ty * T + T - v.oy, v.h);
+                if (!missing(out, v.w, x0, y0, x1, y1))
+                    continue;
+                int[] counts = tileCache.get(tileKey(tx, ty, v, k));
+                if (counts == null)
+                    continue;
+                for (int y = y0; y < y1; y++) {
+                    int src = (int) ((v.oy + y - ty * T) * T + (v.ox + x0 - tx * T));
+                    System.arraycopy(counts, src, out, y * v.w + x0, x1 - x0);
+                }
+            }
+        }
+    }
+
+    private static boolean missing(int[] out, int w, int x0, int y0, int x1, int y1) {
+        for (int y = y0; y < y1; y++)
+            for (int i = y * w + x0; i < y * w + x1; i++)
+                if (out[i] == FrameReuse.NONE)
+                    return true;
+        return false;
+    }
+
+    private TileCache.Key tileKey(long tx, long ty, Viewport v, EscapeKernel k) {
+        return new TileCache.Key(tx, ty, v.deltaRe, v.deltaIm, r, N, k instanceof SmoothKernel);
+    }
+
+    /**
+     * Liczy kafelek (<i>tx</i>, <i>ty</i>) siatki widoku <i>v</i> i zapisuje go w pamięci
+     */
+    private int[] computeTile(long tx, long ty, Viewport v, EscapeKernel k, TileCache.Key key) {
+        final int T = TileRenderer.TILE;
+        Viewport t = new Viewport(tx * T, ty * T, v.deltaRe, v.deltaIm, T, T);
+        int[] counts = new int[T * T];
+        for (int y = 0; y < T; y++)
+            k.escapeRow(t, y, 0, T, counts);
+        tileCache.put(key, counts);
+        fillStats.iterated.add((long) T * T);
+        return counts;
+    }
+
+    /**
+     * Zadania liczące do pamięci kafelków te kafelki widoku, których w niej
+     * nie ma, np. zanim widok zostanie wybrany. Z <i>margin</i> większym
+     * od 0 zadania obejmują tylko pas tylu kafelków wokół widoku, odsłaniany
+     * przy przesuwaniu. Kafelki liczone są tym samym algorytmem co przy
+     * rysowaniu, więc rysowanie widoku tymi samymi ustawieniami znajdzie
+     * je w pamięci.
+     *
+     * @param view   widok
+     * @param margin szerokość pasa wokół widoku w kafelkach, 0 - sam widok
+     * @return zadania kafelków od środka widoku na zewnątrz; puste, gdy
+     * widok nie korzysta z pamięci kafelków
+     */
+    public List<Runnable> tileJobs(Viewport view, int margin) {
+        List<Runnable> jobs = new ArrayList<>();
+        if (tileCache == null || !aligns(view))
+            return jobs;
+        final int T = TileRenderer.TILE;
+        Viewport v = view.aligned();
+        EscapeKernel k = escapeKernel(v);
+        long tx0 = Math.floorDiv(v.ox, T) - margin;
+        long ty0 = Math.floorDiv(v.oy, T) - margin;
+        long tx1 = Math.floorDiv(v.ox + v.w - 1, T) + margin;
+        long ty1 = Math.floorDiv(v.oy + v.h - 1, T) + margin;
+
+        List<long[]> tiles = new ArrayList<>();
+        for (long ty = ty0; ty <= ty1; ty++) {
+            for (long tx = tx0; tx <= tx1; tx++) {
+                boolean inside = tx * T >= v.ox && tx * T + T <= v.ox + v.w
+                        && ty * T >= v.oy && ty * T + T <= v.oy + v.h;
+                if (margin == 0 || !inside)
+                    tiles.add(new long[]{tx, ty});
+            }
+        }
+        double cx = (tx0 + tx1) * 0.5;
+        double cy = (ty0 + ty1) * 0.5;
+        tiles.sort(Comparator.comparingDouble(t -> Math.hypot(t[0] - cx, t[1] - cy)));
+        for (long[] t : tiles) {
+            jobs.add(() -> {
+                TileCache.Key key = tileKey(t[0], t[1], v, k);
+                if (!tileCache.contains(key))
+                    computeTile(t[0], t[1], v, k, key);
+            });
+        }
+        return jobs;
+    }
+
+    /**
+     * Składa prędkości ucieczki wyrównanego widoku <i>v</i> z kafelków
+     * siatki, licząc równolegle tylko te, których nie ma w pamięci.
+     */
+    private void drawCached(Viewport v, EscapeKernel k, int[] out, BooleanSupplier cancelled, CpuTimer timer) {
+        final int T = TileRenderer.TILE;
+        long tx0 = Math.floorDiv(v.ox, T);
+        long ty0 = Math.floorDiv(v.oy, T);
+        int tilesX = (int) (Math.floorDiv(v.ox + v.w - 1, T) - tx0 + 1);
+        int tilesY = (int) (Math.floorDiv(v.oy + v.h - 1, T) - ty0 + 1);
+
+        IntConsumer tile = i -> {
+            if (cancelled.getAsBoolean())
+                throw new CancellationException();
+            long tx = tx0 + i % tilesX;
+            long ty = ty0 + i / tilesX;
+            long start = timer.start();
+            TileCache.Key key = tileKey(tx, ty, v, k);
+            int[] counts = tileCache.get(key);
+            if (counts == null)
+                counts = computeTile(tx, ty, v, k, key);
+
+            // część wspólna kafelka i widoku
+            int x0 = (int) Math.max(tx * T - v.ox, 0);
+            int x1 = (int) Math.min(tx * T + T - v.ox, v.w);
+            int y0 = (int) Math.max(ty * T - v.oy, 0);
+            int y1 = (int) Math.min(ty * T + T - v.oy, v.h);
+            for (int y = y0; y < y1; y++) {
+                int src = (int) ((v.oy + y - ty * T) * T + (v.ox + x0 - tx * T));
+                System.arraycopy(counts, src, out, y * v.w + x0, x1 - x0);
+            }
+            timer.stop(start);
+        };
+
+        // strumień równoległy wykonuje się w puli, z której został uruchomiony
+        if (threads > 1)
+            TileRenderer.pool(threads).submit(() -> IntStream.range(0, tilesX * tilesY).parallel().forEach(tile)).join();
+        else
+            IntStream.range(0, tilesX * tilesY).forEach(tile);
+    }
+
+    int predkoscUcieczki(Complex c) {
+
+        int v = 0;
+        Complex z1 = new Complex(c);    //z1 = 0+0i + c
+        for (int n = 2; n <= N; n++) {
+            v = n;
+            z1.mul(z1).add(c);
+            if (z1.sqrAbs() > (r * r))
+                break;
+        }
+
+        return v;
+    }
+
+}
@@ -0,0 +1,175 @@
+package mandelbrot;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renderowanie przez rekurencyjny podział widoku (algorytm Mariani-Silver).
+ * Jeżeli cały brzeg prostokąta ma tę samą prędkość ucieczki, wnętrze
+ * jest nią wypełniane bez liczenia; w przeciwnym razie prostokąt jest
+ * dzielony linią, której piksele są liczone, na dwie połowy.
+ * Prostokąty o boku dłuższym niż {@link #FILL_MAX}, w tym cały widok, są
+ * dzielone zawsze: jednolity brzeg dużego prostokąta nie gwarantuje
+ * jednolitego wnętrza, np. dla promienia ucieczki mniejszego niż 2 cały
+ * brzeg widoku może mieć tę samą prędkość, a zbiór leży w środku.
+ * Połowy mogą być liczone równolegle, bo ich wspólna linia jest gotowa
+ * przed podziałem.
+ */
+@SuppressWarnings("serial")
+class MarianiSilver extends RecursiveAction {
+
+    //prostokąty o mniejszym boku są liczone w całości
+    static final int MIN = 6;
+
+    //prostokąty o dłuższym boku są dzielone także przy jednolitym brzegu
+    static final int FILL_MAX = 32;
+
+    //piksel jeszcze nie policzony
+    private static final int NONE = -1;
+
+    private final EscapeKernel kernel;
+    private final Viewport v;
+    private final int[] out;
+    private final FillStats stats;
+    private final BooleanSupplier cancelled;
+    private final CpuTimer timer;
+    private final boolean parallel;
+
+    //rogi prostokąta, włącznie; brzeg jest już policzony
+    private final int x0, y0, x1, y1;
+
+    private MarianiSilver(EscapeKernel kernel, Viewport v, int[] out, FillStats stats,
+                          BooleanSupplier cancelled, CpuTimer timer, boolean parallel,
+                          int x0, int y0, int x1, int y1) {
+        this.kernel = kernel;
+        this.v = v;
+        this.out = out;
+        this.stats = stats;
+        this.cancelled = cancelled;
+        this.timer = timer;
+        this.parallel = parallel;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+    }
+
+    /**
+     * Liczy prędkości ucieczki całego widoku <i>v</i> do tablicy <i>out</i>
+     * o rozmiarze <tt>w * h</tt>.
+     *
+     * @param threads   liczba wątków
+     * @param kernel    algorytm liczenia prędkości ucieczki
+     * @param v         widok
+     * @param out       tablica wyników
+     * @param stats     liczniki pikseli policzonych i wypełnionych
+     * @param cancelled zwraca true, gdy liczenie należy przerwać
+     * @param timer     czas procesora liczenia
+     * @throws CancellationException jeżeli liczenie zostało przerwane
+     */
+    static void render(int threads, EscapeKernel kernel, Viewport v, int[] out, FillStats stats,
+                       BooleanSupplier cancelled, CpuTimer timer) throws CancellationException {
+        if (v.w == 0 || v.h == 0)
+            return;
+        Arrays.fill(out, 0, v.w * v.h, NONE);
+
+        MarianiSilver root = new MarianiSilver(kernel, v, out, stats, cancelled, timer, threads > 1, 0, 0, v.w - 1, v.h - 1);
+        long n = 0;
+        for (int x = 0; x < v.w; x++)
+            n += root.pixel(x, 0) + root.pixel(x, v.h - 1);
+        for (int y = 0; y < v.h; y++)
+            n += root.pixel(0, y) + root.pixel(v.w - 1, y);
+        stats.iterated.add(n);
+
+        if (threads > 1)
+            TileRenderer.pool(threads).invoke(root);
+        else
+            root.compute();
+    }
+
+    /**
+     * Liczy piksel, jeżeli nie był jeszcze policzony
+     *
+     * @return 1 jeżeli piksel został policzony teraz, inaczej 0
+     */
+    private int pixel(int x, int y) {
+        int i = y * v.w + x;
+        if (out[i] != NONE)
+            return 0;
+        out[i] = kernel.escape(v, x, y);
+        return 1;
+    }
+
+    @Override
+    protected void compute() {
+        if (cancelled.getAsBoolean())
+            throw new CancellationException();
+
+        // mierzona jest tylko praca tego prostokąta, bez jego połówek
+        long start = timer.start();
+
+        // brak wnętrza
+        if (x1 - x0 < 2 || y1 - y0 < 2) {
+            timer.stop(start);
+            return;
+        }
+
+        if (x1 - x0 <= FILL_MAX && y1 - y0 <= FILL_MAX && uniformBorder()) {
+            int value = out[y0 * v.w + x0];
+            for (int y = y0 + 1; y < y1; y++)
+                Arrays.fill(out, y * v.w + x0 + 1, y * v.w + x1, value);
+            stats.filled.add((long) (x1 - x0 - 1) * (y1 - y0 - 1));
+            timer.stop(start);
+            return;
+        }
+
+        long n = 0;
+        if (x1 - x0 <= MIN && y1 - y0 <= MIN) {
+            for (int y = y0 + 1; y < y1; y++)
+                for (int x = x0 + 1; x < x1; x++)
+                    n += pixel(x, y);
+            stats.iterated.add(n);
+            timer.stop(start);
+            return;
+        }
+
+        MarianiSilver a, b;
+        if (x1 - x0 >= y1 - y0) {
+            int xm = (x0 + x1) / 2;
+            for (int y = y0 + 1; y < y1; y++)
+                n += pixel(xm, y);
+            a = new MarianiSilver(kernel, v, out, stats, cancelled, timer, parallel, x0, y0, xm, y1);
+            b = new MarianiSilver(kernel, v, out, stats, cancelled, timer, parallel, xm, y0, x1, y1);
+        } else {
+            int ym = (y0 + y1) / 2;
+            for (int x = x0 + 1; x < x1; x++)
+                n += pixel(x, ym);
+            a = new MarianiSilver(kernel, v, out, stats, cancelled, timer, parallel, x0, y0, x1, ym);
+            b = new MarianiSilver(kernel, v, out, stats, cancelled, timer, parallel, x0, ym, x1, y1);
+        }
+        stats.iterated.add(n);
+        timer.stop(start);
+
+        if (parallel) {
+            invokeAll(a, b);
+        } else {
+            a.compute();
+            b.compute();
+        }
+    }
+
+    private boolean uniformBorder() {
+        int value = out[y0 * v.w + x0];
+        for (int x = x0; x <= x1; x++) {
+            if (out[y0 * v.w + x] != value || out[y1 * v.w + x] != value)
+                return false;
+        }
+        for (int y = y0; y <= y1; y++) {
+            if (out[y * v.w + x0] != value || out[y * v.w + x1] != value)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package mandelbrot;
+
+import java.math.MathContext;
+
+/**
+ * Ostatnia orbita odniesienia perturbacji, przenoszona do kolejnych
+ * widoków o tym samym środku, np. klatek powiększania w głąb jednego punktu.
+ * Orbita jest liczona z zapasem zgłoszonym przez {@link #reserve}, więc
+ * dalsze klatki o większym <i>N</i> i mniejszym odstępie pikseli korzystają
+ * z niej bez liczenia od nowa. Orbita o tej samej dokładności daje wyniki
+ * co do bitu równe liczeniu bez pamięci; orbita dokładniejsza może się
+ * różnić tylko na korzyść dokładności.
+ */
+public class OrbitCache {
+
+    private ReferenceOrbit orbit;
+    private int reservedN;
+    private double reservedSpacing = Double.POSITIVE_INFINITY;
+    private long reused, computed;
+
+    /**
+     * Zgłasza zapas dla następnej liczonej orbity: co najmniej <i>N</i>
+     * iteracji i dokładność wystarczająca dla odstępu pikseli <i>spacing</i>
+     *
+     * @param N       liczba iteracji
+     * @param spacing najmniejszy odstęp pikseli
+     */
+    public synchronized void reserve(int N, double spacing) {
+        reservedN = N;
+        reservedSpacing = spacing;
+    }
+
+    /**
+     * Zwraca orbitę środka widoku, z pamięci albo liczoną od nowa
+     *
+     * @param v widok
+     * @param r promień ucieczki
+     * @param N maksymalna liczba iteracji
+     * @return orbita o co najmniej <i>N</i> iteracjach
+     */
+    synchronized ReferenceOrbit get(Viewport v, double r, int N) {
+        if (orbit != null && orbit.covers(v, r, N)) {
+            reused++;
+            return orbit;
+        }
+        MathContext mc = ReferenceOrbit.context(Math.min(reservedSpacing, Math.min(v.deltaRe, v.deltaIm)));
+        orbit = new ReferenceOrbit(v.centerRe, v.centerIm, r, Math.max(N, reservedN), mc);
+        computed++;
+        return orbit;
+    }
+
+    /**
+     * Zapomina orbitę
+     */
+    public synchronized void clear() {
+        orbit = null;
+    }
+
+    public synchronized long getReused() {
+        return reused;
+    }
+
+    public synchronized long getComputed() {
+        return computed;
+    }
+}
@@ -0,0 +1,78 @@
+package mandelbrot;
+
+/**
+ * Paleta barw: odwzorowuje względną prędkość ucieczki <i>t</i> z przedziału
+ * [0, 1) na kolor ARGB. Punkty zbioru (prędkość <i>N</i>) są zawsze czarne
+ * i nie przechodzą przez paletę.
+ * Paleta jest wywoływana tylko przy budowie tablicy kolorów
+ * ({@link ColourTable}), więc może być dowolnie kosztowna.
+ */
+public interface Palette {
+
+    /**
+     * Kolor dla względnej prędkości ucieczki
+     *
+     * @param t prędkość ucieczki podzielona przez <i>N</i>
+     * @return kolor ARGB
+     */
+    int colour(double t);
+
+    /**
+     * Pierwotne kolorowanie {@link MandelFractal}
+     */
+    Palette CLASSIC = t -> {
+        double procentPredkosci = t * 100;
+        int red, green, blue;
+        red = green = blue = 0;
+
+        if (procentPredkosci < 50) {      //R
+            red = (int) ((1d - 2d * procentPredkosci) * 0xFF);
+            red = red << 16;
+        }
+
+        if (25 < procentPredkosci && procentPredkosci < 75) {   //G
+            green = (int) (((procentPredkosci - 0.25) * 2) * 0xFF);
+            green = green << 8;
+        }
+
+        if (procentPredkosci > 50) {    //B
+            blue = (int) (((procentPredkosci - 0.5) * 2) * 0xFF);
+        }
+
+        int kolor = (red | green | blue);
+        kolor |= 0xFF000000;
+
+        return kolor;
+    };
+
+    /**
+     * Granat, biel, pomarańcz i z powrotem
+     */
+    Palette OCEAN = gradient(0xFF000764, 0xFF206BCB, 0xFFEDFFFF, 0xFFFFAA00, 0xFF000200);
+
+    /**
+     * Paleta przechodząca liniowo przez podane kolory w równych odstępach
+     *
+     * @param colours kolory ARGB, co najmniej jeden
+     * @return paleta
+     */
+    static Palette gradient(int... colours) {
+        if (colours.length == 0)
+            throw new IllegalArgumentException("Paleta musi mieć co najmniej jeden kolor");
+        int[] c = colours.clone();
+        return t -> {
+            if (c.length == 1)
+                return c[0];
+            double pos = Math.min(Math.max(t, 0), 1) * (c.length - 1);
+            int i = Math.min((int) pos, c.length - 2);
+            double f = pos - i;
+            int kolor = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int a = (c[i] >>> shift) & 0xFF;
+                int b = (c[i + 1] >>> shift) & 0xFF;
+                kolor |= ((int) Math.round(a + (b - a) * f)) << shift;
+            }
+            return kolor;
+        };
+    }
+}
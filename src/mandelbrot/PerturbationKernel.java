@@ -0,0 +1,130 @@
+package mandelbrot;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prędkość ucieczki dla głębokich powiększeń metodą perturbacji.
+ * Orbita punktu odniesienia w środku widoku liczona jest raz, z dokładnością
+ * {@link BigDecimal} dobraną do odstępu pikseli. Pozostałe piksele liczone
+ * są w double jako małe odchylenie <i>d</i> od tej orbity:
+ * <i>d</i> = (2<i>Z</i> + <i>d</i>)<i>d</i> + <i>dc</i>.
+ * <p>
+ * Gdy |<i>Z</i> + <i>d</i>| spada poniżej |<i>d</i>| (usterka - odchylenie
+ * przestaje być małe względem orbity) albo orbita odniesienia się kończy,
+ * odchylenie jest przenoszone na początek orbity (<i>Z</i> = 0) i liczenie
+ * trwa dalej bez utraty dokładności.
+ */
+public class PerturbationKernel implements EscapeKernel {
+
+    private final double r2;
+    private final int N;
+
+    //orbita odniesienia i jej długość, co najwyżej N + 1
+    private final double[] refRe, refIm;
+    private final int refLength;
+    private final double centerRe, centerIm;
+
+    //liczba przeniesień odchylenia na początek orbity
+    final LongAdder rebases = new LongAdder();
+
+    /**
+     * Liczy orbitę odniesienia dla środka widoku <i>v</i>
+     *
+     * @param v widok
+     * @param r promień ucieczki
+     * @param N maksymalna liczba iteracji
+     */
+    public PerturbationKernel(Viewport v, double r, int N) {
+        this(new ReferenceOrbit(v.centerRe, v.centerIm, r, N, ReferenceOrbit.context(v)), r, N);
+    }
+
+    /**
+     * Korzysta z gotowej orbity odniesienia, np. wspólnej dla kolejnych
+     * klatek; orbita może być dłuższa niż <i>N</i> iteracji
+     *
+     * @param orbit orbita środka widoku
+     * @param r     promień ucieczki
+     * @param N     maksymalna liczba iteracji, nie większa niż orbity
+     */
+    PerturbationKernel(ReferenceOrbit orbit, double r, int N) {
+        this.r2 = r * r;
+        this.N = N;
+        this.centerRe = orbit.centerRe.doubleValue();
+        this.centerIm = orbit.centerIm.doubleValue();
+        this.refRe = orbit.re;
+        this.refIm = orbit.im;
+        this.refLength = Math.min(orbit.length, N + 1);
+    }
+
+    /**
+     * Prędkość ucieczki punktu podanego w double. Dokładność jest ograniczona
+     * do odchylenia od środka widoku zapisanego w double.
+     */
+    @Override
+    public int escape(double re, double im) {
+        return escapeDelta(re - centerRe, im - centerIm);
+    }
+
+    @Override
+    public int escape(Viewport v, int x, int y) {
+        return escapeDelta(v.deltaRe(x), v.deltaIm(y));
+    }
+
+    @Override
+    public void escapeRow(Viewport v, int y, int x0, int x1, int[] out) {
+        double dci = v.deltaIm(y);
+        int offset = y * v.w;
+        for (int x = x0; x < x1; x++)
+            out[offset + x] = escapeDelta(v.deltaRe(x), dci);
+    }
+
+    /**
+     * Prędkość ucieczki punktu przesuniętego o <i>dcr</i> + <i>dci</i>*i
+     * względem punktu odniesienia
+     */
+    private int escapeDelta(double dcr, double dci) {
+
+        int v = 0;
+        int m = 1;          //indeks w orbicie odniesienia
+        double dr = dcr;    //z1 = c = ref[1] + dc
+        double di = dci;
+        long rebased = 0;
+
+        for (int n = 2; n <= N; n++) {
+            v = n;
+            double ar = 2 * refRe[m] + dr;
+            double ai = 2 * refIm[m] + di;
+            double nr = ar * dr - ai * di + dcr;
+            di = ar * di + ai * dr + dci;
+            dr = nr;
+            m++;
+
+            double zr = refRe[m] + dr;
+            double zi = refIm[m] + di;
+            double z2 = zr * zr + zi * zi;
+            if (z2 > r2)
+                break;
+
+            if (z2 < dr * dr + di * di || m == refLength - 1) {
+                dr = zr;
+                di = zi;
+                m = 0;
+                rebased++;
+            }
+        }
+
+        if (rebased > 0)
+            rebases.add(rebased);
+        return v;
+    }
+
+    /**
+     * Liczba przeniesień odchylenia na początek orbity odniesienia
+     *
+     * @return liczba przeniesień od utworzenia
+     */
+    public long getRebases() {
+        return rebases.sum();
+    }
+}
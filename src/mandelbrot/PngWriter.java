@@ -0,0 +1,139 @@
+package mandelbrot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Strumieniowy zapis obrazu PNG (RGB, 8 bitów na składową).
+ * Wiersze są kompresowane na bieżąco i wypisywane fragmentami IDAT
+ * o stałej wielkości, więc pamięć nie zależy od rozmiaru obrazu.
+ */
+class PngWriter implements RowWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    //największa długość danych jednego fragmentu IDAT
+    private static final int CHUNK = 1 << 16;
+
+    private final OutputStream out;
+    private final int w;
+    private final Deflater deflater;
+    private final ChunkStream chunks = new ChunkStream();
+    private final DeflaterOutputStream idat;
+    private byte[] rgb = new byte[0];
+
+    PngWriter(OutputStream out, int w, int h) throws IOException {
+        this(out, w, h, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param out   strumień docelowy, zamykany przez {@link #close()}
+     * @param w     szerokość obrazu
+     * @param h     wysokość obrazu
+     * @param level poziom kompresji {@link Deflater}
+     */
+    PngWriter(OutputStream out, int w, int h, int level) throws IOException {
+        this.out = out;
+        this.w = w;
+        out.write(SIGNATURE);
+
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, w);
+        putInt(ihdr, 4, h);
+        ihdr[8] = 8;    //bitów na składową
+        ihdr[9] = 2;    //RGB
+        chunk("IHDR", ihdr, ihdr.length);
+
+        deflater = new Deflater(level);
+        idat = new DeflaterOutputStream(chunks, deflater, CHUNK);
+    }
+
+    @Override
+    public void write(int[] argb, int rows) throws IOException {
+        int stride = 1 + 3 * w;
+        if (rgb.length < stride * rows)
+            rgb = new byte[stride * rows];
+        for (int y = 0, j = 0; y < rows; y++) {
+            rgb[j++] = 0;    //wiersz bez filtra
+            for (int i = y * w; i < y * w + w; i++) {
+                int kolor = argb[i];
+                rgb[j++] = (byte) (kolor >> 16);
+                rgb[j++] = (byte) (kolor >> 8);
+                rgb[j++] = (byte) kolor;
+            }
+        }
+        idat.write(rgb, 0, stride * rows);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            idat.finish();
+            chunks.flush();
+            chunk("IEND", new byte[0], 0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void chunk(String type, byte[] data, int length) throws IOException {
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        System.arraycopy(type.getBytes(StandardCharsets.US_ASCII), 0, header, 4, 4);
+        CRC32 crc = new CRC32();
+        crc.update(header, 4, 4);
+        crc.update(data, 0, length);
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(header);
+        out.write(data, 0, length);
+        out.write(trailer);
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    /**
+     * Zbiera skompresowane dane i wypisuje je jako kolejne fragmenty IDAT
+     */
+    private class ChunkStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == CHUNK)
+                flush();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == CHUNK)
+                    flush();
+                int n = Math.min(len, CHUNK - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0)
+                chunk("IDAT", buffer, count);
+            count = 0;
+        }
+    }
+}
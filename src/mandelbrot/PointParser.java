@@ -0,0 +1,230 @@
+package mandelbrot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Odczyt punktów zapisanych tekstem, po jednym w wierszu: <tt>-0.75 0.1</tt>,
+ * <tt>-0.75,0.1</tt> albo w formacie {@link Complex#toString},
+ * <tt>-0.75+0.1i</tt>. Sama liczba to punkt rzeczywisty, liczba z <tt>i</tt>
+ * - urojony. Puste wiersze i wiersze zaczynające się od <tt>#</tt>
+ * są pomijane.
+ * <p>
+ * Bajty czytane są do własnego bufora i liczby składane są wprost z cyfr,
+ * bez tworzenia napisów: dla mantys do 15 cyfr i wykładników do 22 wynik
+ * jest dokładnie zaokrąglony jednym mnożeniem lub dzieleniem przez
+ * potęgę 10. Rzadkie dłuższe zapisy przechodzą przez
+ * {@link Double#parseDouble}.
+ */
+final class PointParser {
+
+    //dokładne potęgi 10 w double
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    //największa mantysa dokładnie zapisywana w double
+    private static final long EXACT = 1L << 53;
+
+    private final InputStream in;
+    private byte[] buf = new byte[1 << 16];
+    private int pos, end;
+    private boolean eof;
+    private long line;
+
+    //koniec bieżącego wiersza w buforze i początek następnego
+    private int lineEnd, lineNext;
+
+    PointParser(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Odczytuje kolejny punkt do elementu <i>k</i> tablicy <i>points</i>
+     *
+     * @return false, gdy nie ma już punktów
+     * @throws IOException              błąd odczytu
+     * @throws IllegalArgumentException jeżeli wiersz nie jest poprawnym punktem
+     */
+    boolean next(ComplexArray points, int k) throws IOException {
+        while (nextLine()) {
+            skipBlank();
+            if (pos == lineEnd || buf[pos] == '#')
+                continue;
+
+            double re, im;
+            double a = number();
+            if (peek() == 'i') {
+                pos++;
+                re = 0;
+                im = a;
+            } else if (peek() == '+' || peek() == '-') {
+                re = a;
+                im = number();
+                expect('i');
+            } else {
+                re = a;
+                skipSeparators();
+                if (pos == lineEnd) {
+                    im = 0;
+                } else {
+                    im = number();
+                    if (peek() == 'i')
+                        pos++;
+                }
+            }
+            skipBlank();
+            if (pos != lineEnd)
+                throw error();
+            points.set(k, re, im);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Numer ostatnio czytanego wiersza, od 1
+     */
+    long getLine() {
+        return line;
+    }
+
+    /**
+     * Przechodzi do następnego wiersza, dbając o to, by był cały w buforze
+     */
+    private boolean nextLine() throws IOException {
+        pos = lineNext;
+        while (true) {
+            for (int i = pos; i < end; i++) {
+                if (buf[i] == '\n') {
+                    lineEnd = i > pos && buf[i - 1] == '\r' ? i - 1 : i;
+                    lineNext = i + 1;
+                    line++;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos == end)
+                    return false;
+                // ostatni wiersz bez znaku końca wiersza
+                lineEnd = end;
+                lineNext = end;
+                line++;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, end - pos);
+            end -= pos;
+            pos = 0;
+        }
+        if (end == buf.length)
+            buf = Arrays.copyOf(buf, 2 * buf.length);
+        int n = in.read(buf, end, buf.length - end);
+        if (n < 0)
+            eof = true;
+        else
+            end += n;
+    }
+
+    /**
+     * Liczba dziesiętna: znak, cyfry z kropką, wykładnik <tt>e</tt>
+     */
+    private double number() {
+        int start = pos;
+        boolean negative = false;
+        if (peek() == '+' || peek() == '-')
+            negative = buf[pos++] == '-';
+
+        long mantissa = 0;
+        int digits = 0;         //cyfry znaczące w mantysie
+        int exponent = 0;
+        boolean any = false;
+        boolean exact = true;
+        boolean point = false;
+        while (pos < lineEnd) {
+            byte b = buf[pos];
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = 10 * mantissa + (b - '0');
+                    if (mantissa > 0)
+                        digits++;
+                    if (point)
+                        exponent--;
+                } else {
+                    // dalsze cyfry nie mieszczą się w mantysie
+                    exact &= b == '0';
+                    if (!point)
+                        exponent++;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+            pos++;
+        }
+        if (!any)
+            throw error();
+
+        if (peek() == 'e' || peek() == 'E') {
+            pos++;
+            boolean negativeExp = false;
+            if (peek() == '+' || peek() == '-')
+                negativeExp = buf[pos++] == '-';
+            int e = 0;
+            boolean expDigits = false;
+            while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9') {
+                if (e < 100_000)
+                    e = 10 * e + (buf[pos] - '0');
+                expDigits = true;
+                pos++;
+            }
+            if (!expDigits)
+                throw error();
+            exponent += negativeExp ? -e : e;
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exact && mantissa < EXACT && exponent >= -22 && exponent <= 22) {
+            value = exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+        } else {
+            value = Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.ISO_8859_1));
+            return value;
+        }
+        return negative ? -value : value;
+    }
+
+    private int peek() {
+        return pos < lineEnd ? buf[pos] : -1;
+    }
+
+    private void expect(char ch) {
+        if (peek() != ch)
+            throw error();
+        pos++;
+    }
+
+    private void skipBlank() {
+        while (pos < lineEnd && (buf[pos] == ' ' || buf[pos] == '\t'))
+            pos++;
+    }
+
+    private void skipSeparators() {
+        while (pos < lineEnd && (buf[pos] == ' ' || buf[pos] == '\t' || buf[pos] == ',' || buf[pos] == ';'))
+            pos++;
+    }
+
+    private IllegalArgumentException error() {
+        return new IllegalArgumentException("Niepoprawny punkt w wierszu " + line);
+    }
+}
@@ -0,0 +1,432 @@
+package mandelbrot;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Prędkości ucieczki dowolnych punktów, nie tylko pikseli widoku, np. do
+ * klasyfikacji zbiorów danych. Punkty czytane są ze strumienia blokami,
+ * liczone równolegle i zapisywane w kolejności wejścia; w pamięci jest
+ * tylko kilka bloków naraz.
+ * <p>
+ * Wejście tekstowe to jeden punkt w wierszu ({@link PointParser}),
+ * binarne - pary double (big-endian). Wyjście tekstowe to w każdym wierszu
+ * prędkość ucieczki i, z {@link #setFinalZ}, ostatnia wartość <i>z</i>
+ * orbity; binarne - int i ewentualnie dwa double. Prędkości ucieczki są
+ * równe {@link PrimitiveKernel} bez rozpoznawania wnętrza.
+ * <pre>
+ * java mandelbrot.PointQuery -N 1000 -z punkty.txt wyniki.txt
+ * </pre>
+ */
+public class PointQuery {
+
+    /**
+     * Zapis punktów i wyników
+     */
+    public enum Format {TEXT, BINARY}
+
+    private static final String USAGE = String.join("\n",
+            "Użycie: java mandelbrot.PointQuery [opcje] [wejście|- [wyjście|-]]",
+            "  -N ITERACJE         liczba iteracji (100)",
+            "  -r PROMIEŃ          promień ucieczki (2)",
+            "  -z                  zapisuje też ostatnią wartość z orbity",
+            "  -in text|binary     zapis punktów (text)",
+            "  -out text|binary    zapis wyników (text)",
+            "  -threads LICZBA     liczba wątków (liczba procesorów)",
+            "  -block PUNKTY       liczba punktów w bloku (4096)");
+
+    //punkty liczone razem w jednym wątku
+    private static final int CHUNK = 256;
+
+    //bloki w drodze między etapami
+    private static final int BUFFERS = 4;
+
+    private final double r2;
+    private final int N;
+    private int threads = 1;
+    private boolean finalZ = false;
+    private int block = 4096;
+
+    /**
+     * @param r promień ucieczki
+     * @param N maksymalna liczba iteracji
+     */
+    public PointQuery(double r, int N) {
+        this.r2 = r * r;
+        this.N = N;
+    }
+
+    public static void main(String[] args) {
+        double r = 2;
+        int N = 100;
+        Format in = Format.TEXT;
+        Format out = Format.TEXT;
+        PointQuery query = null;
+        List<String> files = new ArrayList<>();
+        try {
+            boolean z = false;
+            int threads = Runtime.getRuntime().availableProcessors();
+            int block = 4096;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-N": N = Integer.parseInt(value(args, ++i)); break;
+                    case "-r": r = Double.parseDouble(value(args, ++i)); break;
+                    case "-z": z = true; break;
+                    case "-in": in = format(value(args, ++i)); break;
+                    case "-out": out = format(value(args, ++i)); break;
+                    case "-threads": threads = Integer.parseInt(value(args, ++i)); break;
+                    case "-block": block = Integer.parseInt(value(args, ++i)); break;
+                    default:
+                        if (args[i].startsWith("-") && !args[i].equals("-") || files.size() == 2)
+                            throw new IllegalArgumentException("Nieznany argument: " + args[i]);
+                        files.add(args[i]);
+                }
+            }
+            if (N < 1)
+                throw new IllegalArgumentException("N musi być dodatnie");
+            query = new PointQuery(r, N);
+            query.setThreads(threads);
+            query.setBlock(block);
+            query.setFinalZ(z);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        String input = files.size() > 0 ? files.get(0) : "-";
+        String output = files.size() > 1 ? files.get(1) : "-";
+        try (InputStream is = input.equals("-") ? System.in : Files.newInputStream(Path.of(input));
+             OutputStream os = output.equals("-") ? System.out : Files.newOutputStream(Path.of(output))) {
+            long start = System.nanoTime();
+            long n = query.run(is, in, os, out);
+            System.err.printf(Locale.ROOT, "%d punktów w %.1f s%n", n, (System.nanoTime() - start) * 1e-9);
+        } catch (IOException e) {
+            System.err.println("Błąd odczytu lub zapisu: " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Brak wartości dla " + args[i - 1]);
+        return args[i];
+    }
+
+    private static Format format(String name) {
+        switch (name) {
+            case "text": return Format.TEXT;
+            case "binary": return Format.BINARY;
+            default: throw new IllegalArgumentException("Nieznany format: " + name);
+        }
+    }
+
+    /**
+     * Ustawia liczbę wątków liczących punkty bloku
+     *
+     * @param threads liczba wątków, co najmniej 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Liczba wątków musi być dodatnia");
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Włącza zapis ostatniej wartości <i>z</i> orbity każdego punktu:
+     * pierwszej za promieniem ucieczki albo <i>z<sub>N</sub></i>
+     *
+     * @param finalZ true aby zapisywać <i>z</i>
+     */
+    public void setFinalZ(boolean finalZ) {
+        this.finalZ = finalZ;
+    }
+
+    public boolean getFinalZ() {
+        return finalZ;
+    }
+
+    /**
+     * Ustawia liczbę punktów czytanych, liczonych i zapisywanych razem
+     *
+     * @param block liczba punktów w bloku, co najmniej 1
+     */
+    public void setBlock(int block) {
+        if (block < 1)
+            throw new IllegalArgumentException("Blok musi mieć co najmniej jeden punkt");
+        this.block = block;
+    }
+
+    public int getBlock() {
+        return block;
+    }
+
+    /**
+     * Liczy prędkości ucieczki punktów od <i>from</i> do <i>to</i> (wyłącznie)
+     * w bieżącym wątku
+     *
+     * @param c      punkty
+     * @param counts prędkości ucieczki, pod tymi samymi indeksami
+     * @param z      ostatnie wartości <i>z</i> orbit, null gdy niepotrzebne
+     */
+    public void escape(ComplexArray c, int from, int to, int[] counts, ComplexArray z) {
+        double[] cre = c.re();
+        double[] cim = c.im();
+        double[] zre = z != null ? z.re() : null;
+        double[] zim = z != null ? z.im() : null;
+        for (int k = from; k < to; k++) {
+            double cr = cre[k];
+            double ci = cim[k];
+            int v = 0;
+            double zr = cr;     //z1 = 0+0i + c
+            double zi = ci;
+            double zr2 = zr * zr;
+            double zi2 = zi * zi;
+            for (int n = 2; n <= N; n++) {
+                v = n;
+                // te same działania co w PrimitiveKernel
+                double t = zr * zi;
+                zr = zr2 - zi2 + cr;
+                zi = t + t + ci;
+                zr2 = zr * zr;
+                zi2 = zi * zi;
+                if (zr2 + zi2 > r2)
+                    break;
+            }
+            counts[k] = v;
+            if (zre != null) {
+                zre[k] = zr;
+                zim[k] = zi;
+            }
+        }
+    }
+
+    /**
+     * Liczy prędkości ucieczki wszystkich punktów <i>c</i> wątkami
+     * {@link #setThreads}
+     *
+     * @param c      punkty
+     * @param n      liczba punktów od początku tablicy
+     * @param counts prędkości ucieczki
+     * @param z      ostatnie wartości <i>z</i> orbit, null gdy niepotrzebne
+     */
+    public void escape(ComplexArray c, int n, int[] counts, ComplexArray z) {
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        if (threads > 1 && chunks > 1) {
+            TileRenderer.pool(threads).submit(() -> IntStream.range(0, chunks).parallel()
+                    .forEach(k -> escape(c, k * CHUNK, Math.min(n, (k + 1) * CHUNK), counts, z))).join();
+        } else {
+            escape(c, 0, n, counts, z);
+        }
+    }
+
+    /**
+     * Czyta punkty z <i>in</i> i zapisuje wyniki do <i>out</i>, aż do końca
+     * wejścia. Odczyt, liczenie i zapis odbywają się w osobnych wątkach.
+     * Strumienie nie są zamykane.
+     *
+     * @param in        punkty
+     * @param inFormat  zapis punktów
+     * @param out       wyniki
+     * @param outFormat zapis wyników
+     * @return liczbę punktów
+     * @throws IOException              błąd odczytu lub zapisu
+     * @throws IllegalArgumentException jeżeli wejście zawiera niepoprawny punkt
+     */
+    public long run(InputStream in, Format inFormat, OutputStream out, Format outFormat) throws IOException {
+        BlockingQueue<Block> free = new ArrayBlockingQueue<>(BUFFERS);
+        for (int i = 0; i < BUFFERS; i++)
+            free.add(new Block(block, finalZ));
+        BlockingQueue<Block> read = new ArrayBlockingQueue<>(BUFFERS + 1);
+        BlockingQueue<Block> computed = new ArrayBlockingQueue<>(BUFFERS + 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "mandelbrot-points");
+            t.setDaemon(true);
+            return t;
+        });
+        ExecutorCompletionService<Long> stages = new ExecutorCompletionService<>(executor);
+        List<Future<Long>> futures = new ArrayList<>();
+        futures.add(stages.submit(() -> read(in, inFormat, free, read)));
+        futures.add(stages.submit(() -> compute(read, computed)));
+        futures.add(stages.submit(() -> write(out, outFormat, computed, free)));
+
+        try {
+            // błąd któregokolwiek etapu przerywa pozostałe
+            long points = 0;
+            for (int i = 0; i < futures.size(); i++)
+                points = Math.max(points, stages.take().get());
+            return points;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Przerwano liczenie punktów");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<Long> f : futures)
+                f.cancel(true);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Blok punktów i ich wyników; krąży między etapami i wraca do puli
+     */
+    private static final class Block {
+        final ComplexArray points;
+        final int[] counts;
+        final ComplexArray z;
+        int n;
+
+        Block(int size, boolean finalZ) {
+            this.points = new ComplexArray(size);
+            this.counts = new int[size];
+            this.z = finalZ ? new ComplexArray(size) : null;
+        }
+
+        int capacity() {
+            return counts.length;
+        }
+    }
+
+    //znacznik końca danych
+    private static final Block END = new Block(0, false);
+
+    /**
+     * Etap odczytu: wypełnia kolejne bloki punktami
+     */
+    private Long read(InputStream in, Format format, BlockingQueue<Block> free, BlockingQueue<Block> out)
+            throws IOException, InterruptedException {
+        long total = 0;
+        if (format == Format.TEXT) {
+            PointParser parser = new PointParser(in);
+            boolean more = true;
+            while (more) {
+                Block b = free.take();
+                int n = 0;
+                while (n < b.capacity() && (more = parser.next(b.points, n)))
+                    n++;
+                total += emit(b, n, free, out);
+            }
+        } else {
+            byte[] bytes = new byte[16 * block];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            boolean more = true;
+            while (more) {
+                Block b = free.take();
+                int length = 0;
+                while (length < 16 * b.capacity()) {
+                    int k = in.read(bytes, length, 16 * b.capacity() - length);
+                    if (k < 0) {
+                        more = false;
+                        break;
+                    }
+                    length += k;
+                }
+                if (length % 16 != 0)
+                    throw new IOException("Niepełny punkt na końcu wejścia (" + (total * 16 + length) + " B)");
+                int n = length / 16;
+                double[] re = b.points.re();
+                double[] im = b.points.im();
+                for (int k = 0; k < n; k++) {
+                    re[k] = buffer.getDouble(16 * k);
+                    im[k] = buffer.getDouble(16 * k + 8);
+                }
+                total += emit(b, n, free, out);
+            }
+        }
+        out.put(END);
+        return total;
+    }
+
+    private static int emit(Block b, int n, BlockingQueue<Block> free, BlockingQueue<Block> out)
+            throws InterruptedException {
+        b.n = n;
+        if (n > 0)
+            out.put(b);
+        else
+            free.put(b);
+        return n;
+    }
+
+    /**
+     * Etap liczenia: prędkości ucieczki punktów bloku
+     */
+    private Long compute(BlockingQueue<Block> in, BlockingQueue<Block> out) throws InterruptedException {
+        for (Block b = in.take(); b != END; b = in.take()) {
+            escape(b.points, b.n, b.counts, b.z);
+            out.put(b);
+        }
+        out.put(END);
+        return 0L;
+    }
+
+    /**
+     * Etap zapisu: wyniki bloku w kolejności punktów; blok wraca do puli
+     */
+    private Long write(OutputStream os, Format format, BlockingQueue<Block> in, BlockingQueue<Block> free)
+            throws IOException, InterruptedException {
+        OutputStream out = new BufferedOutputStream(os, 1 << 16);
+        byte[] bytes = new byte[128];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        StringBuilder sb = new StringBuilder(128);
+        for (Block b = in.take(); b != END; b = in.take()) {
+            double[] zre = b.z != null ? b.z.re() : null;
+            double[] zim = b.z != null ? b.z.im() : null;
+            for (int k = 0; k < b.n; k++) {
+                if (format == Format.BINARY) {
+                    buffer.putInt(0, b.counts[k]);
+                    int length = 4;
+                    if (zre != null) {
+                        buffer.putDouble(4, zre[k]);
+                        buffer.putDouble(12, zim[k]);
+                        length = 20;
+                    }
+                    out.write(bytes, 0, length);
+                } else {
+                    // StringBuilder.append nie tworzy napisów dla liczb
+                    sb.setLength(0);
+                    sb.append(b.counts[k]);
+                    if (zre != null)
+                        sb.append(' ').append(zre[k]).append(' ').append(zim[k]);
+                    sb.append('\n');
+                    int length = sb.length();
+                    for (int i = 0; i < length; i++)
+                        bytes[i] = (byte) sb.charAt(i);
+                    out.write(bytes, 0, length);
+                }
+            }
+            free.put(b);
+        }
+        out.flush();
+        return 0L;
+    }
+}
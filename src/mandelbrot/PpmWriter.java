@@ -0,0 +1,40 @@
+package mandelbrot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zapis obrazu w binarnym formacie PPM (P6), 8 bitów na składową
+ */
+class PpmWriter implements RowWriter {
+
+    private final OutputStream out;
+    private final int w;
+    private byte[] rgb = new byte[0];
+
+    PpmWriter(OutputStream out, int w, int h) throws IOException {
+        this.out = out;
+        this.w = w;
+        out.write(("P6\n" + w + " " + h + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void write(int[] argb, int rows) throws IOException {
+        int n = w * rows;
+        if (rgb.length < 3 * n)
+            rgb = new byte[3 * n];
+        for (int i = 0, j = 0; i < n; i++) {
+            int kolor = argb[i];
+            rgb[j++] = (byte) (kolor >> 16);
+            rgb[j++] = (byte) (kolor >> 8);
+            rgb[j++] = (byte) kolor;
+        }
+        out.write(rgb, 0, 3 * n);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,144 @@
+package mandelbrot;
+
+/**
+ * Prędkość ucieczki liczona wyłącznie na zmiennych lokalnych typu double,
+ * bez tworzenia obiektów dla piksela. Daje te same wyniki co
+ * {@link MandelRenderer} liczący na obiektach {@link Complex}.
+ * <p>
+ * Z włączonym rozpoznawaniem wnętrza punkty głównej kardioidy i koła
+ * okresu 2 dostają od razu <i>N</i>, a orbity, które wpadły w cykl,
+ * kończą się przed wykonaniem wszystkich iteracji. Odległość, przy której
+ * orbitę uznaje się za cykl, maleje razem z odstępem pikseli, żeby przy
+ * dużych powiększeniach nie zamykać wolno zbieżnych orbit punktów, które
+ * jeszcze uciekną.
+ */
+public class PrimitiveKernel implements EscapeKernel {
+
+    //odległość, przy której orbitę uznaje się za cykl, gdy odstęp pikseli
+    //jest nieznany albo duży
+    static final double PERIOD_EPS = 1e-13;
+
+    //ta odległość jako część odstępu pikseli
+    private static final double PERIOD_PIXELS = 1e-3;
+
+    private final double r2;
+    private final int N;
+    private final int inside;
+    private final InteriorStats interior;
+    private final double periodEps;
+
+    /**
+     * @param r promień ucieczki
+     * @param N maksymalna liczba iteracji
+     */
+    public PrimitiveKernel(double r, int N) {
+        this(r, N, null);
+    }
+
+    /**
+     * @param r        promień ucieczki
+     * @param N        maksymalna liczba iteracji
+     * @param interior liczniki rozpoznanych punktów wnętrza,
+     *                 null wyłącza rozpoznawanie wnętrza
+     */
+    public PrimitiveKernel(double r, int N, InteriorStats interior) {
+        this(r, N, interior, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param r        promień ucieczki
+     * @param N        maksymalna liczba iteracji
+     * @param interior liczniki rozpoznanych punktów wnętrza,
+     *                 null wyłącza rozpoznawanie wnętrza
+     * @param pixel    odstęp pikseli widoku, od którego zależy odległość
+     *                 rozpoznawania cyklu
+     */
+    public PrimitiveKernel(double r, int N, InteriorStats interior, double pixel) {
+        this.r2 = r * r;
+        this.N = N;
+        this.inside = N >= 2 ? N : 0;
+        this.interior = interior;
+        this.periodEps = periodEps(pixel);
+    }
+
+    /**
+     * Odległość, przy której orbitę uznaje się za cykl, dla odstępu pikseli <i>pixel</i>
+     */
+    static double periodEps(double pixel) {
+        return Math.min(PERIOD_EPS, pixel * PERIOD_PIXELS);
+    }
+
+    @Override
+    public int escape(double cr, double ci) {
+        if (interior != null)
+            return escapeInterior(cr, ci);
+
+        int v = 0;
+        double zr = cr;     //z1 = 0+0i + c
+        double zi = ci;
+        double zr2 = zr * zr;
+        double zi2 = zi * zi;
+        for (int n = 2; n <= N; n++) {
+            v = n;
+            // te same działania w tej samej kolejności co z1.mul(z1).add(c)
+            double t = zr * zi;
+            zr = zr2 - zi2 + cr;
+            zi = t + t + ci;
+            zr2 = zr * zr;
+            zi2 = zi * zi;
+            if (zr2 + zi2 > r2)
+                break;
+        }
+
+        return v;
+    }
+
+    private int escapeInterior(double cr, double ci) {
+
+        // orbity kardioidy i koła pozostają w |z| < 2, więc nie uciekną dla r >= 2
+        if (r2 >= 4) {
+            if (InteriorStats.inCardioid(cr, ci)) {
+                interior.cardioid.increment();
+                return inside;
+            }
+            if (InteriorStats.inBulb(cr, ci)) {
+                interior.bulb.increment();
+                return inside;
+            }
+        }
+
+        int v = 0;
+        double zr = cr;
+        double zi = ci;
+        double zr2 = zr * zr;
+        double zi2 = zi * zi;
+
+        // punkt orbity zapamiętywany co 2^k iteracji (metoda Brenta)
+        double pr = zr;
+        double pi = zi;
+        int saveAt = 4;
+
+        for (int n = 2; n <= N; n++) {
+            v = n;
+            double t = zr * zi;
+            zr = zr2 - zi2 + cr;
+            zi = t + t + ci;
+            zr2 = zr * zr;
+            zi2 = zi * zi;
+            if (zr2 + zi2 > r2)
+                break;
+
+            if (Math.abs(zr - pr) < periodEps && Math.abs(zi - pi) < periodEps) {
+                interior.period.increment();
+                return inside;
+            }
+            if (n == saveAt) {
+                pr = zr;
+                pi = zi;
+                saveAt <<= 1;
+            }
+        }
+
+        return v;
+    }
+}
@@ -0,0 +1,167 @@
+package mandelbrot;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Renderowanie w tle, od zgrubnego podglądu do pełnej rozdzielczości.
+ * Każda kolejna klatka jest przekazywana słuchaczowi, gdy tylko jest gotowa.
+ * Zlecenie nowego widoku natychmiast przerywa liczenie poprzedniego.
+ * Liczenie odbywa się we własnym wątku albo jako zadanie
+ * {@link RenderScheduler.Priority#VISIBLE} wspólnej kolejki zadań.
+ */
+public class ProgressiveRenderer {
+
+    /**
+     * Co ile pikseli liczone są kolejne przebiegi; ostatni musi być 1
+     */
+    static final int[] STEPS = {8, 1};
+
+    /**
+     * Gotowa klatka: kolory ARGB <i>w</i> x <i>h</i> pikseli wraz
+     * z pomiarami jej liczenia
+     */
+    public static class Frame {
+        public final int[] argb;
+        public final int w, h;
+        public final boolean last;
+        public final RenderMetrics metrics;
+        final long generation;
+
+        Frame(int[] argb, int w, int h, boolean last, RenderMetrics metrics, long generation) {
+            this.argb = argb;
+            this.w = w;
+            this.h = h;
+            this.last = last;
+            this.metrics = metrics;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Odbiorca klatek; wywoływany w wątku renderującym
+     */
+    public interface Listener {
+        void frame(Frame frame);
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "mandelbrot-render");
+        t.setDaemon(true);
+        return t;
+    });
+
+    //kolejka zadań zamiast własnego wątku; null, gdy jej nie ma
+    private final RenderScheduler scheduler;
+
+    //numer aktualnego zlecenia; starsze zlecenia są przerywane
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> current;
+    private RenderScheduler.Ticket ticket;
+
+    public ProgressiveRenderer() {
+        this(null);
+    }
+
+    /**
+     * @param scheduler kolejka, w której liczone są widoki, przed zadaniami
+     *                  mniej pilnymi; null - własny wątek
+     */
+    public ProgressiveRenderer(RenderScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Przerywa bieżące liczenie i zleca narysowanie widoku <i>v</i>
+     *
+     * @param mr       obiekt liczący kolory
+     * @param v        widok
+     * @param listener odbiorca kolejnych klatek
+     */
+    public synchronized void submit(MandelRenderer mr, Viewport v, Listener listener) {
+        submit(cancelled -> mr, v, listener);
+    }
+
+    /**
+     * Jak {@link #submit(MandelRenderer, Viewport, Listener)}, ale obiekt
+     * liczący tworzony jest już w wątku renderującym, np. gdy jego
+     * parametry wymagają wstępnego liczenia
+     *
+     * @param factory  tworzy obiekt liczący; dostaje sprawdzenie przerwania
+     * @param v        widok
+     * @param listener odbiorca kolejnych klatek
+     */
+    public synchronized void submit(Function<BooleanSupplier, MandelRenderer> factory, Viewport v,
+                                    Listener listener) {
+        cancel();
+        long gen = generation.get();
+        BooleanSupplier cancelled = () -> generation.get() != gen;
+
+        Runnable job = () -> {
+            try {
+                MandelRenderer mr = factory.apply(cancelled);
+                for (int step : STEPS) {
+                    // z przeniesionymi pikselami pełny obraz jest gotowy szybciej niż podgląd
+                    if (step > 1 && mr.reuses(v))
+                        continue;
+                    Viewport c = v.coarse(step);
+                    int[] argb = mr.render(c, cancelled);
+                    if (step > 1)
+                        argb = enlarge(argb, c.w, step, v.w, v.h);
+                    if (cancelled.getAsBoolean())
+                        return;
+                    listener.frame(new Frame(argb, v.w, v.h, step == 1, mr.getLastMetrics(), gen));
+                }
+            } catch (CancellationException e) {
+                // nowsze zlecenie zastąpiło to
+            }
+        };
+        if (scheduler != null) {
+            ticket = scheduler.ticket();
+            scheduler.submit(RenderScheduler.Priority.VISIBLE, RenderScheduler.NO_DEADLINE, ticket, job);
+        } else {
+            current = executor.submit(job);
+        }
+    }
+
+    /**
+     * Przerywa bieżące liczenie; klatki z niego nie są już przekazywane
+     */
+    public synchronized void cancel() {
+        generation.incrementAndGet();
+        if (current != null)
+            current.cancel(true);
+        if (ticket != null)
+            ticket.cancel();
+    }
+
+    /**
+     * Sprawdza, czy klatka pochodzi z aktualnego zlecenia. Klatka mogła
+     * zostać przekazana tuż przed zleceniem nowego widoku.
+     *
+     * @param frame klatka
+     * @return true jeżeli klatka nie jest przestarzała
+     */
+    public boolean isCurrent(Frame frame) {
+        return frame.generation == generation.get();
+    }
+
+    /**
+     * Powiela każdy piksel zgrubnego obrazu na kwadrat <i>step</i> x <i>step</i>
+     */
+    private static int[] enlarge(int[] coarse, int cw, int step, int w, int h) {
+        int[] argb = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            int src = (y / step) * cw;
+            int dst = y * w;
+            for (int x = 0; x < w; x++)
+                argb[dst + x] = coarse[src + x / step];
+        }
+        return argb;
+    }
+}
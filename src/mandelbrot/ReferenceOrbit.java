@@ -0,0 +1,90 @@
+package mandelbrot;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Orbita punktu odniesienia dla {@link PerturbationKernel}, liczona
+ * na {@link BigDecimal} i zapisana w double. Niezmienna, więc może być
+ * współdzielona przez kolejne klatki o tym samym środku.
+ */
+class ReferenceOrbit {
+
+    //ref[0] = 0, ref[1] = c
+    final double[] re, im;
+    final int length;
+
+    final BigDecimal centerRe, centerIm;
+    final double r;
+    final int N;
+    final int digits;
+
+    /**
+     * Liczy orbitę punktu <i>centerRe</i> + <i>centerIm</i>*i
+     *
+     * @param centerRe część rzeczywista punktu odniesienia
+     * @param centerIm część urojona punktu odniesienia
+     * @param r        promień ucieczki
+     * @param N        maksymalna liczba iteracji
+     * @param mc       dokładność obliczeń
+     */
+    ReferenceOrbit(BigDecimal centerRe, BigDecimal centerIm, double r, int N, MathContext mc) {
+        this.centerRe = centerRe;
+        this.centerIm = centerIm;
+        this.r = r;
+        this.N = N;
+        this.digits = mc.getPrecision();
+        this.re = new double[Math.max(N, 1) + 1];
+        this.im = new double[Math.max(N, 1) + 1];
+
+        BigDecimal zr = centerRe;
+        BigDecimal zi = centerIm;
+
+        // orbita jest przerywana przy większym promieniu niż r, bo piksele
+        // w pobliżu mogą jeszcze z niej korzystać
+        double bailout = Math.max(r * r, 4) * 256;
+        re[0] = 0;
+        im[0] = 0;
+        re[1] = zr.doubleValue();
+        im[1] = zi.doubleValue();
+        int n = 1;
+        while (n < N) {
+            BigDecimal t = zr.multiply(zr, mc).subtract(zi.multiply(zi, mc), mc).add(centerRe, mc);
+            zi = zr.multiply(zi, mc).multiply(BigDecimal.valueOf(2), mc).add(centerIm, mc);
+            zr = t;
+            n++;
+            re[n] = zr.doubleValue();
+            im[n] = zi.doubleValue();
+            if (re[n] * re[n] + im[n] * im[n] > bailout)
+                break;
+        }
+        this.length = n + 1;
+    }
+
+    /**
+     * Liczba cyfr dziesiętnych potrzebnych dla widoku o danym odstępie pikseli
+     *
+     * @param v widok
+     * @return kontekst obliczeń dla orbity odniesienia
+     */
+    static MathContext context(Viewport v) {
+        return context(Math.min(v.deltaRe, v.deltaIm));
+    }
+
+    /**
+     * Liczba cyfr dziesiętnych potrzebnych dla odstępu pikseli <i>spacing</i>
+     */
+    static MathContext context(double spacing) {
+        int digits = (int) Math.ceil(-Math.log10(spacing)) + 20;
+        return new MathContext(Math.max(digits, 34));
+    }
+
+    /**
+     * Czy orbita nadaje się dla widoku <i>v</i>: ten sam środek i promień,
+     * co najmniej <i>N</i> iteracji i nie mniejsza dokładność
+     */
+    boolean covers(Viewport v, double r, int N) {
+        return this.r == r && this.N >= N && digits >= context(v).getPrecision()
+                && centerRe.compareTo(v.centerRe) == 0 && centerIm.compareTo(v.centerIm) == 0;
+    }
+}
@@ -0,0 +1,89 @@
+package mandelbrot;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Timespan;
+
+/**
+ * Zdarzenie JFR zapisywane dla każdego liczenia widoku przez
+ * {@link MandelRenderer}; czas trwania zdarzenia to czas liczenia.
+ * Pola odpowiadają {@link RenderMetrics}, a współrzędne środka widoku
+ * pozwalają odtworzyć wolny widok.
+ */
+@Name("mandelbrot.Render")
+@Label("Mandelbrot Render")
+@Category("Mandelbrot")
+@Description("Liczenie prędkości ucieczki pikseli widoku")
+class RenderEvent extends Event {
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Center Re")
+    String centerRe;
+
+    @Label("Center Im")
+    String centerIm;
+
+    @Label("Pixel Step")
+    double deltaRe;
+
+    @Label("Max Iterations")
+    int maxIterations;
+
+    @Label("Kernel")
+    String kernel;
+
+    @Label("Threads")
+    int threads;
+
+    @Label("Computed Pixels")
+    long computed;
+
+    @Label("Iterations")
+    long iterations;
+
+    @Label("Mean Iterations")
+    double meanIterations;
+
+    @Label("Pixels Per Second")
+    double pixelsPerSecond;
+
+    @Label("Interior Fraction")
+    @Percentage
+    double interiorFraction;
+
+    @Label("Thread Utilization")
+    @Percentage
+    double utilization;
+
+    @Label("CPU Time")
+    @Timespan
+    long cpuTime;
+
+    void set(RenderMetrics m) {
+        Viewport v = m.getViewport();
+        width = v.w;
+        height = v.h;
+        centerRe = v.centerRe.toString();
+        centerIm = v.centerIm.toString();
+        deltaRe = v.deltaRe;
+        maxIterations = m.getN();
+        kernel = m.getKernel();
+        threads = m.getThreads();
+        computed = m.getComputed();
+        iterations = m.getIterations();
+        meanIterations = m.meanIterations();
+        pixelsPerSecond = m.pixelsPerSecond();
+        interiorFraction = m.interiorFraction();
+        utilization = m.utilization();
+        cpuTime = m.getCpuNanos();
+    }
+}
@@ -0,0 +1,112 @@
+package mandelbrot;
+
+import java.util.Locale;
+
+/**
+ * Pomiary jednego liczenia widoku: czas, liczba iteracji, udział wnętrza
+ * i wykorzystanie wątków. Obiekt jest niezmienny.
+ */
+public class RenderMetrics {
+
+    private final Viewport viewport;
+    private final int N, threads;
+    private final String kernel;
+    private final long pixels, computed, interior;
+    private final long iterations;
+    private final long wallNanos, cpuNanos;
+
+    RenderMetrics(Viewport viewport, int N, String kernel, int threads, long pixels, long computed,
+                  long interior, long iterations, long wallNanos, long cpuNanos) {
+        this.viewport = viewport;
+        this.N = N;
+        this.kernel = kernel;
+        this.threads = threads;
+        this.pixels = pixels;
+        this.computed = computed;
+        this.interior = interior;
+        this.iterations = iterations;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+    }
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    public int getN() {
+        return N;
+    }
+
+    /**
+     * @return nazwę klasy algorytmu ucieczki
+     */
+    public String getKernel() {
+        return kernel;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getPixels() {
+        return pixels;
+    }
+
+    /**
+     * @return liczbę pikseli policzonych algorytmem ucieczki; pozostałe
+     * pochodzą z pamięci kafelków, poprzedniej klatki lub wypełnienia
+     */
+    public long getComputed() {
+        return computed;
+    }
+
+    /**
+     * @return sumę prędkości ucieczki wszystkich pikseli obrazu
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return czas procesora tego liczenia: wątku wołającego i jego
+     * fragmentów policzonych w wątkach puli, bez pracy innych liczeń
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public double pixelsPerSecond() {
+        return pixels * 1e9 / Math.max(1, wallNanos);
+    }
+
+    public double meanIterations() {
+        return pixels == 0 ? 0 : (double) iterations / pixels;
+    }
+
+    /**
+     * @return część pikseli, które nie uciekły przed <i>N</i> iteracjami
+     */
+    public double interiorFraction() {
+        return pixels == 0 ? 0 : (double) interior / pixels;
+    }
+
+    /**
+     * @return czas procesora wątków liczących w stosunku do czasu,
+     * który miały do dyspozycji, od 0 do 1
+     */
+    public double utilization() {
+        return Math.min(1, (double) cpuNanos / Math.max(1, wallNanos * threads));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%dx%d N=%d %s: %.1f ms, %.2f Mpx/s, policzone %d/%d, iteracje %d (śr. %.1f), wnętrze %.1f%%, wątki %d (%.0f%%)",
+                viewport.w, viewport.h, N, kernel, wallNanos * 1e-6, pixelsPerSecond() * 1e-6, computed, pixels,
+                iterations, meanIterations(), 100 * interiorFraction(), threads, 100 * utilization());
+    }
+}
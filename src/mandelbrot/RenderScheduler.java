@@ -0,0 +1,219 @@
+package mandelbrot;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Kolejka zadań liczenia z priorytetami i terminami, wykonywana przez
+ * stałą liczbę wątków. Zadanie zaczyna się dopiero wtedy, gdy nie trwa
+ * żadne zadanie pilniejsze, więc wstępne liczenie kafelków nie spowalnia
+ * rysowania widocznego obrazu; zadania są krótkie (kafelek), więc nowe
+ * pilne zadanie czeka co najwyżej na dokończenie bieżących kafelków.
+ * <p>
+ * Zadania są grupowane biletami ({@link Ticket}): unieważnienie biletu
+ * porzuca wszystkie jego zadania bez przeszukiwania kolejki, tak samo jak
+ * zadania, których termin minął - są odrzucane przy wyjęciu z kolejki.
+ */
+public class RenderScheduler {
+
+    /**
+     * Pilność zadania, od najpilniejszego
+     */
+    public enum Priority {
+        /** widok na ekranie */
+        VISIBLE,
+        /** kafelki widoku zaznaczanego ramką, zanim zostanie wybrany */
+        PREFETCH,
+        /** kafelki wokół widoku, odsłaniane przy przesuwaniu */
+        MARGIN
+    }
+
+    /**
+     * Grupa zadań, które tracą sens razem, np. kafelki jednej ramki
+     */
+    public static final class Ticket {
+        private volatile boolean cancelled;
+
+        private Ticket() {
+        }
+
+        /**
+         * Porzuca zadania biletu jeszcze nie rozpoczęte; rozpoczęte mogą
+         * sprawdzać {@link #isCancelled()}
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Termin zadań, które nie mogą się przedawnić
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final class Job implements Comparable<Job> {
+        final Priority priority;
+        final long deadline;
+        final long sequence;
+        final Ticket ticket;
+        final Runnable body;
+
+        Job(Priority priority, long deadline, long sequence, Ticket ticket, Runnable body) {
+            this.priority = priority;
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.ticket = ticket;
+            this.body = body;
+        }
+
+        @Override
+        public int compareTo(Job o) {
+            if (priority != o.priority)
+                return priority.compareTo(o.priority);
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+
+    private final PriorityQueue<Job> queue = new PriorityQueue<>();
+
+    //liczba trwających zadań każdego priorytetu
+    private final int[] running = new int[Priority.values().length];
+    private long sequence;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    /**
+     * @param threads liczba wątków wykonujących zadania, co najmniej 1
+     */
+    public RenderScheduler(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Liczba wątków musi być dodatnia");
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::work, "mandelbrot-scheduler-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Nowy bilet dla grupy zadań
+     */
+    public Ticket ticket() {
+        return new Ticket();
+    }
+
+    /**
+     * Zleca zadanie. Zadania o tym samym priorytecie wykonywane są
+     * w kolejności zlecenia.
+     *
+     * @param priority pilność
+     * @param deadline chwila wg {@link System#nanoTime()}, po której zadanie
+     *                 jest porzucane, albo {@link #NO_DEADLINE}
+     * @param ticket   bilet grupy zadania
+     * @param body     zadanie; może przerwać się {@link CancellationException},
+     *                 inne wyjątki są wypisywane i nie przerywają wątku
+     */
+    public void submit(Priority priority, long deadline, Ticket ticket, Runnable body) {
+        synchronized (queue) {
+            queue.add(new Job(priority, deadline, sequence++, ticket, body));
+            queue.notifyAll();
+        }
+    }
+
+    /**
+     * Liczba wykonanych zadań
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Liczba zadań porzuconych z unieważnionym biletem albo przerwanych
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Liczba zadań porzuconych po terminie
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Liczba zadań czekających w kolejce, także tych, które zostaną porzucone
+     */
+    public int getQueued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Job job;
+            try {
+                job = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                job.body.run();
+                completed.increment();
+            } catch (CancellationException e) {
+                // zadanie samo sprawdziło, że jest już niepotrzebne
+                dropped.increment();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                synchronized (queue) {
+                    running[job.priority.ordinal()]--;
+                    queue.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Czeka na zadanie, które można zacząć: pierwsze w kolejce, jeżeli
+     * nie trwa żadne pilniejsze. Po drodze odrzuca zadania nieaktualne.
+     */
+    private Job take() throws InterruptedException {
+        synchronized (queue) {
+            while (true) {
+                Job job = queue.peek();
+                if (job != null && job.ticket.isCancelled()) {
+                    queue.poll();
+                    dropped.increment();
+                    continue;
+                }
+                if (job != null && job.deadline != NO_DEADLINE && System.nanoTime() - job.deadline > 0) {
+                    queue.poll();
+                    expired.increment();
+                    continue;
+                }
+                if (job != null && !urgentRunning(job.priority)) {
+                    queue.poll();
+                    running[job.priority.ordinal()]++;
+                    return job;
+                }
+                queue.wait();
+            }
+        }
+    }
+
+    private boolean urgentRunning(Priority priority) {
+        for (int p = 0; p < priority.ordinal(); p++)
+            if (running[p] > 0)
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package mandelbrot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Zapis obrazu do strumienia kolejnymi pasami wierszy, bez trzymania
+ * całego obrazu w pamięci
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * Dopisuje kolejne wiersze obrazu
+     *
+     * @param argb kolory ARGB wierszy, wiersz po wierszu
+     * @param rows liczba wierszy
+     * @throws IOException błąd zapisu
+     */
+    void write(int[] argb, int rows) throws IOException;
+
+    /**
+     * Otwiera zapis do pliku w formacie zgodnym z rozszerzeniem
+     * (<tt>.png</tt> lub <tt>.ppm</tt>)
+     *
+     * @param file plik docelowy
+     * @param w    szerokość obrazu
+     * @param h    wysokość obrazu
+     * @return zapis obrazu
+     * @throws IOException błąd zapisu
+     */
+    static RowWriter create(Path file, int w, int h) throws IOException {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(".png") && !name.endsWith(".ppm"))
+            throw new IllegalArgumentException("Nieobsługiwany format pliku: " + file);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file.toFile()), 1 << 16);
+        return name.endsWith(".png") ? new PngWriter(out, w, h) : new PpmWriter(out, w, h);
+    }
+}
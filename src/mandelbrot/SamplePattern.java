@@ -0,0 +1,103 @@
+package mandelbrot;
+
+import java.util.Locale;
+
+/**
+ * Rozmieszczenie próbek wygładzania w pikselu: punkty siatki
+ * <i>scale</i> x <i>scale</i>, gdzie (0, 0) to punkt samego piksela,
+ * już policzony. Próbka (<i>i</i>, <i>j</i>) leży o <i>i</i>/<i>scale</i>
+ * piksela w prawo i <i>j</i>/<i>scale</i> w dół od niego
+ * (zob. {@link Viewport#fine}).
+ */
+public final class SamplePattern {
+
+    /**
+     * Siatka 2 x 2: piksel i trzy nowe próbki
+     */
+    public static final SamplePattern GRID_2 = new SamplePattern("grid2", 2,
+            0, 0, 1, 0, 0, 1, 1, 1);
+
+    /**
+     * Obrócona siatka: cztery próbki o różnych kolumnach i wierszach,
+     * lepsza od GRID_2 na krawędziach bliskich pionu i poziomu
+     */
+    public static final SamplePattern ROTATED_4 = new SamplePattern("rotated4", 4,
+            1, 0, 3, 1, 0, 2, 2, 3);
+
+    /**
+     * Siatka 4 x 4: 16 próbek, w tym piksel
+     */
+    public static final SamplePattern GRID_4 = grid("grid4", 4);
+
+    private final String name;
+    final int scale;
+    final int[] x, y;
+
+    private SamplePattern(String name, int scale, int... xy) {
+        if (scale < 2 || Integer.bitCount(scale) != 1)
+            throw new IllegalArgumentException("Skala musi być potęgą dwójki większą od 1: " + scale);
+        if (xy.length == 0 || xy.length % 2 != 0)
+            throw new IllegalArgumentException("Próbki podaje się parami współrzędnych");
+        this.name = name;
+        this.scale = scale;
+        this.x = new int[xy.length / 2];
+        this.y = new int[xy.length / 2];
+        for (int k = 0; k < x.length; k++) {
+            x[k] = xy[2 * k];
+            y[k] = xy[2 * k + 1];
+            if (x[k] < 0 || x[k] >= scale || y[k] < 0 || y[k] >= scale)
+                throw new IllegalArgumentException("Próbka (" + x[k] + ", " + y[k] + ") poza siatką " + scale);
+        }
+    }
+
+    private static SamplePattern grid(String name, int scale) {
+        int[] xy = new int[2 * scale * scale];
+        for (int k = 0; k < scale * scale; k++) {
+            xy[2 * k] = k % scale;
+            xy[2 * k + 1] = k / scale;
+        }
+        return new SamplePattern(name, scale, xy);
+    }
+
+    /**
+     * Własne rozmieszczenie próbek
+     *
+     * @param scale gęstość siatki, potęga dwójki od 2
+     * @param xy    współrzędne kolejnych próbek: <i>x</i><sub>1</sub>,
+     *              <i>y</i><sub>1</sub>, <i>x</i><sub>2</sub>, ...
+     *              z przedziału od 0 do <i>scale</i> - 1
+     * @return rozmieszczenie próbek
+     * @throws IllegalArgumentException jeżeli skala albo próbki są niepoprawne
+     */
+    public static SamplePattern of(int scale, int... xy) {
+        return new SamplePattern("custom" + scale, scale, xy.clone());
+    }
+
+    /**
+     * Rozmieszczenie o nazwie <tt>grid2</tt>, <tt>rotated4</tt> albo <tt>grid4</tt>
+     *
+     * @param name nazwa
+     * @return rozmieszczenie próbek
+     * @throws IllegalArgumentException dla nieznanej nazwy
+     */
+    public static SamplePattern valueOf(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "grid2": return GRID_2;
+            case "rotated4": return ROTATED_4;
+            case "grid4": return GRID_4;
+            default: throw new IllegalArgumentException("Nieznane rozmieszczenie próbek: " + name);
+        }
+    }
+
+    /**
+     * Liczba próbek w pikselu, łącznie z samym pikselem, jeżeli należy do wzoru
+     */
+    public int size() {
+        return x.length;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
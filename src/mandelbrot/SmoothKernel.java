@@ -0,0 +1,78 @@
+package mandelbrot;
+
+/**
+ * Prędkość ucieczki z częścią ułamkową, do kolorowania bez pasm.
+ * Wynik jest liczbą stałoprzecinkową o {@link #STEPS} krokach na iterację:
+ * <tt>n * STEPS - ułamek</tt>, gdzie ułamek liczony jest z modułu
+ * <i>z</i> w chwili ucieczki. Punkty, które nie uciekły, dostają <tt>N * STEPS</tt>.
+ */
+public class SmoothKernel implements EscapeKernel {
+
+    //kroki na jedną iterację
+    public static final int STEPS = 16;
+
+    private static final double LN2 = Math.log(2);
+
+    private final double r2;
+    private final double logR2;
+    private final int N;
+    private final InteriorStats interior;
+
+    /**
+     * @param r        promień ucieczki
+     * @param N        maksymalna liczba iteracji
+     * @param interior liczniki punktów kardioidy i koła okresu 2,
+     *                 null wyłącza ich rozpoznawanie
+     */
+    public SmoothKernel(double r, int N, InteriorStats interior) {
+        this.r2 = r * r;
+        this.logR2 = Math.log(r2);
+        this.N = N;
+        this.interior = interior;
+    }
+
+    @Override
+    public int escape(double cr, double ci) {
+
+        if (interior != null && r2 >= 4) {
+            if (InteriorStats.inCardioid(cr, ci)) {
+                interior.cardioid.increment();
+                return N * STEPS;
+            }
+            if (InteriorStats.inBulb(cr, ci)) {
+                interior.bulb.increment();
+                return N * STEPS;
+            }
+        }
+
+        int v = 0;
+        double zr = cr;
+        double zi = ci;
+        double zr2 = zr * zr;
+        double zi2 = zi * zi;
+        double m = 0;
+        for (int n = 2; n <= N; n++) {
+            v = n;
+            double t = zr * zi;
+            zr = zr2 - zi2 + cr;
+            zi = t + t + ci;
+            zr2 = zr * zr;
+            zi2 = zi * zi;
+            m = zr2 + zi2;
+            if (m > r2)
+                break;
+        }
+
+        if (m <= r2 || r2 <= 1)
+            return v * STEPS;
+
+        // log2(log|z|^2 / log r^2) rośnie od 0 do 1, gdy |z|^2 rośnie od r^2 do r^4
+        double f = Math.log(Math.log(m) / logR2) / LN2;
+        int ulamek = (int) (f * STEPS);
+        if (ulamek < 0)
+            ulamek = 0;
+        if (ulamek > STEPS - 1)
+            ulamek = STEPS - 1;
+        return v * STEPS - ulamek;
+    }
+}
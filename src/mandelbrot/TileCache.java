@@ -0,0 +1,153 @@
+package mandelbrot;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Pamięć podręczna kafelków prędkości ucieczki z usuwaniem najdawniej
+ * używanych (LRU) po przekroczeniu limitu bajtów.
+ * Kafelek jest wyznaczony przez swoje położenie w siatce widoku
+ * wyrównanego ({@link Viewport#aligned()}), kroki siatki (poziom powiększenia),
+ * promień <i>r</i>, liczbę iteracji <i>N</i> i rodzaj prędkości ucieczki
+ * (całkowita lub z częścią ułamkową), więc powrót do widoku
+ * lub widok częściowo pokrywający się z poprzednim korzysta z gotowych kafelków.
+ */
+public class TileCache {
+
+    //przybliżony narzut pamięci na wpis poza samą tablicą
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private long bytes;
+    private long hits, misses, evictions;
+
+    private final LinkedHashMap<Key, int[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param maxBytes limit pamięci zajmowanej przez kafelki
+     */
+    public TileCache(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Limit pamięci nie może być ujemny");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Zwraca kafelek, jeżeli jest w pamięci
+     *
+     * @return prędkości ucieczki kafelka albo null
+     */
+    synchronized int[] get(Key key) {
+        int[] tile = tiles.get(key);
+        if (tile == null)
+            misses++;
+        else
+            hits++;
+        return tile;
+    }
+
+    /**
+     * Czy kafelek jest w pamięci; nie zmienia liczników ani kolejności usuwania
+     */
+    synchronized boolean contains(Key key) {
+        return tiles.containsKey(key);
+    }
+
+    /**
+     * Zapisuje kafelek i usuwa najdawniej używane, aż zmieszczą się w limicie
+     */
+    synchronized void put(Key key, int[] tile) {
+        int[] old = tiles.put(key, tile);
+        if (old != null)
+            bytes -= size(old);
+        bytes += size(tile);
+
+        Iterator<int[]> it = tiles.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= size(it.next());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static long size(int[] tile) {
+        return 4L * tile.length + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Usuwa wszystkie kafelki; liczniki pozostają
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "trafienia=" + hits + " chybienia=" + misses + " usunięte=" + evictions
+                + " kafelki=" + tiles.size() + " bajty=" + bytes + "/" + maxBytes;
+    }
+
+    /**
+     * Klucz kafelka: położenie w siatce, kroki siatki, <i>r</i>, <i>N</i>
+     * i to, czy prędkości mają część ułamkową
+     */
+    static final class Key {
+        final long tx, ty;
+        final long deltaRe, deltaIm;
+        final long r;
+        final int N;
+        final boolean smooth;
+
+        Key(long tx, long ty, double deltaRe, double deltaIm, double r, int N, boolean smooth) {
+            this.tx = tx;
+            this.ty = ty;
+            this.deltaRe = Double.doubleToLongBits(deltaRe);
+            this.deltaIm = Double.doubleToLongBits(deltaIm);
+            this.r = Double.doubleToLongBits(r);
+            this.N = N;
+            this.smooth = smooth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return tx == k.tx && ty == k.ty && deltaRe == k.deltaRe && deltaIm == k.deltaIm
+                    && r == k.r && N == k.N && smooth == k.smooth;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tx, ty, deltaRe, deltaIm, r, N, smooth);
+        }
+    }
+}
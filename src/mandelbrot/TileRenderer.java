@@ -0,0 +1,121 @@
+package mandelbrot;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renderowanie obrazu podzielonego na kafelki w puli fork-join.
+ * Prostokąt jest dzielony na połowy wzdłuż dłuższego boku aż do
+ * rozmiaru kafelka, a wolne wątki podkradają sobie nieukończone połowy,
+ * więc kosztowne kafelki przy brzegu zbioru nie wstrzymują całej klatki.
+ */
+@SuppressWarnings("serial")
+class TileRenderer extends RecursiveAction {
+
+    /**
+     * Obliczenie fragmentu wiersza <i>y</i> od kolumny <i>x0</i>
+     * (włącznie) do <i>x1</i> (wyłącznie).
+     */
+    interface Span {
+        void compute(int y, int x0, int x1);
+    }
+
+    //bok kafelka w pikselach
+    static final int TILE = 64;
+
+    //pule współdzielone między klatkami, po jednej na liczbę wątków
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    private final Span span;
+    private final BooleanSupplier cancelled;
+    private final CpuTimer timer;
+    private final int x0, y0, x1, y1;
+
+    private TileRenderer(Span span, BooleanSupplier cancelled, CpuTimer timer, int x0, int y0, int x1, int y1) {
+        this.span = span;
+        this.cancelled = cancelled;
+        this.timer = timer;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+    }
+
+    /**
+     * Wywołuje <i>span</i> dla każdego wiersza obrazu <i>w</i> x <i>h</i>.
+     * Przy jednym wątku całość liczona jest wierszami w wątku wołającym.
+     *
+     * @param threads liczba wątków
+     * @param w       szerokość obrazu
+     * @param h       wysokość obrazu
+     * @param span    obliczenie fragmentu wiersza
+     */
+    static void render(int threads, int w, int h, Span span) {
+        render(threads, w, h, () -> false, span);
+    }
+
+    /**
+     * Jak {@link #render(int, int, int, Span)}, ale przed każdym kafelkiem
+     * (przy jednym wątku - wierszem) sprawdza, czy liczenie nie zostało przerwane.
+     *
+     * @param cancelled zwraca true, gdy liczenie należy przerwać
+     * @throws CancellationException jeżeli liczenie zostało przerwane
+     */
+    static void render(int threads, int w, int h, BooleanSupplier cancelled, Span span)
+            throws CancellationException {
+        render(threads, w, h, cancelled, null, span);
+    }
+
+    /**
+     * Jak {@link #render(int, int, int, BooleanSupplier, Span)}, doliczając
+     * czas procesora kafelków liczonych w wątkach puli do <i>timer</i>
+     *
+     * @param timer czas procesora liczenia, null - bez pomiaru
+     */
+    static void render(int threads, int w, int h, BooleanSupplier cancelled, CpuTimer timer, Span span)
+            throws CancellationException {
+        if (threads <= 1) {
+            for (int y = 0; y < h; y++) {
+                if (cancelled.getAsBoolean())
+                    throw new CancellationException();
+                span.compute(y, 0, w);
+            }
+            return;
+        }
+        pool(threads).invoke(new TileRenderer(span, cancelled, timer, 0, 0, w, h));
+    }
+
+    static ForkJoinPool pool(int threads) {
+        return pools.computeIfAbsent(threads, ForkJoinPool::new);
+    }
+
+    @Override
+    protected void compute() {
+        int w = x1 - x0;
+        int h = y1 - y0;
+
+        if (w * h <= TILE * TILE) {
+            if (cancelled.getAsBoolean())
+                throw new CancellationException();
+            long start = timer != null ? timer.start() : -1;
+            for (int y = y0; y < y1; y++)
+                span.compute(y, x0, x1);
+            if (timer != null)
+                timer.stop(start);
+            return;
+        }
+
+        if (w >= h) {
+            int xm = x0 + w / 2;
+            invokeAll(new TileRenderer(span, cancelled, timer, x0, y0, xm, y1),
+                    new TileRenderer(span, cancelled, timer, xm, y0, x1, y1));
+        } else {
+            int ym = y0 + h / 2;
+            invokeAll(new TileRenderer(span, cancelled, timer, x0, y0, x1, ym),
+                    new TileRenderer(span, cancelled, timer, x0, ym, x1, y1));
+        }
+    }
+}
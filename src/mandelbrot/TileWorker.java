@@ -0,0 +1,177 @@
+package mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Węzeł obliczeniowy dla {@link DistributedRenderer}: czeka na połączenia
+ * i liczy zlecone pasy wierszy, odsyłając prędkości ucieczki.
+ * <p>
+ * Protokół (strumienie {@link java.io.DataInput}/{@link java.io.DataOutput}):
+ * po połączeniu obie strony wysyłają {@link #MAGIC} i {@link #VERSION}.
+ * Zlecenie to numer pasa, widok ({@link Viewport#write}), promień, N,
+ * nazwa algorytmu, rozpoznawanie wnętrza, kolorowanie płynne i odległością, wzór
+ * (pusty dla zbioru Mandelbrota), stała zbioru Julii poprzedzona
+ * znacznikiem jej obecności, pierwszy wiersz i liczba wierszy; numer ujemny kończy połączenie. Odpowiedź to
+ * numer pasa, liczba części iteracji (albo {@link #ERROR} i opis błędu)
+ * i prędkości ucieczki kolejnych pikseli pasa.
+ */
+public class TileWorker {
+
+    static final int MAGIC = 0x4D425457;
+    static final int VERSION = 3;
+
+    /**
+     * Liczba części iteracji oznaczająca błąd węzła
+     */
+    static final int ERROR = 0;
+
+    static final int DEFAULT_PORT = 7654;
+
+    private static final String USAGE = String.join("\n",
+            "Użycie: java mandelbrot.TileWorker [opcje]",
+            "  -port PORT          port nasłuchu (" + DEFAULT_PORT + ")",
+            "  -threads LICZBA     liczba wątków (liczba procesorów)");
+
+    private final int threads;
+
+    public TileWorker(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Liczba wątków musi być dodatnia");
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException("Brak wartości dla " + args[i]);
+                switch (args[i]) {
+                    case "-port": port = Integer.parseInt(args[++i]); break;
+                    case "-threads": threads = Integer.parseInt(args[++i]); break;
+                    default: throw new IllegalArgumentException("Nieznany argument: " + args[i]);
+                }
+            }
+            if (threads < 1)
+                throw new IllegalArgumentException("Liczba wątków musi być dodatnia");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.err.println("Węzeł nasłuchuje na porcie " + server.getLocalPort());
+            new TileWorker(threads).serve(server);
+        } catch (IOException e) {
+            System.err.println("Błąd węzła: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Przyjmuje połączenia, każde obsługując w osobnym wątku, aż do
+     * zamknięcia gniazda
+     *
+     * @param server gniazdo nasłuchujące
+     * @throws IOException błąd gniazda
+     */
+    public void serve(ServerSocket server) throws IOException {
+        while (!server.isClosed()) {
+            Socket socket = server.accept();
+            Thread t = new Thread(() -> connection(socket), "mandelbrot-worker-" + socket.getPort());
+            t.start();
+        }
+    }
+
+    private void connection(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Nieznany protokół");
+
+            while (true) {
+                int id = in.readInt();
+                if (id < 0)
+                    return;
+                job(id, in, out);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // koordynator zamknął połączenie, np. po odebraniu pasa od innego węzła
+        } catch (IOException e) {
+            System.err.println("Połączenie " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+        }
+    }
+
+    private void job(int id, DataInputStream in, DataOutputStream out) throws IOException {
+        Viewport v = Viewport.read(in);
+        double r = in.readDouble();
+        int N = in.readInt();
+        String kernel = in.readUTF();
+        boolean interiorChecks = in.readBoolean();
+        boolean smooth = in.readBoolean();
+        boolean distance = in.readBoolean();
+        String formula = in.readUTF();
+        Complex julia = in.readBoolean() ? new Complex(in.readDouble(), in.readDouble()) : null;
+        int y0 = in.readInt();
+        int rows = in.readInt();
+
+        int[] counts;
+        int steps;
+        try {
+            MandelRenderer mr = new MandelRenderer(r, N);
+            mr.setThreads(threads);
+            mr.setKernel(MandelRenderer.Kernel.valueOf(kernel));
+            mr.setInteriorChecks(interiorChecks);
+            mr.setSmooth(smooth);
+            mr.setDistanceEstimation(distance);
+            mr.setFormula(formula.isEmpty() ? null : Formula.parse(formula));
+            mr.setJulia(julia);
+            Viewport band = v.rows(y0, rows);
+            counts = new int[band.w * band.h];
+            steps = mr.escapeCounts(band, counts, () -> false);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            out.writeInt(id);
+            out.writeInt(ERROR);
+            out.writeUTF(String.valueOf(e));
+            return;
+        }
+
+        out.writeInt(id);
+        out.writeInt(steps);
+        writeInts(out, counts, counts.length);
+    }
+
+    /**
+     * Zapisuje <i>n</i> liczb naraz, w kolejności bajtów {@link DataOutputStream}
+     */
+    static void writeInts(DataOutputStream out, int[] a, int n) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(n * 4);
+        bytes.asIntBuffer().put(a, 0, n);
+        out.write(bytes.array());
+    }
+
+    /**
+     * Odczytuje <i>n</i> liczb zapisanych przez {@link #writeInts}
+     */
+    static void readInts(DataInputStream in, int[] a, int n) throws IOException {
+        byte[] bytes = new byte[n * 4];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asIntBuffer().get(a, 0, n);
+    }
+}
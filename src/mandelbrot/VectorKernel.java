@@ -0,0 +1,135 @@
+package mandelbrot;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Prędkość ucieczki liczona jednocześnie dla pasa punktów wiersza
+ * o szerokości rejestru wektorowego (Vector API).
+ * Każdy tor ma własną maskę ucieczki; pętla kończy się, gdy uciekły
+ * wszystkie tory albo wyczerpano <i>N</i> iteracji. Wyniki są identyczne
+ * z {@link PrimitiveKernel}, bo działania wykonywane są w tej samej kolejności.
+ * Rozpoznawanie wnętrza działa tu tak samo, maskami dla każdego toru.
+ * <p>
+ * Wymaga modułu <tt>jdk.incubator.vector</tt> (<tt>--add-modules jdk.incubator.vector</tt>).
+ * Sama klasa odwołuje się do tego modułu już przy ładowaniu, dlatego
+ * tworzy ją {@link MandelRenderer} dopiero po sprawdzeniu, że moduł jest obecny.
+ */
+class VectorKernel implements EscapeKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final PrimitiveKernel scalar;
+    private final double r2;
+    private final int N;
+    private final InteriorStats interior;
+    private final double periodEps;
+
+    /**
+     * @param r        promień ucieczki
+     * @param N        maksymalna liczba iteracji
+     * @param interior liczniki punktów wnętrza, null wyłącza rozpoznawanie wnętrza
+     * @param pixel    odstęp pikseli widoku, jak w {@link PrimitiveKernel}
+     */
+    VectorKernel(double r, int N, InteriorStats interior, double pixel) {
+        this.scalar = new PrimitiveKernel(r, N, interior, pixel);
+        this.r2 = r * r;
+        this.N = N;
+        this.interior = interior;
+        this.periodEps = PrimitiveKernel.periodEps(pixel);
+    }
+
+    @Override
+    public int escape(double re, double im) {
+        return scalar.escape(re, im);
+    }
+
+    @Override
+    public void escapeRow(Viewport v, int y, int x0, int x1, int[] out) {
+        int lanes = SPECIES.length();
+        int offset = y * v.w;
+        double[] re = new double[lanes];
+        double[] count = new double[lanes];
+        DoubleVector ci = DoubleVector.broadcast(SPECIES, v.im(y));
+
+        int x = x0;
+        for (; x + lanes <= x1; x += lanes) {
+            for (int l = 0; l < lanes; l++)
+                re[l] = v.re(x + l);
+
+            DoubleVector cr = DoubleVector.fromArray(SPECIES, re, 0);
+            DoubleVector zr = cr;
+            DoubleVector zi = ci;
+            DoubleVector zr2 = zr.mul(zr);
+            DoubleVector zi2 = zi.mul(zi);
+            DoubleVector predkosc = DoubleVector.zero(SPECIES);
+            VectorMask<Double> active = SPECIES.maskAll(true);
+            VectorMask<Double> inside = SPECIES.maskAll(false);
+
+            if (interior != null && r2 >= 4) {
+                VectorMask<Double> cardioid = inCardioid(cr, ci);
+                VectorMask<Double> bulb = inBulb(cr, ci).andNot(cardioid);
+                interior.cardioid.add(cardioid.trueCount());
+                interior.bulb.add(bulb.trueCount());
+                inside = cardioid.or(bulb);
+                active = active.andNot(inside);
+            }
+
+            // punkt orbity zapamiętywany co 2^k iteracji (metoda Brenta)
+            DoubleVector pr = zr;
+            DoubleVector pi = zi;
+            int saveAt = 4;
+
+            for (int n = 2; n <= N && active.anyTrue(); n++) {
+                DoubleVector t = zr.mul(zi);
+                zr = zr2.sub(zi2).add(cr);
+                zi = t.add(t).add(ci);
+                zr2 = zr.mul(zr);
+                zi2 = zi.mul(zi);
+                VectorMask<Double> escaped = zr2.add(zi2).compare(VectorOperators.GT, r2).and(active);
+                predkosc = predkosc.blend(n, escaped);
+                active = active.andNot(escaped);
+
+                if (interior != null) {
+                    VectorMask<Double> cycle = zr.sub(pr).abs().compare(VectorOperators.LT, periodEps)
+                            .and(zi.sub(pi).abs().compare(VectorOperators.LT, periodEps))
+                            .and(active);
+                    if (cycle.anyTrue()) {
+                        interior.period.add(cycle.trueCount());
+                        inside = inside.or(cycle);
+                        active = active.andNot(cycle);
+                    }
+                    if (n == saveAt) {
+                        pr = zr;
+                        pi = zi;
+                        saveAt <<= 1;
+                    }
+                }
+            }
+            if (N >= 2)
+                predkosc = predkosc.blend(N, active.or(inside));
+
+            predkosc.intoArray(count, 0);
+            for (int l = 0; l < lanes; l++)
+                out[offset + x + l] = (int) count[l];
+        }
+
+        // końcówka węższa niż rejestr
+        for (; x < x1; x++)
+            out[offset + x] = scalar.escape(v.re(x), v.im(y));
+    }
+
+    private static VectorMask<Double> inCardioid(DoubleVector re, DoubleVector im) {
+        DoubleVector x = re.sub(0.25);
+        DoubleVector im2 = im.mul(im);
+        DoubleVector q = x.mul(x).add(im2);
+        return q.mul(q.add(x)).compare(VectorOperators.LE, im2.mul(0.25));
+    }
+
+    private static VectorMask<Double> inBulb(DoubleVector re, DoubleVector im) {
+        DoubleVector x = re.add(1);
+        return x.mul(x).add(im.mul(im)).compare(VectorOperators.LE, 0.0625);
+    }
+}
@@ -0,0 +1,421 @@
+package mandelbrot;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Prostokątny fragment płaszczyzny zespolonej odwzorowany na siatkę
+ * <i>w</i> x <i>h</i> pikseli.
+ * Współrzędne piksela liczone są z jego indeksu, a nie przez sumowanie
+ * kolejnych kroków, więc każdy wątek dostaje dla danego piksela
+ * dokładnie tę samą liczbę.
+ * <p>
+ * Środek widoku przechowywany jest dokładnie jako {@link BigDecimal},
+ * co pozwala liczyć głębokie powiększenia, w których sąsiednie piksele
+ * nie różnią się już w zapisie double.
+ */
+public class Viewport {
+
+    final double minRe, maxIm;
+    final double deltaRe, deltaIm;
+    final int w, h;
+    final BigDecimal centerRe, centerIm;
+
+    //widok wyrównany do siatki: piksel (x, y) to ((ox + x) * deltaRe, -(oy + y) * deltaIm);
+    //w pozostałych widokach oy to numer pierwszego wiersza pasa
+    final boolean grid;
+    final long ox, oy;
+
+    //wiersz środka widoku w tych samych jednostkach co oy + y; pas wierszy
+    //zachowuje środek całego widoku, więc liczy się względem tego samego punktu
+    final double midY;
+
+    //względny odstęp pikseli; pas wierszy dziedziczy go po całym widoku,
+    //więc w każdym pasie wybierany jest ten sam algorytm
+    private final double spacing;
+
+    private static final BigDecimal HALF = new BigDecimal("0.5");
+
+    /**
+     * Konstruuje widok rozpięty na przeciwległych rogach <i>a</i> i <i>b</i>
+     *
+     * @param a pierwszy róg prostokąta
+     * @param b drugi róg prostokąta
+     * @param w szerokość w pikselach
+     * @param h wysokość w pikselach
+     */
+    public Viewport(Complex a, Complex b, int w, int h) {
+        double maxRe = Math.max(a.re(), b.re());
+        double minRe = Math.min(a.re(), b.re());
+        double maxIm = Math.max(a.im(), b.im());
+        double minIm = Math.min(a.im(), b.im());
+        this.minRe = minRe;
+        this.maxIm = maxIm;
+        this.deltaRe = Math.abs(maxRe - minRe) / w;
+        this.deltaIm = Math.abs(maxIm - minIm) / h;
+        this.w = w;
+        this.h = h;
+        this.centerRe = BigDecimal.valueOf((minRe + maxRe) * 0.5);
+        this.centerIm = BigDecimal.valueOf((minIm + maxIm) * 0.5);
+        this.grid = false;
+        this.ox = 0;
+        this.oy = 0;
+        this.midY = h * 0.5;
+        this.spacing = spacing();
+    }
+
+    /**
+     * Konstruuje widok wyrównany do siatki o krokach <i>deltaRe</i>
+     * i <i>deltaIm</i>, zaczynający się w węźle (<i>ox</i>, <i>oy</i>)
+     */
+    Viewport(long ox, long oy, double deltaRe, double deltaIm, int w, int h) {
+        this.minRe = ox * deltaRe;
+        this.maxIm = -oy * deltaIm;
+        this.deltaRe = deltaRe;
+        this.deltaIm = deltaIm;
+        this.w = w;
+        this.h = h;
+        this.centerRe = BigDecimal.valueOf((ox + w * 0.5) * deltaRe);
+        this.centerIm = BigDecimal.valueOf(-(oy + h * 0.5) * deltaIm);
+        this.grid = true;
+        this.ox = ox;
+        this.oy = oy;
+        this.midY = oy + h * 0.5;
+        this.spacing = spacing();
+    }
+
+    /**
+     * Konstruuje widok z zapisanych wartości pól, np. odczytanych z pliku
+     */
+    Viewport(double minRe, double maxIm, double deltaRe, double deltaIm, int w, int h,
+             BigDecimal centerRe, BigDecimal centerIm) {
+        this.minRe = minRe;
+        this.maxIm = maxIm;
+        this.deltaRe = deltaRe;
+        this.deltaIm = deltaIm;
+        this.w = w;
+        this.h = h;
+        this.centerRe = centerRe;
+        this.centerIm = centerIm;
+        this.grid = false;
+        this.ox = 0;
+        this.oy = 0;
+        this.midY = h * 0.5;
+        this.spacing = spacing();
+    }
+
+    /**
+     * Konstruuje widok o rogach podanych z dowolną dokładnością
+     *
+     * @param re1 część rzeczywista pierwszego rogu
+     * @param im1 część urojona pierwszego rogu
+     * @param re2 część rzeczywista drugiego rogu
+     * @param im2 część urojona drugiego rogu
+     * @param w   szerokość w pikselach
+     * @param h   wysokość w pikselach
+     */
+    public Viewport(BigDecimal re1, BigDecimal im1, BigDecimal re2, BigDecimal im2, int w, int h) {
+        BigDecimal maxRe = re1.max(re2);
+        BigDecimal minRe = re1.min(re2);
+        BigDecimal maxIm = im1.max(im2);
+        BigDecimal minIm = im1.min(im2);
+        this.minRe = minRe.doubleValue();
+        this.maxIm = maxIm.doubleValue();
+        this.deltaRe = maxRe.subtract(minRe).doubleValue() / w;
+        this.deltaIm = maxIm.subtract(minIm).doubleValue() / h;
+        this.w = w;
+        this.h = h;
+        this.centerRe = minRe.add(maxRe).multiply(HALF);
+        this.centerIm = minIm.add(maxIm).multiply(HALF);
+        this.grid = false;
+        this.ox = 0;
+        this.oy = 0;
+        this.midY = h * 0.5;
+        this.spacing = spacing();
+    }
+
+    /**
+     * Widok o tym samym lewym górnym rogu i <i>step</i> razy większych
+     * krokach, pokrywający ten widok co <i>step</i> pikseli
+     */
+    private Viewport(Viewport v, int step) {
+        this.minRe = v.re(0);
+        this.maxIm = v.im(0);
+        this.deltaRe = v.deltaRe * step;
+        this.deltaIm = v.deltaIm * step;
+        this.w = (v.w + step - 1) / step;
+        this.h = (v.h + step - 1) / step;
+        // środek przesuwa się, gdy wymiary nie dzielą się przez step
+        this.centerRe = v.centerRe.add(new BigDecimal((w * step - v.w) * 0.5 * v.deltaRe));
+        this.centerIm = v.centerIm.subtract(new BigDecimal((v.oy + h * step * 0.5 - v.midY) * v.deltaIm));
+        this.grid = false;
+        this.ox = 0;
+        this.oy = 0;
+        this.midY = h * 0.5;
+        this.spacing = spacing();
+    }
+
+    /**
+     * Pas <i>rows</i> wierszy tego widoku zaczynający się od wiersza <i>y0</i>,
+     * o tym samym środku
+     */
+    private Viewport(Viewport v, int y0, int rows) {
+        this.minRe = v.minRe;
+        this.maxIm = v.maxIm;
+        this.deltaRe = v.deltaRe;
+        this.deltaIm = v.deltaIm;
+        this.w = v.w;
+        this.h = rows;
+        this.centerRe = v.centerRe;
+        this.centerIm = v.centerIm;
+        this.grid = v.grid;
+        this.ox = v.ox;
+        this.oy = v.oy + y0;
+        this.midY = v.midY;
+        this.spacing = v.spacing;
+    }
+
+    /**
+     * Widok o podanych wartościach wszystkich pól
+     */
+    private Viewport(double minRe, double maxIm, double deltaRe, double deltaIm, int w, int h,
+                     BigDecimal centerRe, BigDecimal centerIm, boolean grid, long ox, long oy,
+                     double midY, double spacing) {
+        this.minRe = minRe;
+        this.maxIm = maxIm;
+        this.deltaRe = deltaRe;
+        this.deltaIm = deltaIm;
+        this.w = w;
+        this.h = h;
+        this.centerRe = centerRe;
+        this.centerIm = centerIm;
+        this.grid = grid;
+        this.ox = ox;
+        this.oy = oy;
+        this.midY = midY;
+        this.spacing = spacing;
+    }
+
+    /**
+     * Zwraca pas wierszy widoku: wiersz <i>y</i> pasa to wiersz
+     * <i>y0</i>+<i>y</i> tego widoku, z dokładnie tymi samymi współrzędnymi
+     * i tym samym środkiem, więc każdy algorytm, także perturbacja, daje
+     * w pasie te same wartości co w całym widoku. Pozwala liczyć obraz
+     * kawałkami w stałej pamięci albo w wielu procesach.
+     *
+     * @param y0   pierwszy wiersz pasa
+     * @param rows liczba wierszy pasa
+     * @return pas widoku
+     */
+    public Viewport rows(int y0, int rows) {
+        if (y0 < 0 || rows < 0 || y0 + rows > h)
+            throw new IndexOutOfBoundsException("Pas [" + y0 + ", " + (y0 + rows) + ") poza widokiem");
+        return new Viewport(this, y0, rows);
+    }
+
+    /**
+     * Zwraca wycinek widoku: piksel (<i>x</i>, <i>y</i>) wycinka leży
+     * w pikselu (<i>x0</i>+<i>x</i>, <i>y0</i>+<i>y</i>) tego widoku.
+     *
+     * @param x0 pierwsza kolumna wycinka
+     * @param y0 pierwszy wiersz wycinka
+     * @param cw szerokość wycinka
+     * @param ch wysokość wycinka
+     * @return wycinek widoku
+     */
+    public Viewport crop(int x0, int y0, int cw, int ch) {
+        if (x0 < 0 || y0 < 0 || cw < 0 || ch < 0 || x0 + cw > w || y0 + ch > h)
+            throw new IndexOutOfBoundsException("Wycinek poza widokiem");
+        return new Viewport(re(x0), im(y0), deltaRe, deltaIm, cw, ch,
+                centerRe.add(new BigDecimal((x0 + cw * 0.5 - w * 0.5) * deltaRe)),
+                centerIm.subtract(new BigDecimal((oy + y0 + ch * 0.5 - midY) * deltaIm)));
+    }
+
+    /**
+     * Zwraca widok zgrubny: piksel (<i>x</i>, <i>y</i>) zgrubnego widoku
+     * leży w pikselu (<i>x</i>*<i>step</i>, <i>y</i>*<i>step</i>) tego widoku.
+     *
+     * @param step co ile pikseli brany jest punkt
+     * @return widok zgrubny
+     */
+    public Viewport coarse(int step) {
+        if (step == 1)
+            return this;
+        return new Viewport(this, step);
+    }
+
+    /**
+     * Zwraca widok gęstszy: piksel (<i>x</i>*<i>scale</i> + <i>i</i>,
+     * <i>y</i>*<i>scale</i> + <i>j</i>) gęstego widoku leży o <i>i</i>/<i>scale</i>
+     * i <i>j</i>/<i>scale</i> piksela od piksela (<i>x</i>, <i>y</i>) tego widoku.
+     * Środek pozostaje ten sam, więc wszystkie algorytmy, także perturbacja
+     * z tą samą orbitą odniesienia, liczą punkty pośrednie pikseli;
+     * piksele (<i>x</i>*<i>scale</i>, <i>y</i>*<i>scale</i>) mają co do bitu
+     * te same współrzędne co piksele tego widoku.
+     *
+     * @param scale potęga dwójki, liczba pikseli gęstego widoku na piksel
+     * @return widok gęstszy
+     */
+    public Viewport fine(int scale) {
+        if (scale < 1 || Integer.bitCount(scale) != 1)
+            throw new IllegalArgumentException("Skala musi być potęgą dwójki: " + scale);
+        if ((long) w * scale > Integer.MAX_VALUE || (long) h * scale > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Widok za duży dla skali " + scale);
+        if (scale == 1)
+            return this;
+        // mnożenie i dzielenie przez potęgę dwójki jest dokładne
+        return new Viewport(minRe, maxIm, deltaRe / scale, deltaIm / scale, w * scale, h * scale,
+                centerRe, centerIm, grid, ox * scale, oy * scale, midY * scale, spacing / scale);
+    }
+
+    /**
+     * Zwraca widok tej samej wielkości przesunięty o mniej niż pół piksela
+     * tak, by piksele leżały w węzłach siatki o krokach tego widoku.
+     * Piksele w tym samym węźle mają wtedy dokładnie te same współrzędne
+     * we wszystkich widokach o tych krokach, co pozwala przenosić między
+     * nimi policzone wartości.
+     *
+     * @return widok wyrównany do siatki
+     */
+    public Viewport aligned() {
+        if (grid)
+            return this;
+        return new Viewport(Math.round(minRe / deltaRe), Math.round(-maxIm / deltaIm) + oy, deltaRe, deltaIm, w, h);
+    }
+
+    /**
+     * Część rzeczywista punktu w kolumnie <i>x</i>
+     *
+     * @param x kolumna piksela
+     * @return część rzeczywistą punktu
+     */
+    public double re(int x) {
+        if (grid)
+            return (ox + x) * deltaRe;
+        return minRe + x * deltaRe;
+    }
+
+    /**
+     * Część urojona punktu w wierszu <i>y</i>
+     *
+     * @param y wiersz piksela
+     * @return część urojoną punktu
+     */
+    public double im(int y) {
+        if (grid)
+            return -(oy + y) * deltaIm;
+        return maxIm - (oy + y) * deltaIm;
+    }
+
+    /**
+     * Odległość części rzeczywistej punktu w kolumnie <i>x</i> od środka widoku
+     *
+     * @param x kolumna piksela
+     * @return przesunięcie względem środka
+     */
+    public double deltaRe(int x) {
+        return (x - w * 0.5) * deltaRe;
+    }
+
+    /**
+     * Odległość części urojonej punktu w wierszu <i>y</i> od środka widoku
+     *
+     * @param y wiersz piksela
+     * @return przesunięcie względem środka
+     */
+    public double deltaIm(int y) {
+        return (midY - (oy + y)) * deltaIm;
+    }
+
+    /**
+     * Odstęp między pikselami w stosunku do największego modułu
+     * współrzędnych widoku. Dla double sąsiednie piksele przestają się
+     * rozróżniać, gdy wartość zbliża się do 1e-16.
+     *
+     * @return względny odstęp między pikselami
+     */
+    public double relativeSpacing() {
+        return spacing;
+    }
+
+    private double spacing() {
+        double re = Math.max(Math.abs(minRe), Math.abs(minRe + w * deltaRe));
+        double im = Math.max(Math.abs(im(0)), Math.abs(im(h)));
+        return Math.min(deltaRe, deltaIm) / Math.max(Math.max(re, im), Double.MIN_NORMAL);
+    }
+
+    /**
+     * Zapisuje wszystkie pola widoku, tak by {@link #read} odtworzył widok
+     * dający co do bitu te same współrzędne pikseli, także pas wierszy
+     *
+     * @param out strumień docelowy
+     * @throws IOException błąd zapisu
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeDouble(minRe);
+        out.writeDouble(maxIm);
+        out.writeDouble(deltaRe);
+        out.writeDouble(deltaIm);
+        out.writeInt(w);
+        out.writeInt(h);
+        out.writeUTF(centerRe.toString());
+        out.writeUTF(centerIm.toString());
+        out.writeBoolean(grid);
+        out.writeLong(ox);
+        out.writeLong(oy);
+        out.writeDouble(midY);
+        out.writeDouble(spacing);
+    }
+
+    /**
+     * Odczytuje widok zapisany przez {@link #write}
+     *
+     * @param in strumień źródłowy
+     * @return odczytany widok
+     * @throws IOException błąd odczytu
+     */
+    static Viewport read(DataInput in) throws IOException {
+        double minRe = in.readDouble();
+        double maxIm = in.readDouble();
+        double deltaRe = in.readDouble();
+        double deltaIm = in.readDouble();
+        int w = in.readInt();
+        int h = in.readInt();
+        BigDecimal centerRe = new BigDecimal(in.readUTF());
+        BigDecimal centerIm = new BigDecimal(in.readUTF());
+        boolean grid = in.readBoolean();
+        long ox = in.readLong();
+        long oy = in.readLong();
+        double midY = in.readDouble();
+        double spacing = in.readDouble();
+        if (w < 0 || h < 0)
+            throw new IOException("Niepoprawne wymiary widoku");
+        return new Viewport(minRe, maxIm, deltaRe, deltaIm, w, h, centerRe, centerIm, grid, ox, oy, midY, spacing);
+    }
+
+    public BigDecimal getCenterRe() {
+        return centerRe;
+    }
+
+    public BigDecimal getCenterIm() {
+        return centerIm;
+    }
+
+    public double getDeltaRe() {
+        return deltaRe;
+    }
+
+    public double getDeltaIm() {
+        return deltaIm;
+    }
+
+    public int width() {
+        return w;
+    }
+
+    public int height() {
+        return h;
+    }
+}
@@ -0,0 +1,433 @@
+package mandelbrot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Animacja powiększania wzdłuż ścieżki klatek kluczowych (środek,
+ * szerokość widoku, <i>N</i>), zapisywana jako ciąg obrazów.
+ * Klatki przechodzą przez trzy etapy w osobnych wątkach: liczenie
+ * prędkości ucieczki, kolorowanie i zapis do pliku. Etapy przekazują sobie
+ * tablice z ustalonej puli, więc zużycie pamięci nie zależy od liczby klatek.
+ * <p>
+ * Kolejne klatki korzystają z pracy poprzednich: klatki o tym samym
+ * środku współdzielą orbitę odniesienia perturbacji ({@link OrbitCache}),
+ * a klatki przesunięte albo o krokach różniących się o potęgę 2 przenoszą
+ * policzone piksele ({@link FrameReuse}).
+ */
+public class ZoomAnimation {
+
+    private static final String USAGE = String.join("\n",
+            "Użycie: java mandelbrot.ZoomAnimation [opcje] ścieżka.txt katalog",
+            "  ścieżka.txt: w każdym wierszu klatka kluczowa",
+            "      RE IM SZEROKOŚĆ N|auto [KLATKI]",
+            "  KLATKI to liczba klatek do następnej klatki kluczowej (30)",
+            "  -w SZEROKOŚĆ        szerokość obrazu w pikselach (640)",
+            "  -h WYSOKOŚĆ         wysokość obrazu w pikselach (360)",
+            "  -r PROMIEŃ          promień ucieczki (2)",
+            "  -kernel NAZWA       complex|primitive|vector|double_double|perturbation (primitive)",
+            "  -threads LICZBA     liczba wątków liczących (liczba procesorów)",
+            "  -palette NAZWA      classic|ocean (classic)",
+            "  -smooth             kolorowanie płynne",
+            "  -format FORMAT      png|ppm (png)",
+            "  -buffers LICZBA     liczba klatek w drodze między etapami (4)");
+
+    //N dobierane do powiększenia przez IterationPolicy
+    static final int AUTO = -1;
+
+    private static final int DEFAULT_FRAMES = 30;
+
+    /**
+     * Klatka kluczowa ścieżki
+     */
+    public static class Keyframe {
+        final BigDecimal re, im, width;
+        final int N;
+        final int frames;
+
+        /**
+         * @param re     część rzeczywista środka
+         * @param im     część urojona środka
+         * @param width  szerokość widoku na płaszczyźnie zespolonej
+         * @param N      liczba iteracji albo {@link #AUTO}
+         * @param frames liczba klatek do następnej klatki kluczowej
+         */
+        public Keyframe(BigDecimal re, BigDecimal im, BigDecimal width, int N, int frames) {
+            if (width.signum() <= 0)
+                throw new IllegalArgumentException("Szerokość widoku musi być dodatnia");
+            if ((N < 1 && N != AUTO) || frames < 1)
+                throw new IllegalArgumentException("N i liczba klatek muszą być dodatnie");
+            this.re = re;
+            this.im = im;
+            this.width = width;
+            this.N = N;
+            this.frames = frames;
+        }
+    }
+
+    /**
+     * Klatka animacji: widok i liczba iteracji
+     */
+    public static class Shot {
+        public final Viewport view;
+        public final int N;
+
+        Shot(Viewport view, int N) {
+            this.view = view;
+            this.N = N;
+        }
+    }
+
+    /**
+     * Klatka przekazywana między etapami; <i>data</i> zawiera najpierw
+     * prędkości ucieczki, a po kolorowaniu kolory ARGB
+     */
+    private static class Frame {
+        final int index;
+        final int N, steps;
+        final int[] data;
+
+        Frame(int index, int N, int steps, int[] data) {
+            this.index = index;
+            this.N = N;
+            this.steps = steps;
+            this.data = data;
+        }
+    }
+
+    //koniec strumienia klatek
+    private static final Frame END = new Frame(-1, 0, 0, null);
+
+    private int w = 640;
+    private int h = 360;
+    private double r = 2;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private MandelRenderer.Kernel kernel = MandelRenderer.Kernel.PRIMITIVE;
+    private Palette palette = Palette.CLASSIC;
+    private boolean smooth = false;
+    private String format = "png";
+    private int buffers = 4;
+
+    private final FrameReuse frameReuse = new FrameReuse();
+    private final OrbitCache orbitCache = new OrbitCache();
+
+    public static void main(String[] args) {
+        ZoomAnimation animation = new ZoomAnimation();
+        String keyframes = null;
+        String dir = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-w": animation.w = Integer.parseInt(value(args, ++i)); break;
+                    case "-h": animation.h = Integer.parseInt(value(args, ++i)); break;
+                    case "-r": animation.r = Double.parseDouble(value(args, ++i)); break;
+                    case "-threads": animation.threads = Integer.parseInt(value(args, ++i)); break;
+                    case "-kernel":
+                        animation.kernel = MandelRenderer.Kernel.valueOf(value(args, ++i).toUpperCase(Locale.ROOT));
+                        break;
+                    case "-palette": animation.palette = BatchRenderer.palette(value(args, ++i)); break;
+                    case "-smooth": animation.smooth = true; break;
+                    case "-format": animation.format = value(args, ++i); break;
+                    case "-buffers": animation.buffers = Integer.parseInt(value(args, ++i)); break;
+                    default:
+                        if (args[i].startsWith("-") || dir != null)
+                            throw new IllegalArgumentException("Nieznany argument: " + args[i]);
+                        if (keyframes == null)
+                            keyframes = args[i];
+                        else
+                            dir = args[i];
+                }
+            }
+            if (dir == null)
+                throw new IllegalArgumentException("Brak pliku ścieżki lub katalogu docelowego");
+            if (!animation.format.equals("png") && !animation.format.equals("ppm"))
+                throw new IllegalArgumentException("Nieobsługiwany format: " + animation.format);
+            if (animation.w < 1 || animation.h < 1 || animation.threads < 1 || animation.buffers < 1)
+                throw new IllegalArgumentException("Rozmiary, liczba wątków i klatek w drodze muszą być dodatnie");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            List<Keyframe> path = read(Path.of(keyframes));
+            long start = System.nanoTime();
+            int frames = animation.render(path, Path.of(dir));
+            System.err.printf(Locale.ROOT, "%d klatek %dx%d w %.1f s; przeniesione piksele: %d, wspólne orbity: %d%n",
+                    frames, animation.w, animation.h, (System.nanoTime() - start) * 1e-9,
+                    animation.frameReuse.getReused(), animation.orbitCache.getReused());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Błąd zapisu: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Brak wartości dla " + args[i - 1]);
+        return args[i];
+    }
+
+    /**
+     * Odczytuje klatki kluczowe z pliku tekstowego; puste wiersze
+     * i wiersze zaczynające się od # są pomijane
+     *
+     * @param file plik ścieżki
+     * @return klatki kluczowe
+     * @throws IOException błąd odczytu
+     */
+    public static List<Keyframe> read(Path file) throws IOException {
+        List<Keyframe> keyframes = new ArrayList<>();
+        int line = 0;
+        for (String s : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line++;
+            s = s.trim();
+            if (s.isEmpty() || s.startsWith("#"))
+                continue;
+            String[] f = s.split("\\s+");
+            try {
+                if (f.length < 4 || f.length > 5)
+                    throw new IllegalArgumentException("oczekiwano RE IM SZEROKOŚĆ N [KLATKI]");
+                int N = f[3].equals("auto") ? AUTO : Integer.parseInt(f[3]);
+                int frames = f.length == 5 ? Integer.parseInt(f[4]) : DEFAULT_FRAMES;
+                keyframes.add(new Keyframe(new BigDecimal(f[0]), new BigDecimal(f[1]), new BigDecimal(f[2]), N, frames));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(file + ":" + line + ": " + e.getMessage());
+            }
+        }
+        if (keyframes.isEmpty())
+            throw new IllegalArgumentException(file + ": brak klatek kluczowych");
+        return keyframes;
+    }
+
+    /**
+     * Rozpisuje ścieżkę na klatki. Szerokość widoku zmienia się
+     * wykładniczo, więc powiększenie jest płynne, a środek przesuwa się
+     * tak, by punkt docelowy powiększenia stał w miejscu. <i>N</i> zmienia
+     * się wykładniczo między wartościami klatek kluczowych.
+     *
+     * @param keyframes klatki kluczowe
+     * @param w         szerokość obrazu w pikselach
+     * @param h         wysokość obrazu w pikselach
+     * @return klatki animacji, ostatnia to ostatnia klatka kluczowa
+     */
+    public static List<Shot> path(List<Keyframe> keyframes, int w, int h) {
+        List<Shot> shots = new ArrayList<>();
+        for (int k = 0; k + 1 < keyframes.size(); k++) {
+            Keyframe a = keyframes.get(k);
+            Keyframe b = keyframes.get(k + 1);
+            for (int i = 0; i < a.frames; i++)
+                shots.add(shot(a, b, (double) i / a.frames, w, h));
+        }
+        Keyframe last = keyframes.get(keyframes.size() - 1);
+        shots.add(shot(last, last, 0, w, h));
+        return shots;
+    }
+
+    private static Shot shot(Keyframe a, Keyframe b, double t, int w, int h) {
+        double la = log10(a.width);
+        double lb = log10(b.width);
+        BigDecimal width = t == 0 ? a.width : pow10(la + (lb - la) * t);
+
+        // dokładność wystarczająca dla odstępu pikseli klatki
+        int digits = (int) Math.ceil(Math.max(0, -log10(width)) + Math.log10(Math.max(w, h))) + 20;
+        MathContext mc = new MathContext(Math.max(digits, 34));
+
+        // część drogi środka: przy zmianie szerokości tak, by punkt docelowy
+        // stał w miejscu, przy stałej szerokości - jednostajnie
+        BigDecimal f;
+        BigDecimal span = a.width.subtract(b.width);
+        if (t == 0)
+            f = BigDecimal.ZERO;
+        else if (span.signum() == 0)
+            f = new BigDecimal(t);
+        else
+            f = a.width.subtract(width).divide(span, mc);
+        BigDecimal re = a.re.add(b.re.subtract(a.re).multiply(f, mc), mc);
+        BigDecimal im = a.im.add(b.im.subtract(a.im).multiply(f, mc), mc);
+
+        BigDecimal halfW = width.divide(BigDecimal.valueOf(2), mc);
+        BigDecimal halfH = width.multiply(BigDecimal.valueOf(h), mc).divide(BigDecimal.valueOf(2L * w), mc);
+        Viewport v = new Viewport(re.subtract(halfW, mc), im.subtract(halfH, mc),
+                re.add(halfW, mc), im.add(halfH, mc), w, h);
+
+        int N;
+        if (a.N == AUTO || b.N == AUTO)
+            N = IterationPolicy.fromScale(v);
+        else
+            N = (int) Math.round(a.N * Math.pow((double) b.N / a.N, t));
+        return new Shot(v, Math.max(N, 1));
+    }
+
+    /**
+     * Logarytm dziesiętny liczby dodatniej dowolnej wielkości
+     */
+    private static double log10(BigDecimal x) {
+        int e = x.precision() - x.scale() - 1;
+        return e + Math.log10(x.scaleByPowerOfTen(-e).doubleValue());
+    }
+
+    /**
+     * 10 do potęgi <i>l</i>, także poza zakresem double
+     */
+    private static BigDecimal pow10(double l) {
+        int e = (int) Math.floor(l);
+        return new BigDecimal(Math.pow(10, l - e)).scaleByPowerOfTen(e);
+    }
+
+    /**
+     * Liczy i zapisuje klatki animacji jako <tt>frame00000.png</tt>,
+     * <tt>frame00001.png</tt>... w katalogu <i>dir</i>
+     *
+     * @param keyframes klatki kluczowe
+     * @param dir       katalog docelowy, tworzony w razie potrzeby
+     * @return liczbę zapisanych klatek
+     * @throws IOException błąd zapisu
+     */
+    public int render(List<Keyframe> keyframes, Path dir) throws IOException {
+        List<Shot> shots = path(keyframes, w, h);
+        Files.createDirectories(dir);
+
+        BlockingQueue<int[]> free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++)
+            free.add(new int[w * h]);
+        BlockingQueue<Frame> computed = new ArrayBlockingQueue<>(buffers + 1);
+        BlockingQueue<Frame> coloured = new ArrayBlockingQueue<>(buffers + 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "mandelbrot-animation");
+            t.setDaemon(true);
+            return t;
+        });
+        ExecutorCompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> futures = new ArrayList<>();
+        futures.add(stages.submit(() -> compute(shots, free, computed)));
+        futures.add(stages.submit(() -> colour(computed, coloured)));
+        futures.add(stages.submit(() -> encode(dir, coloured, free)));
+
+        try {
+            // błąd któregokolwiek etapu przerywa pozostałe
+            for (int i = 0; i < futures.size(); i++)
+                stages.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Przerwano zapis animacji");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<Void> f : futures)
+                f.cancel(true);
+            executor.shutdownNow();
+        }
+        return shots.size();
+    }
+
+    /**
+     * Etap liczenia: prędkości ucieczki kolejnych klatek
+     */
+    private Void compute(List<Shot> shots, BlockingQueue<int[]> free, BlockingQueue<Frame> out)
+            throws InterruptedException {
+        Thread self = Thread.currentThread();
+        MandelRenderer mr = null;
+        for (int i = 0; i < shots.size(); i++) {
+            Shot shot = shots.get(i);
+            if (mr == null || mr.getN() != shot.N) {
+                mr = new MandelRenderer(r, shot.N);
+                mr.setThreads(threads);
+                mr.setKernel(kernel);
+                mr.setSmooth(smooth);
+                mr.setOrbitCache(orbitCache);
+            }
+            // piksele są przenoszone tylko między klatkami, które na to pozwalają,
+            // bo przenoszenie wyrównuje widok do siatki
+            boolean reuse = i > 0 && FrameReuse.related(shots.get(i - 1).view, shot.view)
+                    || i + 1 < shots.size() && FrameReuse.related(shot.view, shots.get(i + 1).view);
+            mr.setFrameReuse(reuse ? frameReuse : null);
+            reserve(shots, i);
+
+            int[] counts = free.take();
+            int steps = mr.escapeCounts(shot.view, counts, self::isInterrupted);
+            out.put(new Frame(i, shot.N, steps, counts));
+        }
+        out.put(END);
+        return null;
+    }
+
+    /**
+     * Zgłasza zapas orbity dla klatek o tym samym środku co klatka <i>i</i>
+     */
+    private void reserve(List<Shot> shots, int i) {
+        Viewport v = shots.get(i).view;
+        int N = shots.get(i).N;
+        double spacing = Math.min(v.deltaRe, v.deltaIm);
+        for (int j = i + 1; j < shots.size(); j++) {
+            Viewport next = shots.get(j).view;
+            if (next.centerRe.compareTo(v.centerRe) != 0 || next.centerIm.compareTo(v.centerIm) != 0)
+                break;
+            N = Math.max(N, shots.get(j).N);
+            spacing = Math.min(spacing, Math.min(next.deltaRe, next.deltaIm));
+        }
+        orbitCache.reserve(N, spacing);
+    }
+
+    /**
+     * Etap kolorowania: zamienia prędkości ucieczki na kolory w tej samej tablicy
+     */
+    private Void colour(BlockingQueue<Frame> in, BlockingQueue<Frame> out) throws InterruptedException {
+        int[] lut = null;
+        int N = 0;
+        int steps = 0;
+        for (Frame frame = in.take(); frame != END; frame = in.take()) {
+            if (lut == null || frame.N != N || frame.steps != steps) {
+                N = frame.N;
+                steps = frame.steps;
+                lut = ColourTable.build(palette, N, steps);
+            }
+            int[] data = frame.data;
+            for (int i = 0; i < w * h; i++)
+                data[i] = lut[data[i]];
+            out.put(frame);
+        }
+        out.put(END);
+        return null;
+    }
+
+    /**
+     * Etap zapisu: każda klatka do osobnego pliku; tablica wraca do puli
+     */
+    private Void encode(Path dir, BlockingQueue<Frame> in, BlockingQueue<int[]> free)
+            throws InterruptedException, IOException {
+        for (Frame frame = in.take(); frame != END; frame = in.take()) {
+            Path file = dir.resolve(String.format(Locale.ROOT, "frame%05d.%s", frame.index, format));
+            try (RowWriter writer = RowWriter.create(file, w, h)) {
+                writer.write(frame.data, h);
+            }
+            free.put(frame.data);
+        }
+        return null;
+    }
+}
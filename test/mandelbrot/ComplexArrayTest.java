@@ -0,0 +1,135 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.BinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ComplexArrayTest {
+
+    private static final int LENGTH = 37;
+
+    //zakres działań, z elementami przed i za nim
+    private static final int FROM = 3, TO = 31;
+
+    /**
+     * Działanie na zakresie tablicy i odpowiadające mu działanie na Complex
+     */
+    private interface RangeOp {
+        ComplexArray apply(ComplexArray a, int from, int to, ComplexArray b);
+    }
+
+    @Test
+    void bulkOpsMatchComplex() {
+        check(ComplexArray::add, (x, y) -> x.add(y));
+        check(ComplexArray::sub, (x, y) -> x.sub(y));
+        check(ComplexArray::mul, (x, y) -> x.mul(y));
+        check(ComplexArray::div, (x, y) -> x.div(y));
+    }
+
+    @Test
+    void mulByConstantMatchesComplex() {
+        ComplexArray a = random(new Random(2));
+        ComplexArray before = new ComplexArray(a);
+        Complex c = new Complex(0.3, -1.7);
+        a.mul(FROM, TO, c);
+        for (int k = 0; k < LENGTH; k++) {
+            Complex expected = inRange(k) ? before.get(k).mul(c) : before.get(k);
+            assertSame(expected, a.get(k), k);
+        }
+    }
+
+    @Test
+    void unaryOpsMatchComplex() {
+        ComplexArray a = random(new Random(3));
+        double[] sqrAbs = new double[LENGTH];
+        double[] abs = new double[LENGTH];
+        double[] phase = new double[LENGTH];
+        a.sqrAbs(FROM, TO, sqrAbs);
+        a.abs(FROM, TO, abs);
+        a.phase(FROM, TO, phase);
+        for (int k = FROM; k < TO; k++) {
+            assertEquals(a.get(k).sqrAbs(), sqrAbs[k], "indeks " + k);
+            assertEquals(a.get(k).abs(), abs[k], "indeks " + k);
+            assertEquals(a.get(k).phase(), phase[k], "indeks " + k);
+        }
+        assertEquals(0.0, abs[FROM - 1]);
+        assertEquals(0.0, abs[TO]);
+    }
+
+    @Test
+    void zeroDivisorLeavesArrayUnchanged() {
+        ComplexArray a = random(new Random(4));
+        ComplexArray b = random(new Random(5));
+        int zero = (FROM + TO) / 2;
+        b.set(zero, 0, 0);
+        ComplexArray before = new ComplexArray(a);
+        assertThrows(ArithmeticException.class, () -> a.div(FROM, TO, b));
+        assertEquals(before, a);
+
+        // zero poza zakresem nie przeszkadza
+        a.div(zero + 1, TO, b);
+    }
+
+    @Test
+    void zeroElementDividedByItself() {
+        ComplexArray a = random(new Random(6));
+        a.set(TO - 1, 0, 0);
+        ComplexArray before = new ComplexArray(a);
+        assertThrows(ArithmeticException.class, () -> a.div(a));
+        assertEquals(before, a);
+    }
+
+    @Test
+    void rangeChecked() {
+        ComplexArray a = new ComplexArray(LENGTH);
+        assertThrows(IndexOutOfBoundsException.class, () -> a.add(0, LENGTH + 1, a));
+        assertThrows(IndexOutOfBoundsException.class, () -> a.add(0, LENGTH, new ComplexArray(LENGTH - 1)));
+        assertThrows(IndexOutOfBoundsException.class, () -> a.add(5, 4, a));
+    }
+
+    /**
+     * Porównuje działanie na zakresie z działaniem Complex na kolejnych
+     * elementach, dla innej tablicy i dla tej samej tablicy jako argumentu
+     */
+    private static void check(RangeOp op, BinaryOperator<Complex> single) {
+        Random random = new Random(1);
+        ComplexArray a = random(random);
+        ComplexArray b = random(random);
+        ComplexArray before = new ComplexArray(a);
+        op.apply(a, FROM, TO, b);
+        for (int k = 0; k < LENGTH; k++) {
+            Complex expected = inRange(k) ? single.apply(before.get(k), b.get(k)) : before.get(k);
+            assertSame(expected, a.get(k), k);
+        }
+
+        // argumentem jest ta sama tablica: a.mul(a) podnosi do kwadratu
+        a = new ComplexArray(before);
+        op.apply(a, FROM, TO, a);
+        for (int k = 0; k < LENGTH; k++) {
+            Complex x = before.get(k);
+            Complex expected = inRange(k) ? single.apply(x, x) : x;
+            assertSame(expected, a.get(k), k);
+        }
+    }
+
+    private static boolean inRange(int k) {
+        return k >= FROM && k < TO;
+    }
+
+    private static ComplexArray random(Random random) {
+        ComplexArray a = new ComplexArray(LENGTH);
+        for (int k = 0; k < LENGTH; k++)
+            a.set(k, random.nextGaussian() * 10, random.nextGaussian() * 10);
+        return a;
+    }
+
+    private static void assertSame(Complex expected, Complex actual, int k) {
+        // Double.equals porównuje co do bitu
+        assertEquals(Double.valueOf(expected.re()), Double.valueOf(actual.re()), "indeks " + k);
+        assertEquals(Double.valueOf(expected.im()), Double.valueOf(actual.im()), "indeks " + k);
+    }
+}
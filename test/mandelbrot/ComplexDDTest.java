@@ -0,0 +1,91 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ComplexDDTest {
+
+    private static final MathContext MC = new MathContext(80);
+
+    //dopuszczalny błąd względny działań, około 2^-100
+    private static final double EPS = 1e-30;
+
+    @Test
+    void arithmeticMatchesBigDecimal() {
+        Random random = new Random(1);
+        for (int k = 0; k < 1000; k++) {
+            ComplexDD a = operand(random);
+            ComplexDD b = operand(random);
+            BigDecimal ar = a.exactRe(), ai = a.exactIm();
+            BigDecimal br = b.exactRe(), bi = b.exactIm();
+            double scale = norm(ar, ai) * norm(br, bi);
+
+            check(ar.add(br), ai.add(bi), new ComplexDD(a).add(b), norm(ar, ai) + norm(br, bi));
+            check(ar.subtract(br), ai.subtract(bi), new ComplexDD(a).sub(b), norm(ar, ai) + norm(br, bi));
+            check(ar.multiply(br).subtract(ai.multiply(bi)), ar.multiply(bi).add(ai.multiply(br)),
+                    new ComplexDD(a).mul(b), scale);
+            // ten sam obiekt jako czynnik, jak przy podnoszeniu do kwadratu w DoubleDoubleKernel
+            ComplexDD square = new ComplexDD(a);
+            square.mul(square);
+            check(ar.multiply(ar).subtract(ai.multiply(ai)), ar.multiply(ai).multiply(BigDecimal.valueOf(2)),
+                    square, norm(ar, ai) * norm(ar, ai));
+
+            BigDecimal d = br.multiply(br).add(bi.multiply(bi));
+            check(ar.multiply(br).add(ai.multiply(bi)).divide(d, MC),
+                    ai.multiply(br).subtract(ar.multiply(bi)).divide(d, MC),
+                    new ComplexDD(a).div(b), norm(ar, ai) / norm(br, bi));
+        }
+    }
+
+    @Test
+    void partsBeyondDouble() {
+        // 1/3 z dokładnością double-double, a nie double
+        BigDecimal third = BigDecimal.ONE.divide(BigDecimal.valueOf(3), MC);
+        ComplexDD c = new ComplexDD(third, third.negate());
+        assertTrue(c.exactRe().subtract(third).abs().doubleValue() < 1e-32);
+        assertTrue(c.exactIm().add(third).abs().doubleValue() < 1e-32);
+        assertEquals(1.0 / 3, c.re());
+        assertEquals(-1.0 / 3, c.im());
+    }
+
+    @Test
+    void toStringOfSpecialValues() {
+        assertEquals("NaN+1i", new ComplexDD(Double.NaN, 1).toString());
+        assertEquals("1+NaNi", new ComplexDD(1, Double.NaN).toString());
+        assertEquals("Infinity-Infinityi",
+                new ComplexDD(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY).toString());
+        assertEquals("1-0i", new ComplexDD(1, -0.0).toString());
+        assertEquals("-0+0i", new ComplexDD(-0.0, 0.0).toString());
+        assertEquals("0.5-0.25i", new ComplexDD(0.5, -0.25).toString());
+    }
+
+    /**
+     * Liczba o częściach rzędu 2^-10..2^10, z młodszą częścią różną od zera
+     */
+    private static ComplexDD operand(Random random) {
+        return new ComplexDD(value(random), value(random));
+    }
+
+    private static BigDecimal value(Random random) {
+        double hi = (random.nextDouble() * 2 - 1) * Math.scalb(1.0, random.nextInt(21) - 10);
+        double lo = Math.ulp(hi) * (random.nextDouble() - 0.5);
+        return new BigDecimal(hi).add(new BigDecimal(lo));
+    }
+
+    private static double norm(BigDecimal re, BigDecimal im) {
+        return Math.hypot(re.doubleValue(), im.doubleValue());
+    }
+
+    private static void check(BigDecimal re, BigDecimal im, ComplexDD actual, double scale) {
+        double errRe = actual.exactRe().subtract(re).abs().doubleValue();
+        double errIm = actual.exactIm().subtract(im).abs().doubleValue();
+        assertTrue(errRe <= EPS * scale && errIm <= EPS * scale,
+                "oczekiwano " + re + " " + im + ", jest " + actual + " (błąd " + errRe + ", " + errIm + ")");
+    }
+}
@@ -0,0 +1,41 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ComplexTest {
+
+    private static final double[] PARTS = {
+            0.0, -0.0, 1.0, -1.5, 1e-5, -2e300, Double.MIN_VALUE,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    @Test
+    void toStringRoundTrip() {
+        for (double re : PARTS) {
+            for (double im : PARTS) {
+                String s = new Complex(re, im).toString();
+                Complex c = Complex.valueOf(s);
+                // Double.equals odróżnia -0.0 od 0.0 i uznaje NaN za równe
+                assertEquals(Double.valueOf(re), Double.valueOf(c.re()), s);
+                assertEquals(Double.valueOf(im), Double.valueOf(c.im()), s);
+            }
+        }
+    }
+
+    @Test
+    void negativeZeroImaginaryPart() {
+        assertEquals("1.0-0.0i", new Complex(1, -0.0).toString());
+        assertEquals("1.0+NaNi", new Complex(1, Double.NaN).toString());
+    }
+
+    @Test
+    void valueOfExponents() {
+        Complex c = Complex.valueOf("1.0E-5-2e+3i");
+        assertEquals(1e-5, c.re());
+        assertEquals(-2e3, c.im());
+        assertEquals(-3.0, Complex.valueOf("-3").re());
+        assertEquals(4.5, Complex.valueOf("4.5i").im());
+    }
+}
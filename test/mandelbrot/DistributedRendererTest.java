@@ -0,0 +1,79 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class DistributedRendererTest {
+
+    private static final int WORKERS = 3;
+
+    private static final List<ServerSocket> servers = new ArrayList<>();
+    private static String addresses;
+
+    @BeforeAll
+    static void startWorkers() throws IOException {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            servers.add(server);
+            list.add("localhost:" + server.getLocalPort());
+            Thread t = new Thread(() -> {
+                try {
+                    new TileWorker(2).serve(server);
+                } catch (IOException e) {
+                    // gniazdo zamknięte po testach
+                }
+            }, "test-worker-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        addresses = String.join(",", list);
+    }
+
+    @AfterAll
+    static void stopWorkers() throws IOException {
+        for (ServerSocket server : servers)
+            server.close();
+    }
+
+    @Test
+    void sameImageAsLocal() {
+        Viewport[] views = {
+                new Viewport(new Complex(-2.5, -1.25), new Complex(1, 1.25), 240, 171),
+                new Viewport(new Complex(-0.76, 0.09), new Complex(-0.74, 0.11), 200, 200)
+        };
+        for (MandelRenderer.Kernel kernel : new MandelRenderer.Kernel[]{
+                MandelRenderer.Kernel.COMPLEX, MandelRenderer.Kernel.PRIMITIVE}) {
+            for (boolean smooth : new boolean[]{false, true}) {
+                for (Viewport v : views) {
+                    MandelRenderer local = new MandelRenderer(2, 300);
+                    try (DistributedRenderer remote = new DistributedRenderer(2, 300,
+                            DistributedRenderer.parseWorkers(addresses))) {
+                        for (MandelRenderer mr : new MandelRenderer[]{local, remote}) {
+                            mr.setKernel(kernel);
+                            mr.setSmooth(smooth);
+                        }
+                        remote.setTileRows(7);
+
+                        String what = kernel + " smooth=" + smooth + " " + v.w + "x" + v.h;
+                        int[] expected = new int[v.w * v.h];
+                        int[] actual = new int[v.w * v.h];
+                        local.escapeCounts(v, expected, () -> false);
+                        remote.escapeCounts(v, actual, () -> false);
+                        assertArrayEquals(expected, actual, what);
+                        assertArrayEquals(local.render(v, () -> false), remote.render(v, () -> false), what);
+                    }
+                }
+            }
+        }
+    }
+}
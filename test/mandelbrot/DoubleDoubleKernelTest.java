@@ -0,0 +1,47 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DoubleDoubleKernelTest {
+
+    private static final Viewport[] VIEWS = {
+            new Viewport(new Complex(-2.5, -1.25), new Complex(1, 1.25), 300, 214),
+            new Viewport(new Complex(-0.76, 0.09), new Complex(-0.74, 0.11), 200, 200)
+    };
+
+    @Test
+    void sameCountsAsPrimitive() {
+        for (Viewport v : VIEWS) {
+            DoubleDoubleKernel dd = new DoubleDoubleKernel(v, 2, 50);
+            PrimitiveKernel k = new PrimitiveKernel(2, 50);
+            int[] row = new int[v.w * v.h];
+            for (int y = 0; y < v.h; y++) {
+                dd.escapeRow(v, y, 0, v.w, row);
+                for (int x = 0; x < v.w; x++) {
+                    int expected = k.escape(v.re(x), v.im(y));
+                    assertEquals(expected, row[y * v.w + x], "x=" + x + " y=" + y);
+                    assertEquals(expected, dd.escape(v, x, y), "x=" + x + " y=" + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void almostSameCountsWithMoreIterations() {
+        // przy większym N orbity punktów przy brzegu zaczynają zależeć od
+        // zaokrągleń double, więc pojedyncze piksele mogą się różnić
+        for (Viewport v : VIEWS) {
+            DoubleDoubleKernel dd = new DoubleDoubleKernel(v, 2, 300);
+            PrimitiveKernel k = new PrimitiveKernel(2, 300);
+            int different = 0;
+            for (int y = 0; y < v.h; y++)
+                for (int x = 0; x < v.w; x++)
+                    if (dd.escape(v, x, y) != k.escape(v.re(x), v.im(y)))
+                        different++;
+            assertTrue(different <= v.w * v.h / 10_000, different + " różnych pikseli");
+        }
+    }
+}
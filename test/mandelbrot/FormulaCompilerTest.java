@@ -0,0 +1,142 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.BinaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FormulaCompilerTest {
+
+    private static final int SIZE = 120;
+
+    @Test
+    void mandelbrotSameAsPrimitiveKernel() {
+        Viewport wide = new Viewport(new Complex(-2.5, -1.5), new Complex(1, 1.5), SIZE, SIZE);
+        Viewport seahorse = new Viewport(new Complex(-0.76, 0.09), new Complex(-0.74, 0.11), SIZE, SIZE);
+        Formula parsed = Formula.parse("z^2 + c");
+        for (double r : new double[]{1.5, 2, 10}) {
+            for (int N : new int[]{1, 2, 50, 500}) {
+                PrimitiveKernel primitive = new PrimitiveKernel(r, N);
+                for (Formula f : new Formula[]{Formula.MANDELBROT, parsed}) {
+                    EscapeKernel compiled = f.kernel(r, N);
+                    for (Viewport v : new Viewport[]{wide, seahorse})
+                        compare(primitive, compiled, v, f + " r=" + r + " N=" + N);
+                }
+            }
+        }
+    }
+
+    @Test
+    void multibrotSameAsComplex() {
+        Viewport v = new Viewport(new Complex(-1.5, -1.5), new Complex(1.5, 1.5), SIZE, SIZE);
+        checkMandelbrot("z^3 + c", (z, c) -> new Complex(z).mul(z).mul(z).add(c), v);
+        //parzysta potęga: kwadrat kwadratu
+        checkMandelbrot("z^4 + c", (z, c) -> {
+            Complex s = new Complex(z).mul(z);
+            return s.mul(new Complex(s)).add(c);
+        }, v);
+    }
+
+    @Test
+    void burningShipSameAsComplex() {
+        Viewport v = new Viewport(new Complex(-2.2, -2), new Complex(1.4, 1), SIZE, SIZE);
+        checkMandelbrot("(|re(z)| + i*|im(z)|)^2 + c", (z, c) -> {
+            Complex a = new Complex(Math.abs(z.re()), Math.abs(z.im()));
+            return a.mul(new Complex(a)).add(c);
+        }, v);
+    }
+
+    @Test
+    void divisionSameAsComplex() {
+        Viewport v = new Viewport(new Complex(-2.5, -1.5), new Complex(1, 1.5), SIZE, SIZE);
+        checkMandelbrot("z^2 + c/(z + 1)",
+                (z, c) -> new Complex(z).mul(z).add(new Complex(c).div(new Complex(z).add(new Complex(1, 0)))), v);
+    }
+
+    @Test
+    void juliaSameAsComplex() {
+        Viewport v = new Viewport(new Complex(-1.6, -1.2), new Complex(1.6, 1.2), SIZE, SIZE);
+        checkJulia("z^2 + c", new Complex(-0.8, 0.156),
+                (z, c) -> new Complex(z).mul(z).add(c), v);
+        checkJulia("z^3 + c", new Complex(0.4, 0.1),
+                (z, c) -> new Complex(z).mul(z).mul(z).add(c), v);
+        //tricorn
+        checkJulia("conj(z)^2 + c", new Complex(-0.4, 0.5), (z, c) -> {
+            Complex a = new Complex(z.re(), -z.im());
+            return a.mul(new Complex(a)).add(c);
+        }, v);
+    }
+
+    @Test
+    void kernelKeepsFormula() {
+        Formula f = Formula.parse("z^3 + c");
+        assertSame(f, ((FormulaKernel) f.kernel(2, 50)).getFormula());
+        assertSame(f, ((FormulaKernel) f.julia(2, 50, new Complex(0.4, 0.1))).getFormula());
+    }
+
+    private static void checkMandelbrot(String text, BinaryOperator<Complex> f, Viewport v) {
+        Formula formula = Formula.parse(text);
+        for (int N : new int[]{2, 50, 300}) {
+            EscapeKernel compiled = formula.kernel(2, N);
+            for (int y = 0; y < v.h; y++) {
+                for (int x = 0; x < v.w; x++) {
+                    Complex c = new Complex(v.re(x), v.im(y));
+                    assertEquals(reference(f, 2, N, new Complex(0, 0), c), compiled.escape(c.re(), c.im()),
+                            text + " N=" + N + " c=" + c);
+                }
+            }
+        }
+    }
+
+    private static void checkJulia(String text, Complex c, BinaryOperator<Complex> f, Viewport v) {
+        Formula formula = Formula.parse(text);
+        for (int N : new int[]{2, 50, 300}) {
+            EscapeKernel compiled = formula.julia(2, N, c);
+            for (int y = 0; y < v.h; y++) {
+                for (int x = 0; x < v.w; x++) {
+                    Complex z = new Complex(v.re(x), v.im(y));
+                    assertEquals(reference(f, 2, N, z, c), compiled.escape(z.re(), z.im()),
+                            text + " N=" + N + " z=" + z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Iteracja wzoru na obiektach Complex, w tej samej postaci co w skompilowanym kodzie:
+     * z<sub>1</sub> = f(z<sub>0</sub>, c), a potem dla n od 2 do N v = n, z = f(z, c),
+     * aż |z|^2 &gt; r^2. Dzielenie przez 0 i NaN liczą się jako ucieczka.
+     */
+    private static int reference(BinaryOperator<Complex> f, double r, int N, Complex z0, Complex c) {
+        Complex z = apply(f, z0, c);
+        int v = 0;
+        for (int n = 2; n <= N; n++) {
+            v = n;
+            z = apply(f, z, c);
+            if (!(z.sqrAbs() <= r * r))
+                break;
+        }
+        return v;
+    }
+
+    private static Complex apply(BinaryOperator<Complex> f, Complex z, Complex c) {
+        try {
+            return f.apply(z, c);
+        } catch (ArithmeticException e) {
+            return new Complex(Double.NaN, Double.NaN);
+        }
+    }
+
+    private static void compare(EscapeKernel expected, EscapeKernel actual, Viewport v, String message) {
+        for (int y = 0; y < v.h; y++) {
+            for (int x = 0; x < v.w; x++) {
+                double re = v.re(x);
+                double im = v.im(y);
+                assertEquals(expected.escape(re, im), actual.escape(re, im),
+                        message + " c=" + re + "+" + im + "i");
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InteriorChecksTest {
+
+    @Test
+    void sameCountsWithAndWithoutChecks() {
+        Object[][] views = {
+                {new Viewport(new Complex(-2.5, -1.25), new Complex(1, 1.25), 240, 171), 1000},
+                {square(-0.75, 0.1, 0.01), 2000},
+                // okolice punktów parabolicznych, gdzie orbity zbiegają najwolniej
+                {square(-0.75, 0, 1e-5), 5000},
+                {square(0.25, 0, 1e-5), 5000},
+                {square(-1.75, 0, 1e-5), 5000},
+                // brzeg przy najmniejszym odstępie pikseli liczonym jeszcze na double
+                {square(-0.743643887037151, 0.131825904205330, 1e-11), 5000},
+                {square(-0.125, 0.649519052838329, 1e-11), 5000}
+        };
+        // orbity zamknięte jako cykl; bez nich test niczego by nie sprawdzał
+        long periods = 0;
+        for (Object[] view : views) {
+            Viewport v = (Viewport) view[0];
+            int N = (Integer) view[1];
+            for (MandelRenderer.Kernel kernel : new MandelRenderer.Kernel[]{
+                    MandelRenderer.Kernel.PRIMITIVE, MandelRenderer.Kernel.VECTOR}) {
+                MandelRenderer checked = new MandelRenderer(2, N);
+                checked.setKernel(kernel);
+                int[] counts = counts(checked, v);
+                MandelRenderer plain = new MandelRenderer(2, N);
+                plain.setKernel(kernel);
+                plain.setInteriorChecks(false);
+                String what = kernel + " " + v.minRe + " " + v.maxIm + " N=" + N;
+                assertArrayEquals(counts(plain, v), counts, what);
+                periods += checked.getInteriorStats().getPeriod();
+            }
+        }
+        assertTrue(periods > 0);
+    }
+
+    private static Viewport square(double re, double im, double half) {
+        return new Viewport(new Complex(re - half, im - half), new Complex(re + half, im + half), 128, 128);
+    }
+
+    private static int[] counts(MandelRenderer mr, Viewport v) {
+        int[] counts = new int[v.w * v.h];
+        mr.escapeCounts(v, counts, () -> false);
+        return counts;
+    }
+}
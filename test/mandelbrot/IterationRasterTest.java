@@ -0,0 +1,137 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IterationRasterTest {
+
+    private static final Viewport VIEW =
+            new Viewport(new Complex(-2.5, -1.25), new Complex(1, 1.25), 173, 121);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void savedRowsMatchEscapeCounts() throws IOException {
+        MandelRenderer mr = new MandelRenderer(2, 200);
+        int[] counts = counts(mr, VIEW);
+        Path file = dir.resolve("full.mbr");
+        // pasy o wysokości niedzielącej obrazu
+        IterationRaster.save(mr, VIEW, 10, file);
+
+        try (IterationRaster raster = IterationRaster.open(file)) {
+            assertEquals(VIEW.w, raster.width());
+            assertEquals(VIEW.h, raster.height());
+            assertEquals(200, raster.getN());
+            assertEquals(2.0, raster.getR());
+            assertEquals(1, raster.getSteps());
+            assertArrayEquals(counts, rows(raster));
+        }
+    }
+
+    @Test
+    void encodesRunsAndLiterals() throws IOException {
+        int w = 12;
+        int[][] rows = {
+                {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12},      // bez powtórzeń
+                {5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5},         // odcinek przez cały wiersz
+                {1, 2, 3, 4, 5, 6, 7, 8, 9, 9, 9, 9},         // wiersz kończy się odcinkiem
+                {7, 7, 7, 1, 2, 2, 3, 3, 3, 4, 0, 0},         // odcinki długości MIN_RUN i krótsze
+                {0, 0, 1, 1, 0, 0, 1, 1, 0, 0, 1, 1},         // powtórzenia krótsze niż MIN_RUN
+                {9, 9, 9, 9, 8, 8, 8, 8, 7, 7, 7, 7}          // same odcinki
+        };
+        Viewport v = new Viewport(new Complex(-1, -1), new Complex(1, 1), w, rows.length);
+        Path file = dir.resolve("rle.mbr");
+        try (IterationRaster.Writer writer = new IterationRaster.Writer(file, v, 100, 1, 2)) {
+            // pierwszy wiersz osobno, reszta jednym wywołaniem
+            writer.write(rows[0], 1);
+            int[] rest = new int[w * (rows.length - 1)];
+            for (int y = 1; y < rows.length; y++)
+                System.arraycopy(rows[y], 0, rest, (y - 1) * w, w);
+            writer.write(rest, rows.length - 1);
+        }
+
+        try (IterationRaster raster = IterationRaster.open(file)) {
+            int[] out = new int[w + 2];
+            for (int y = 0; y < rows.length; y++) {
+                Arrays.fill(out, -1);
+                raster.row(y, out, 1);
+                assertArrayEquals(rows[y], Arrays.copyOfRange(out, 1, w + 1), "wiersz " + y);
+                // wiersz nie wychodzi poza swoje miejsce w tablicy
+                assertEquals(-1, out[0]);
+                assertEquals(-1, out[w + 1]);
+            }
+        }
+    }
+
+    @Test
+    void cropKeepsPixelsAndCoordinates() throws IOException {
+        MandelRenderer mr = new MandelRenderer(2, 200);
+        int[] counts = counts(mr, VIEW);
+        Path file = dir.resolve("full.mbr");
+        IterationRaster.save(mr, VIEW, 16, file);
+
+        int x0 = 31, y0 = 17, cw = 77, ch = 45;
+        Path cropped = dir.resolve("crop.mbr");
+        try (IterationRaster raster = IterationRaster.open(file)) {
+            raster.crop(x0, y0, cw, ch, cropped);
+        }
+        try (IterationRaster raster = IterationRaster.open(cropped)) {
+            assertEquals(cw, raster.width());
+            assertEquals(ch, raster.height());
+            Viewport v = raster.getViewport();
+            assertEquals(VIEW.re(x0), v.re(0), 1e-12);
+            assertEquals(VIEW.im(y0), v.im(0), 1e-12);
+            int[] out = rows(raster);
+            for (int y = 0; y < ch; y++)
+                for (int x = 0; x < cw; x++)
+                    assertEquals(counts[(y0 + y) * VIEW.w + x0 + x], out[y * cw + x], "x=" + x + " y=" + y);
+            // wycinek liczony od nowa daje te same piksele
+            assertArrayEquals(counts(mr, v), out);
+        }
+    }
+
+    @Test
+    void downsampleTakesEveryStepPixel() throws IOException {
+        MandelRenderer mr = new MandelRenderer(2, 200);
+        int[] counts = counts(mr, VIEW);
+        Path file = dir.resolve("full.mbr");
+        IterationRaster.save(mr, VIEW, 32, file);
+
+        int step = 3;
+        Path small = dir.resolve("small.mbr");
+        try (IterationRaster raster = IterationRaster.open(file)) {
+            raster.downsample(step, small);
+        }
+        try (IterationRaster raster = IterationRaster.open(small)) {
+            Viewport v = VIEW.coarse(step);
+            assertEquals(v.w, raster.width());
+            assertEquals(v.h, raster.height());
+            int[] out = rows(raster);
+            for (int y = 0; y < v.h; y++)
+                for (int x = 0; x < v.w; x++)
+                    assertEquals(counts[y * step * VIEW.w + x * step], out[y * v.w + x], "x=" + x + " y=" + y);
+        }
+    }
+
+    private static int[] counts(MandelRenderer mr, Viewport v) {
+        int[] counts = new int[v.w * v.h];
+        mr.escapeCounts(v, counts, () -> false);
+        return counts;
+    }
+
+    private static int[] rows(IterationRaster raster) {
+        int w = raster.width();
+        int[] out = new int[w * raster.height()];
+        for (int y = 0; y < raster.height(); y++)
+            raster.row(y, out, y * w);
+        return out;
+    }
+}
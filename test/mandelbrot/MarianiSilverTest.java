@@ -0,0 +1,23 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class MarianiSilverTest {
+
+    @Test
+    void smallEscapeRadiusKeepsTheSet() {
+        // cały brzeg widoku ma dla r = 1.5 tę samą prędkość ucieczki
+        Viewport v = new Viewport(new Complex(-2, -2), new Complex(2, 2), 300, 250);
+        assertArrayEquals(counts(v, 1.5, false), counts(v, 1.5, true));
+    }
+
+    private static int[] counts(Viewport v, double r, boolean subdivision) {
+        MandelRenderer mr = new MandelRenderer(r, 200);
+        mr.setSubdivision(subdivision);
+        int[] counts = new int[v.w * v.h];
+        mr.escapeCounts(v, counts, () -> false);
+        return counts;
+    }
+}
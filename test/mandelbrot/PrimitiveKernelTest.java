@@ -0,0 +1,49 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.IntBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrimitiveKernelTest {
+
+    private static final int SIZE = 200;
+
+    @Test
+    void sameEscapeCountsAsComplex() {
+        for (double r : new double[]{1.5, 2, 10}) {
+            for (int N : new int[]{1, 2, 50, 500}) {
+                MandelRenderer mr = new MandelRenderer(r, N);
+                PrimitiveKernel k = new PrimitiveKernel(r, N);
+                Viewport v = new Viewport(new Complex(-2.5, -1.5), new Complex(1, 1.5), SIZE, SIZE);
+                for (int y = 0; y < v.h; y++) {
+                    for (int x = 0; x < v.w; x++) {
+                        double re = v.re(x);
+                        double im = v.im(y);
+                        assertEquals(mr.predkoscUcieczki(new Complex(re, im)), k.escape(re, im),
+                                "r=" + r + " N=" + N + " c=" + re + "+" + im + "i");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void sameFrameAsComplex() {
+        Viewport v = new Viewport(new Complex(-0.76, 0.09), new Complex(-0.74, 0.11), SIZE, SIZE);
+        int[] complex = frame(v, MandelRenderer.Kernel.COMPLEX);
+        int[] primitive = frame(v, MandelRenderer.Kernel.PRIMITIVE);
+        assertArrayEquals(complex, primitive);
+    }
+
+    private static int[] frame(Viewport v, MandelRenderer.Kernel kernel) {
+        MandelRenderer mr = new MandelRenderer(2, 300);
+        mr.setKernel(kernel);
+        mr.setInteriorChecks(false);
+        int[] argb = new int[v.w * v.h];
+        mr.render(v, IntBuffer.wrap(argb), () -> false);
+        return argb;
+    }
+}
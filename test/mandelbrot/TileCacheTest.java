@@ -0,0 +1,49 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class TileCacheTest {
+
+    // widok wyrównany do siatki, żeby liczenie bez pamięci miało te same współrzędne pikseli
+    private static final Viewport VIEW =
+            new Viewport(new Complex(-0.76, 0.09), new Complex(-0.74, 0.11), 256, 256).aligned();
+
+    @Test
+    void cachedFrameMatchesUncached() {
+        for (MandelRenderer.Kernel kernel : MandelRenderer.Kernel.values()) {
+            int[] expected = counts(kernel, null);
+            TileCache cache = new TileCache(64L << 20);
+            // drugie liczenie bierze kafelki z pamięci
+            assertArrayEquals(expected, counts(kernel, cache), kernel + " liczony");
+            assertArrayEquals(expected, counts(kernel, cache), kernel + " z pamięci");
+        }
+    }
+
+    @Test
+    void prefetchedTilesMatchUncached() {
+        for (MandelRenderer.Kernel kernel : MandelRenderer.Kernel.values()) {
+            TileCache cache = new TileCache(64L << 20);
+            MandelRenderer mr = renderer(kernel, cache);
+            List<Runnable> jobs = mr.tileJobs(VIEW, 0);
+            jobs.forEach(Runnable::run);
+            assertArrayEquals(counts(kernel, null), counts(kernel, cache), kernel.name());
+        }
+    }
+
+    private static int[] counts(MandelRenderer.Kernel kernel, TileCache cache) {
+        int[] counts = new int[VIEW.w * VIEW.h];
+        renderer(kernel, cache).escapeCounts(VIEW, counts, () -> false);
+        return counts;
+    }
+
+    private static MandelRenderer renderer(MandelRenderer.Kernel kernel, TileCache cache) {
+        MandelRenderer mr = new MandelRenderer(2, 300);
+        mr.setKernel(kernel);
+        mr.setTileCache(cache);
+        return mr;
+    }
+}
@@ -0,0 +1,41 @@
+package mandelbrot;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class VectorKernelTest {
+
+    @Test
+    void createdWhenModulePresent() {
+        // testy uruchamiane są z --add-modules jdk.incubator.vector
+        assertInstanceOf(VectorKernel.class, MandelRenderer.vectorKernel(2, 100, null, 0.01));
+    }
+
+    @Test
+    void sameRowsAsScalar() {
+        // szerokość 203 zostawia końcówkę węższą niż rejestr
+        Viewport[] views = {
+                new Viewport(new Complex(-2.5, -1.5), new Complex(1, 1.5), 203, 150),
+                new Viewport(new Complex(-0.76, 0.09), new Complex(-0.74, 0.11), 203, 150)
+        };
+        for (Viewport v : views) {
+            for (int N : new int[]{1, 2, 300}) {
+                for (boolean interiorChecks : new boolean[]{false, true}) {
+                    InteriorStats stats = interiorChecks ? new InteriorStats() : null;
+                    EscapeKernel scalar = new PrimitiveKernel(2, N, stats, v.deltaRe);
+                    EscapeKernel vector = new VectorKernel(2, N, stats, v.deltaRe);
+                    int[] expected = new int[v.w * v.h];
+                    int[] actual = new int[v.w * v.h];
+                    for (int y = 0; y < v.h; y++) {
+                        for (int x = 0; x < v.w; x++)
+                            expected[y * v.w + x] = scalar.escape(v.re(x), v.im(y));
+                        vector.escapeRow(v, y, 0, v.w, actual);
+                    }
+                    assertArrayEquals(expected, actual, "N=" + N + " interior=" + interiorChecks);
+                }
+            }
+        }
+    }
+}